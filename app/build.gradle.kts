@@ -35,6 +35,7 @@ dependencies {
 
     implementation("com.google.android.material:material:1.10.0")
     implementation("androidx.recyclerview:recyclerview:1.3.0")
+    implementation("androidx.asynclayoutinflater:asynclayoutinflater:1.0.0")
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
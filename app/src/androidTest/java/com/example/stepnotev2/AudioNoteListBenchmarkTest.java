@@ -0,0 +1,193 @@
+package com.example.stepnotev2;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmarks for the audio notes list: the old inflate-every-row LinearLayout,
+ * with dates formatted on the main thread, against AudioNoteAdapter rows built in the
+ * background. 2,000 notes, laid out off screen. Results go to logcat under
+ * "AudioNoteListBenchmark"; a frame over 16 ms counts as jank.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AudioNoteListBenchmarkTest {
+
+    private static final String TAG = "AudioNoteListBenchmark";
+    private static final int NOTE_COUNT = 2_000;
+    private static final int FRAMES = 240;
+    private static final long FRAME_BUDGET_NANOS = 16_000_000L;
+    private static final int PREINFLATED_ROWS = 8;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private List<AudioNote> notes;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_StepNotev2);
+        notes = new ArrayList<>(NOTE_COUNT);
+        long createdAt = 1_755_086_400_000L;
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            AudioNote note = new AudioNote(1, "Lecture " + i, "/audio/lecture_" + i + ".mp3",
+                    (i % 60) + ":" + String.format(Locale.US, "%02d", i % 60), createdAt - i * 3_600_000L);
+            note.setId(NOTE_COUNT - i);
+            notes.add(note);
+        }
+    }
+
+    @Test
+    public void backgroundRowsAndRecycledViewsKeepMainThreadWithinFrame() {
+        // Before: every row inflated without a parent and its date formatted on the main thread
+        long[] before = new long[3]; // millis, bytes, views
+        instrumentation.runOnMainSync(() -> {
+            LinearLayout container = new LinearLayout(context);
+            container.setOrientation(LinearLayout.VERTICAL);
+            SimpleDateFormat listDateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+            LayoutInflater inflater = LayoutInflater.from(context);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (AudioNote note : notes) {
+                View view = inflater.inflate(R.layout.item_audio_note, null);
+                ((TextView) view.findViewById(R.id.tvAudioTitle)).setText(note.getTitle());
+                ((TextView) view.findViewById(R.id.tvAudioDuration)).setText(note.getDuration());
+                ((TextView) view.findViewById(R.id.tvCreatedDate)).setText(
+                        listDateFormat.format(new Date(note.getCreatedAt())));
+                container.addView(view);
+            }
+            layout(container, View.MeasureSpec.UNSPECIFIED);
+            before[0] = (System.nanoTime() - start) / 1_000_000;
+            before[1] = allocatedBytes() - allocatedBefore;
+            before[2] = container.getChildCount();
+        });
+
+        // After: rows built here, off the main thread, as the fragment's loaders do
+        long rowsStart = System.nanoTime();
+        List<AudioNoteAdapter.Row> rows = AudioNoteAdapter.Row.from(notes);
+        long rowsMillis = (System.nanoTime() - rowsStart) / 1_000_000;
+
+        CountingAdapter adapter = new CountingAdapter();
+        RecyclerView[] recyclerView = new RecyclerView[1];
+        instrumentation.runOnMainSync(() -> {
+            recyclerView[0] = newRecyclerView(adapter);
+            adapter.preinflate(recyclerView[0], PREINFLATED_ROWS);
+        });
+        long deadline = SystemClock.uptimeMillis() + 5_000;
+        int[] ready = new int[1];
+        do {
+            SystemClock.sleep(10);
+            instrumentation.runOnMainSync(() -> ready[0] = adapter.getPreinflatedCount());
+        } while (ready[0] < PREINFLATED_ROWS && SystemClock.uptimeMillis() < deadline);
+
+        instrumentation.runOnMainSync(() -> {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            adapter.submitList(rows);
+            layout(recyclerView[0], View.MeasureSpec.EXACTLY);
+            long firstLayoutMillis = (System.nanoTime() - start) / 1_000_000;
+            long firstLayoutBytes = allocatedBytes() - allocatedBefore;
+            int createdAtFirstLayout = adapter.created;
+
+            // A quarter screen per frame; scrollBy lays out and binds the rows coming into view
+            long[] frameNanos = new long[FRAMES];
+            int janky = 0;
+            allocatedBefore = allocatedBytes();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                long frameStart = System.nanoTime();
+                recyclerView[0].scrollBy(0, HEIGHT / 4);
+                frameNanos[frame] = System.nanoTime() - frameStart;
+                if (frameNanos[frame] > FRAME_BUDGET_NANOS) {
+                    janky++;
+                }
+            }
+            long scrollBytes = allocatedBytes() - allocatedBefore;
+            Arrays.sort(frameNanos);
+
+            Log.i(TAG, "before: " + NOTE_COUNT + " rows in one main-thread pass of " + before[0]
+                    + " ms, " + before[2] + " item views, " + before[1] / 1024 + " KB; after: rows "
+                    + rowsMillis + " ms in the background, first layout " + firstLayoutMillis + " ms with "
+                    + ready[0] + " preinflated, " + createdAtFirstLayout + " item views, " + firstLayoutBytes / 1024
+                    + " KB; scroll p50 " + frameNanos[FRAMES / 2] / 1_000 + " us, p99 "
+                    + frameNanos[FRAMES * 99 / 100] / 1_000 + " us, " + janky + "/" + FRAMES + " janky frames, "
+                    + scrollBytes / 1024 / FRAMES + " KB/frame, " + adapter.created + " item views in total");
+            assertEquals(NOTE_COUNT, before[2]);
+            assertTrue(adapter.created < 50);
+            assertTrue(firstLayoutMillis < before[0]);
+            assertTrue(frameNanos[FRAMES / 2] < FRAME_BUDGET_NANOS);
+        });
+    }
+
+    @Test
+    public void rowsCarryFormattedLabels() {
+        AudioNoteAdapter.Row row = new AudioNoteAdapter.Row(notes.get(0));
+        assertEquals(notes.get(0).getId(), row.id);
+        assertEquals("Lecture 0", row.title);
+        assertEquals("0:00", row.durationLabel);
+        assertEquals(EpochDate.formatDisplayDate(notes.get(0).getCreatedAt()), row.dateLabel);
+
+        AudioNote unknown = new AudioNote(1, "Untitled", "/audio/untitled.mp3", null, 0);
+        AudioNoteAdapter.Row blank = new AudioNoteAdapter.Row(unknown);
+        assertEquals("", blank.durationLabel);
+        assertEquals("", blank.dateLabel);
+    }
+
+    private RecyclerView newRecyclerView(AudioNoteAdapter adapter) {
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setItemAnimator(null); // Measure binds, not change animations
+        recyclerView.setAdapter(adapter);
+        return recyclerView;
+    }
+
+    private static void layout(View view, int heightMode) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, heightMode));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    // Bytes allocated by the runtime so far; ART reports it as a string
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static class CountingAdapter extends AudioNoteAdapter {
+        int created = 0;
+
+        @NonNull
+        @Override
+        public AudioNoteViewHolder onCreateViewHolder(@NonNull android.view.ViewGroup parent, int viewType) {
+            created++;
+            return super.onCreateViewHolder(parent, viewType);
+        }
+    }
+}
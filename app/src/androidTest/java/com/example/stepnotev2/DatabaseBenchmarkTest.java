@@ -0,0 +1,1232 @@
+package com.example.stepnotev2;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmarks for DatabaseHelper, run against an isolated seeded database.
+ * Timings are written to logcat under the "DatabaseBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBenchmarkTest {
+
+    private static final String TAG = "DatabaseBenchmark";
+    private static final String BENCHMARK_DB = "stepnote_benchmark.db";
+    private static final int ITERATIONS = 500;
+    // 2025-08-13 12:00:00 UTC, older than anything created during setUp
+    private static final long SEEDED_CREATED_AT = 1_755_086_400_000L;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private int userId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(BENCHMARK_DB);
+        databaseHelper = new DatabaseHelper(context, BENCHMARK_DB);
+
+        userId = (int) databaseHelper.addUser("Bench User", "bench@example.com", "password");
+        for (int i = 0; i < 200; i++) {
+            databaseHelper.addFlashcard(userId, "Question " + i, "Answer " + i);
+        }
+        databaseHelper.updateTodaySteps(userId, 4200);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(BENCHMARK_DB);
+    }
+
+    @Test
+    public void sharedConnectionIsFasterThanOpenClosePerCall() {
+        // Old pattern: every call ends by closing the connection, so the next one reopens it
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(4200, databaseHelper.getTodaySteps(userId));
+            databaseHelper.close();
+        }
+        long openCloseNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Shared pattern: connection stays open between calls
+        databaseHelper.getReadableDatabase();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(4200, databaseHelper.getTodaySteps(userId));
+        }
+        long sharedNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "getTodaySteps open/close: " + openCloseNanos + " ns/call, shared: " + sharedNanos + " ns/call");
+        assertTrue(sharedNanos < openCloseNanos);
+    }
+
+    @Test
+    public void incrementalStatsStayFlatWithHistorySize() {
+        seedDailySteps(5 * 365);
+        databaseHelper.rebuildUserStats(userId);
+        DatabaseHelper.UserStats before = databaseHelper.getUserStats(userId);
+
+        // Incremental path: one delta update per write
+        long start = System.nanoTime();
+        for (int i = 1; i <= ITERATIONS; i++) {
+            databaseHelper.updateTodaySteps(userId, 4200 + i);
+        }
+        long incrementalNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Full recompute over every daily row
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            databaseHelper.rebuildUserStats(userId);
+        }
+        long rebuildNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        DatabaseHelper.UserStats after = databaseHelper.getUserStats(userId);
+        Log.i(TAG, "stats update incremental: " + incrementalNanos + " ns/write, full rebuild: " + rebuildNanos + " ns/write");
+        assertEquals(before.totalSteps + ITERATIONS, after.totalSteps);
+        assertEquals(before.totalDays, after.totalDays);
+    }
+
+    @Test
+    public void stepStreamHitsUsersTableOncePerSession() {
+        assertNotNull(databaseHelper.loginUser("bench@example.com", "password"));
+        SessionManager session = databaseHelper.getSessionManager();
+        session.resetCounters();
+
+        // A minute of SENSOR_DELAY_FASTEST events, each resolving the current user
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(userId, session.getCurrentUserId());
+        }
+        Log.i(TAG, "users-table queries during step stream: " + session.getUserQueryCount()
+                + ", cache hits: " + session.getCacheHitCount());
+        assertEquals(0, session.getUserQueryCount());
+
+        // A profile change invalidates the cache and costs exactly one query
+        databaseHelper.updateUserProfile(userId, "Renamed", null);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("Renamed", databaseHelper.getCurrentLoggedInUser().getName());
+        }
+        assertEquals(1, session.getUserQueryCount());
+
+        databaseHelper.logoutUser();
+        assertNull(databaseHelper.getCurrentLoggedInUser());
+    }
+
+    @Test
+    public void cachedStatementInsertIsFasterThanContentValues() {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        // Old pattern: ContentValues insert, SQL rebuilt and recompiled on every call
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ContentValues values = new ContentValues();
+            values.put("user_id", userId);
+            values.put("front_text", "Front " + i);
+            values.put("back_text", "Back " + i);
+            values.put("created_at", SEEDED_CREATED_AT);
+            assertTrue(db.insert("flashcards", null, values) > 0);
+        }
+        long contentValuesNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Cached pattern: one compiled statement, rebound per call
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertTrue(databaseHelper.addFlashcard(userId, "Front " + i, "Back " + i) > 0);
+        }
+        long cachedNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Step writes reuse the upsert and the stats delta statements
+        start = System.nanoTime();
+        for (int i = 1; i <= ITERATIONS; i++) {
+            databaseHelper.updateTodaySteps(userId, 4200 + i);
+        }
+        long stepNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "flashcard insert ContentValues: " + contentValuesNanos + " ns/write, cached statement: "
+                + cachedNanos + " ns/write; step write: " + stepNanos + " ns/write");
+        assertEquals(200 + 2 * ITERATIONS, databaseHelper.getUserFlashcardsCount(userId));
+        assertEquals(4200 + ITERATIONS, databaseHelper.getTodaySteps(userId));
+    }
+
+    @Test
+    public void cachedColumnIndexMapperIsFasterThanPerRowLookup() {
+        seedFlashcards(100_000);
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        // Old pattern: SELECT * and a column-name lookup for every field of every row
+        long start = System.nanoTime();
+        List<Flashcard> legacy = new ArrayList<>();
+        Cursor cursor = db.query("flashcards", null, "user_id = ?",
+                new String[]{String.valueOf(userId)}, null, null, "created_at DESC");
+        if (cursor.moveToFirst()) {
+            do {
+                Flashcard flashcard = new Flashcard();
+                flashcard.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
+                flashcard.setUserId(cursor.getInt(cursor.getColumnIndexOrThrow("user_id")));
+                flashcard.setFrontText(cursor.getString(cursor.getColumnIndexOrThrow("front_text")));
+                flashcard.setBackText(cursor.getString(cursor.getColumnIndexOrThrow("back_text")));
+                flashcard.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow("created_at")));
+                legacy.add(flashcard);
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        long legacyMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Mapper pattern: explicit projection, indexes resolved once per cursor
+        start = System.nanoTime();
+        List<Flashcard> mapped = databaseHelper.getUserFlashcards(userId);
+        long mapperMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Log.i(TAG, "map " + mapped.size() + " flashcards per-row lookup: " + legacyMillis
+                + " ms, cached mapper: " + mapperMillis + " ms");
+        assertEquals(legacy.size(), mapped.size());
+        assertEquals(legacy.get(0).getFrontText(), mapped.get(0).getFrontText());
+    }
+
+    @Test
+    public void firstPageIsFasterThanFullLoadAndKeysetCoversEveryRow() {
+        // Seeded rows share one created_at, so only the id tie-breaker orders them
+        seedFlashcards(10_000);
+        int total = databaseHelper.getUserFlashcardsCount(userId);
+
+        long start = System.nanoTime();
+        List<Flashcard> all = databaseHelper.getUserFlashcards(userId);
+        long fullMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<Flashcard> firstPage = databaseHelper.getUserFlashcardsPage(userId, null, DatabaseHelper.PAGE_SIZE);
+        long firstPageMicros = (System.nanoTime() - start) / 1_000;
+
+        // Walk every page and check nothing is skipped or repeated
+        Set<Integer> seen = new HashSet<>();
+        List<Flashcard> page = firstPage;
+        while (!page.isEmpty()) {
+            for (Flashcard flashcard : page) {
+                assertTrue(seen.add(flashcard.getId()));
+            }
+            page = databaseHelper.getUserFlashcardsPage(userId, page.get(page.size() - 1), DatabaseHelper.PAGE_SIZE);
+        }
+
+        Log.i(TAG, "load " + total + " flashcards in full: " + fullMillis + " ms, first page: "
+                + firstPageMicros + " us");
+        assertEquals(total, all.size());
+        assertEquals(total, seen.size());
+        assertEquals(all.get(0).getId(), firstPage.get(0).getId());
+    }
+
+    @Test
+    public void fullTextSearchLatencyOnLargeDeck() {
+        seedFlashcards(100_000);
+        databaseHelper.addFlashcard(userId, "Photosynthesis", "How plants turn light into sugar");
+
+        // Prefix queries as they arrive while typing
+        String[] keystrokes = {"p", "ph", "pho", "phot", "photo", "photos"};
+        long start = System.nanoTime();
+        List<Flashcard> results = null;
+        for (String query : keystrokes) {
+            results = databaseHelper.searchFlashcards(userId, query, 100);
+        }
+        long searchMicros = (System.nanoTime() - start) / 1_000 / keystrokes.length;
+
+        // Broad prefix that matches every seeded card, still capped and ranked
+        start = System.nanoTime();
+        List<Flashcard> broad = databaseHelper.searchFlashcards(userId, "seed", 100);
+        long broadMicros = (System.nanoTime() - start) / 1_000;
+
+        // LIKE scan the search index replaces
+        start = System.nanoTime();
+        Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(
+                "SELECT id FROM flashcards WHERE user_id = ? AND (front_text LIKE ? OR back_text LIKE ?) LIMIT 100",
+                new String[]{String.valueOf(userId), "%photos%", "%photos%"});
+        int likeCount = cursor.getCount();
+        cursor.close();
+        long likeMicros = (System.nanoTime() - start) / 1_000;
+
+        Log.i(TAG, "search 100k cards: " + searchMicros + " us/keystroke, broad prefix: " + broadMicros
+                + " us, LIKE scan: " + likeMicros + " us");
+        assertEquals(1, results.size());
+        assertEquals("Photosynthesis", results.get(0).getFrontText());
+        assertEquals(100, broad.size());
+        assertEquals(1, likeCount);
+    }
+
+    @Test
+    public void integerDayRangeIsFasterThanTextDates() {
+        seedDailySteps(5 * 365);
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        // Old layout: a copy of the history keyed by locale-formatted TEXT dates
+        db.execSQL("CREATE TEMP TABLE daily_steps_text (user_id INTEGER, date TEXT, step_count INTEGER)");
+        db.execSQL("CREATE INDEX temp.idx_daily_steps_text ON daily_steps_text(user_id, date)");
+        Cursor rows = db.rawQuery("SELECT date, step_count FROM daily_steps WHERE user_id = ?",
+                new String[]{String.valueOf(userId)});
+        db.beginTransaction();
+        try {
+            while (rows.moveToNext()) {
+                db.execSQL("INSERT INTO daily_steps_text VALUES (?, ?, ?)",
+                        new Object[]{userId, EpochDate.formatDay(rows.getLong(0)), rows.getInt(1)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            rows.close();
+        }
+
+        // Text keys: format both bounds per call, compare strings
+        int[] windows = {7, 30, 365};
+        long start = System.nanoTime();
+        int textTotal = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            int days = windows[i % windows.length];
+            Calendar calendar = Calendar.getInstance();
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+            String to = sdf.format(calendar.getTime());
+            calendar.add(Calendar.DAY_OF_YEAR, -(days - 1));
+            String from = sdf.format(calendar.getTime());
+            Cursor cursor = db.rawQuery("SELECT SUM(step_count) FROM daily_steps_text"
+                            + " WHERE user_id = ? AND date BETWEEN ? AND ?",
+                    new String[]{String.valueOf(userId), from, to});
+            cursor.moveToFirst();
+            textTotal = cursor.getInt(0);
+            cursor.close();
+        }
+        long textNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Integer epoch days: cached "today", integer BETWEEN on the (user_id, date) index
+        start = System.nanoTime();
+        int integerTotal = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            integerTotal = databaseHelper.getStepTotalForLastDays(userId, windows[i % windows.length]);
+        }
+        long integerNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "last 7/30/365 days over 5 years TEXT dates: " + textNanos + " ns/query, epoch days: "
+                + integerNanos + " ns/query");
+        assertEquals(textTotal, integerTotal);
+
+        int[] lastYear = databaseHelper.getDailyStepsForLastDays(userId, 365);
+        assertEquals(4200, lastYear[364]);
+        assertEquals(3000, lastYear[363]);
+    }
+
+    @Test
+    public void rollupSeriesIsFasterThanGroupByAndTracksWrites() {
+        seedDailySteps(5 * 365);
+        databaseHelper.rebuildStepRollups(userId);
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        int months = 24;
+        long firstMonth = StepPeriod.MONTH.plus(EpochDate.today(), -(months - 1));
+
+        // On demand: group every daily row in the window by month
+        long start = System.nanoTime();
+        int[] grouped = new int[months];
+        for (int i = 0; i < ITERATIONS; i++) {
+            grouped = new int[months];
+            Cursor cursor = db.rawQuery("SELECT date(date * 86400, 'unixepoch', 'start of month'),"
+                            + " MIN(date), SUM(step_count) FROM daily_steps"
+                            + " WHERE user_id = ? AND date >= ? GROUP BY 1",
+                    new String[]{String.valueOf(userId), String.valueOf(firstMonth)});
+            while (cursor.moveToNext()) {
+                grouped[StepPeriod.MONTH.periodsBetween(firstMonth, cursor.getLong(1))] = cursor.getInt(2);
+            }
+            cursor.close();
+        }
+        long groupByNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // Rollup: one primary-key range scan of at most 24 rows
+        start = System.nanoTime();
+        DatabaseHelper.StepSeries series = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            series = databaseHelper.getStepSeries(userId, StepPeriod.MONTH, months);
+        }
+        long rollupNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "24-month series over 5 years GROUP BY: " + groupByNanos + " ns/query, rollup: "
+                + rollupNanos + " ns/query");
+        assertArrayEquals(grouped, series.steps);
+        assertEquals(firstMonth, series.periodStarts[0]);
+
+        // Incremental updates move the current week, month and year by the delta
+        int[] weeks = databaseHelper.getStepSeries(userId, StepPeriod.WEEK, 4).steps;
+        int[] years = databaseHelper.getStepSeries(userId, StepPeriod.YEAR, 2).steps;
+        databaseHelper.updateTodaySteps(userId, 5000);
+        assertEquals(weeks[3] + 800, databaseHelper.getStepSeries(userId, StepPeriod.WEEK, 4).steps[3]);
+        assertEquals(years[1] + 800, databaseHelper.getStepSeries(userId, StepPeriod.YEAR, 2).steps[1]);
+        assertEquals(series.steps[months - 1] + 800,
+                databaseHelper.getStepSeries(userId, StepPeriod.MONTH, months).steps[months - 1]);
+    }
+
+    @Test
+    public void histogramBlobReadIsFasterThanPerBucketRows() {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        long today = EpochDate.today();
+        int days = 90;
+
+        // Same histograms two ways: one BLOB per day, and one row per non-empty bucket
+        db.execSQL("CREATE TEMP TABLE step_buckets (user_id INTEGER, date INTEGER, bucket INTEGER, step_count INTEGER)");
+        db.execSQL("CREATE INDEX temp.idx_step_buckets ON step_buckets(user_id, date, bucket)");
+        int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+        db.beginTransaction();
+        try {
+            for (int d = 0; d < days; d++) {
+                for (int b = 0; b < buckets.length; b++) {
+                    buckets[b] = b >= 84 && b < 264 ? 50 + (b * 31 + d) % 400 : 0;
+                    if (buckets[b] > 0) {
+                        db.execSQL("INSERT INTO step_buckets VALUES (?, ?, ?, ?)",
+                                new Object[]{userId, today - d, b, buckets[b]});
+                    }
+                }
+                databaseHelper.updateStepsForDate(userId, today - d, 1000, StepHistogram.encode(buckets));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long start = System.nanoTime();
+        int rowTotal = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long day = today - (i % days);
+            Arrays.fill(buckets, 0);
+            Cursor cursor = db.rawQuery("SELECT bucket, step_count FROM step_buckets WHERE user_id = ? AND date = ?",
+                    new String[]{String.valueOf(userId), String.valueOf(day)});
+            while (cursor.moveToNext()) {
+                buckets[cursor.getInt(0)] = cursor.getInt(1);
+            }
+            cursor.close();
+            rowTotal += buckets[150];
+        }
+        long rowNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        int blobTotal = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            databaseHelper.getStepHistogram(userId, today - (i % days), buckets);
+            blobTotal += buckets[150];
+        }
+        long blobNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "one day's 5-minute histogram, row per bucket: " + rowNanos + " ns/day, packed BLOB: "
+                + blobNanos + " ns/day (" + databaseHelper.getStepHistogramBlob(userId, today).length + " bytes)");
+        assertEquals(rowTotal, blobTotal);
+        // A plain count update keeps the stored histogram
+        databaseHelper.updateTodaySteps(userId, 1200);
+        // Buckets past 263 are empty and trimmed from the blob
+        assertEquals(264, databaseHelper.getStepHistogram(userId, today, buckets));
+    }
+
+    @Test
+    public void invalidationsCoalescePerFrameAndSkipUnrelatedTables() throws Exception {
+        InvalidationTracker tracker = databaseHelper.getInvalidationTracker();
+        AtomicInteger flashcardReloads = new AtomicInteger();
+        AtomicInteger audioReloads = new AtomicInteger();
+        InvalidationTracker.Observation[] observations = new InvalidationTracker.Observation[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            observations[0] = tracker.observe(null, flashcardReloads::incrementAndGet, DatabaseHelper.TABLE_FLASHCARDS);
+            observations[1] = tracker.observe(null, audioReloads::incrementAndGet, DatabaseHelper.TABLE_AUDIO_NOTES);
+        });
+
+        // A burst of writes from a background thread, like an import
+        long notificationsBefore = tracker.getNotificationCount();
+        for (int i = 0; i < 200; i++) {
+            databaseHelper.addFlashcard(userId, "Burst " + i, "Answer " + i);
+        }
+        Thread.sleep(100); // Let the pending frame run
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        // A table nobody here reads wakes nobody
+        int reloadsAfterBurst = flashcardReloads.get();
+        databaseHelper.updateUserLoginStatus(userId, true);
+        Thread.sleep(100);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(reloadsAfterBurst, flashcardReloads.get());
+
+        // A screen that ran its own query after its write is not woken again by that write
+        long skippedBefore = tracker.getSkippedReloadCount();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            databaseHelper.addFlashcard(userId, "Own write", "Answer");
+            observations[0].markCurrent();
+        });
+        Thread.sleep(100);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(reloadsAfterBurst, flashcardReloads.get());
+        assertEquals(skippedBefore + 1, tracker.getSkippedReloadCount());
+
+        Log.i(TAG, "200 flashcard inserts: " + (tracker.getNotificationCount() - notificationsBefore)
+                + " notifications, " + flashcardReloads.get() + " flashcard reloads, "
+                + audioReloads.get() + " audio note reloads, coalesced " + tracker.getCoalescedCount()
+                + ", reloads skipped " + tracker.getSkippedReloadCount());
+        assertTrue("reloads: " + flashcardReloads.get(), flashcardReloads.get() >= 1 && flashcardReloads.get() < 20);
+        assertEquals(0, audioReloads.get());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            observations[0].remove();
+            observations[1].remove();
+        });
+    }
+
+    @Test
+    public void compoundActionsCommitOnce() throws Exception {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        // Saving an imported audio note: insert, then set the duration
+        resetWal();
+        long id = databaseHelper.addAudioNote(userId, "Separate", "/tmp/separate.m4a");
+        databaseHelper.updateAudioNote((int) id, "Separate", "01:00");
+        int saveBefore = countWalCommits();
+
+        resetWal();
+        databaseHelper.runInTransaction(() -> {
+            long noteId = databaseHelper.addAudioNote(userId, "Batched", "/tmp/batched.m4a");
+            databaseHelper.updateAudioNote((int) noteId, "Batched", "01:00");
+        });
+        int saveAfter = countWalCommits();
+
+        // Signing in: log everyone out, then log one user in
+        resetWal();
+        db.execSQL("UPDATE users SET is_logged_in = 0");
+        db.execSQL("UPDATE users SET is_logged_in = 1 WHERE id = ?", new Object[]{userId});
+        int loginBefore = countWalCommits();
+
+        resetWal();
+        assertNotNull(databaseHelper.loginUser("bench@example.com", "password"));
+        int loginAfter = countWalCommits();
+
+        // A step flush: day row, lifetime stats and three rollups
+        resetWal();
+        databaseHelper.updateTodaySteps(userId, 4300);
+        int stepFlush = countWalCommits();
+
+        Log.i(TAG, "commits per action - save audio note: " + saveBefore + " -> " + saveAfter
+                + ", sign in: " + loginBefore + " -> " + loginAfter + ", step flush: " + stepFlush);
+        assertEquals(2, saveBefore);
+        assertEquals(1, saveAfter);
+        assertEquals(2, loginBefore);
+        assertEquals(1, loginAfter);
+        assertEquals(1, stepFlush);
+    }
+
+    @Test
+    public void deckImportRowsPerSecond() throws Exception {
+        int rows = 100_000;
+        StringBuilder deck = new StringBuilder("front,back\n");
+        for (int i = 0; i < rows; i++) {
+            deck.append("Imported question ").append(i).append(",\"Answer, with comma ").append(i).append("\"\n");
+        }
+        byte[] bytes = deck.toString().getBytes(StandardCharsets.UTF_8);
+
+        FlashcardImporter importer = new FlashcardImporter(databaseHelper);
+        int[] progressCalls = {0};
+        long start = System.nanoTime();
+        FlashcardImporter.Result result = importer.importDeck(userId, new ByteArrayInputStream(bytes), bytes.length,
+                (imported, bytesRead, total) -> progressCalls[0]++);
+        long elapsedNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "deck import: " + result.imported + " rows in " + elapsedNanos / 1_000_000 + " ms, "
+                + (result.imported * 1_000_000_000L / elapsedNanos) + " rows/sec, "
+                + progressCalls[0] + " progress callbacks");
+        assertEquals(rows, result.imported);
+        assertFalse(result.cancelled);
+        assertEquals(200 + rows, databaseHelper.getUserFlashcardsCount(userId));
+
+        // Cancelling stops after the chunk in progress
+        FlashcardImporter cancelled = new FlashcardImporter(databaseHelper);
+        FlashcardImporter.Result partial = cancelled.importDeck(userId, new ByteArrayInputStream(bytes), bytes.length,
+                (imported, bytesRead, total) -> cancelled.cancel());
+        assertTrue(partial.cancelled);
+        assertEquals(FlashcardImporter.CHUNK_SIZE - 1, partial.imported); // First chunk includes the header
+    }
+
+    @Test
+    public void parallelAudioImportBeatsOneFileAtATime() throws Exception {
+        int files = 50;
+        File sourceDir = new File(context.getCacheDir(), "benchmark_audio_sources");
+        File sequentialDir = new File(context.getCacheDir(), "benchmark_audio_sequential");
+        File parallelDir = new File(context.getCacheDir(), "benchmark_audio_parallel");
+        List<AudioBatchImporter.Source> sources = new ArrayList<>(files);
+        try {
+            assertTrue(sourceDir.isDirectory() || sourceDir.mkdirs());
+            for (int i = 0; i < files; i++) {
+                File wav = new File(sourceDir, "lecture_" + i + ".wav");
+                writeWav(wav, 10 + i % 20); // 10-29 s, about 0.9-2.6 MB
+                sources.add(new AudioBatchImporter.Source() {
+                    @Override
+                    public String getName() {
+                        return wav.getName();
+                    }
+
+                    @Override
+                    public FileInputStream open() throws IOException {
+                        return new FileInputStream(wav);
+                    }
+                });
+            }
+            int notesBefore = databaseHelper.getUserAudioNotesCount(userId);
+
+            // Old pattern: one file at a time, each saved in its own transaction
+            long start = System.nanoTime();
+            for (AudioBatchImporter.Source source : sources) {
+                String title = AudioImporter.defaultTitle(source.getName());
+                AudioImporter.Result copied;
+                try (FileInputStream input = source.open()) {
+                    copied = new AudioImporter().importAudio(input.getChannel(), input.getChannel().size(),
+                            sequentialDir, source.getName(), null);
+                }
+                String duration = AudioImporter.formatDuration(copied.durationMillis);
+                databaseHelper.runInTransaction(() -> {
+                    long id = databaseHelper.addAudioNote(userId, title, copied.file.getAbsolutePath());
+                    databaseHelper.updateAudioNote((int) id, title, duration);
+                });
+            }
+            long sequentialNanos = System.nanoTime() - start;
+
+            // Bounded pool of copies, one insert transaction for the batch
+            int[] progressCalls = {0};
+            start = System.nanoTime();
+            AudioBatchImporter.Result result = new AudioBatchImporter(databaseHelper).importAll(userId, sources,
+                    parallelDir, (filesDone, fileCount, bytesCopied, totalBytes) -> {
+                        synchronized (progressCalls) {
+                            progressCalls[0]++;
+                        }
+                    });
+            long parallelNanos = System.nanoTime() - start;
+
+            Log.i(TAG, "audio import of " + files + " files: one at a time " + sequentialNanos / 1_000_000
+                    + " ms, " + AudioBatchImporter.MAX_CONCURRENT + " in parallel + one transaction "
+                    + parallelNanos / 1_000_000 + " ms (" + (sequentialNanos * 100 / parallelNanos) / 100.0
+                    + "x), " + progressCalls[0] + " progress callbacks");
+            assertEquals(files, result.imported);
+            assertEquals(0, result.failed);
+            assertEquals(notesBefore + 2 * files, databaseHelper.getUserAudioNotesCount(userId));
+            assertEquals(files, parallelDir.list().length);
+            // Durations come from the copies' headers
+            AudioNote newest = databaseHelper.getUserAudioNotesPage(userId, null, 1).get(0);
+            assertTrue(newest.getDuration(), newest.getDuration().matches("0:[1-2][0-9]"));
+            assertTrue(parallelNanos < sequentialNanos);
+        } finally {
+            for (File dir : new File[]{sourceDir, sequentialDir, parallelDir}) {
+                File[] children = dir.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        child.delete();
+                    }
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    @Test
+    public void duplicateAudioImportsShareOneFileUntilTheLastNoteGoes() throws Exception {
+        int files = 10;
+        File sourceDir = new File(context.getCacheDir(), "dedup_sources");
+        File audioDir = new File(context.getCacheDir(), "dedup_audio");
+        List<AudioBatchImporter.Source> sources = new ArrayList<>();
+        long sourceBytes = 0;
+        try {
+            assertTrue(sourceDir.isDirectory() || sourceDir.mkdirs());
+            for (int i = 0; i < files; i++) {
+                File wav = new File(sourceDir, "lecture_" + i + ".wav");
+                writeWav(wav, 10 + i);
+                sourceBytes += wav.length();
+                sources.add(new AudioBatchImporter.Source() {
+                    @Override
+                    public String getName() {
+                        return wav.getName();
+                    }
+
+                    @Override
+                    public FileInputStream open() throws IOException {
+                        return new FileInputStream(wav);
+                    }
+                });
+            }
+
+            // The same picks imported three times over
+            long start = System.nanoTime();
+            for (int round = 0; round < 3; round++) {
+                AudioBatchImporter.Result result = new AudioBatchImporter(databaseHelper).importAll(userId, sources,
+                        audioDir, null);
+                assertEquals(files, result.imported);
+            }
+            long importNanos = System.nanoTime() - start;
+
+            long storedBytes = 0;
+            for (File file : audioDir.listFiles()) {
+                storedBytes += file.length();
+            }
+            Log.i(TAG, "3 x " + files + " duplicate audio imports: " + importNanos / 1_000_000 + " ms, "
+                    + storedBytes / 1024 + " KB stored for " + 3 * sourceBytes / 1024 + " KB imported");
+            assertEquals(files, audioDir.list().length);
+            assertEquals(sourceBytes, storedBytes);
+
+            // Every copy of a recording points at one file, which goes with its last note
+            List<AudioNote> notes = databaseHelper.getUserAudioNotesPage(userId, null, 3 * files);
+            assertEquals(3 * files, notes.size());
+            List<AudioNote> copies = new ArrayList<>();
+            for (AudioNote note : notes) {
+                if (note.getTitle().equals("lecture_0")) {
+                    copies.add(note);
+                }
+            }
+            assertEquals(3, copies.size());
+            File shared = new File(copies.get(0).getFilePath());
+            for (AudioNote copy : copies) {
+                assertEquals(shared.getPath(), copy.getFilePath());
+                assertEquals(copies.get(0).getContentHash(), copy.getContentHash());
+            }
+            assertTrue(databaseHelper.deleteAudioNote(copies.get(0).getId()));
+            assertTrue(databaseHelper.deleteAudioNote(copies.get(1).getId()));
+            assertTrue(shared.exists());
+            assertTrue(databaseHelper.deleteAudioNote(copies.get(2).getId()));
+            assertFalse(shared.exists());
+            assertEquals(files - 1, audioDir.list().length);
+        } finally {
+            for (File dir : new File[]{sourceDir, audioDir}) {
+                File[] children = dir.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        child.delete();
+                    }
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    @Test
+    public void backfillFillsOldAudioNotesAndLibraryLengthIsOneSum() throws Exception {
+        int files = 12;
+        File audioDir = new File(context.getCacheDir(), "backfill_audio");
+        try {
+            // Saved the old way: text duration only, nothing read from the file
+            assertTrue(audioDir.isDirectory() || audioDir.mkdirs());
+            long expectedMillis = 0;
+            for (int i = 0; i < files; i++) {
+                File wav = new File(audioDir, "memo_" + i + ".wav");
+                writeWav(wav, 5 + i);
+                expectedMillis += (5 + i) * 1000L;
+                databaseHelper.addAudioNote(userId, "Memo " + i, wav.getAbsolutePath());
+            }
+            // A second note on one file, and one whose file is gone
+            databaseHelper.addAudioNote(userId, "Memo 0 again", new File(audioDir, "memo_0.wav").getAbsolutePath());
+            databaseHelper.addAudioNote(userId, "Lost", new File(audioDir, "missing.wav").getAbsolutePath());
+            assertEquals(0, databaseHelper.getUserAudioNotesDurationMillis(userId));
+
+            long start = System.nanoTime();
+            int updated = new AudioMetadataBackfill(databaseHelper).run();
+            long backfillMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(files + 2, updated);
+            assertTrue(databaseHelper.getAudioNotesMissingMetadata(0, 100).isEmpty());
+            assertEquals(0, new AudioMetadataBackfill(databaseHelper).run());
+            long totalMillis = databaseHelper.getUserAudioNotesDurationMillis(userId);
+            // memo_0 counts twice; the missing file not at all
+            assertEquals(expectedMillis + 5_000, totalMillis, 50L * (files + 1));
+            for (AudioNote note : databaseHelper.getUserAudioNotes(userId)) {
+                if (note.getTitle().equals("Lost")) {
+                    assertEquals(-1, note.getDurationMs());
+                    assertEquals(0, note.getFileSize());
+                } else {
+                    assertEquals(44_100, note.getSampleRate());
+                    assertEquals(1, note.getChannelCount());
+                    assertEquals(new File(note.getFilePath()).length(), note.getFileSize());
+                    assertEquals(AudioImporter.formatDuration(note.getDurationMs()), note.getDuration());
+                }
+            }
+
+            // Library length: one SUM against loading every note and parsing its text
+            List<AudioNote> seeded = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                AudioNote note = new AudioNote(userId, "Seeded " + i, "/audio/seeded_" + i + ".mp3",
+                        AudioImporter.formatDuration(i * 1_000L), 0);
+                note.setDurationMs(i * 1_000L);
+                seeded.add(note);
+            }
+            databaseHelper.addAudioNotes(userId, seeded);
+            start = System.nanoTime();
+            long parsedMillis = 0;
+            for (int i = 0; i < 20; i++) {
+                parsedMillis = 0;
+                for (AudioNote note : databaseHelper.getUserAudioNotes(userId)) {
+                    String[] parts = note.getDuration().split(":");
+                    if (parts.length == 2) {
+                        parsedMillis += (Long.parseLong(parts[0]) * 60 + Long.parseLong(parts[1])) * 1000;
+                    }
+                }
+            }
+            long parseMicros = (System.nanoTime() - start) / 1_000 / 20;
+            start = System.nanoTime();
+            long summedMillis = 0;
+            for (int i = 0; i < 20; i++) {
+                summedMillis = databaseHelper.getUserAudioNotesDurationMillis(userId);
+            }
+            long sumMicros = (System.nanoTime() - start) / 1_000 / 20;
+
+            Log.i(TAG, "audio metadata backfill of " + (files + 2) + " notes: " + backfillMillis
+                    + " ms; library length over " + (seeded.size() + files + 2) + " notes: parse text "
+                    + parseMicros + " us, SUM(duration_ms) " + sumMicros + " us");
+            // Seconds 0..1999 of seeded audio
+            assertEquals(totalMillis + 1_999_000_000L, summedMillis);
+            // Text is whole seconds; millis are exact
+            assertTrue(Math.abs(parsedMillis - summedMillis) < 1_000L * (files + 2));
+            assertTrue(sumMicros < parseMicros);
+        } finally {
+            File[] children = audioDir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            audioDir.delete();
+        }
+    }
+
+    @Test
+    public void backupStreamsFullAndIncrementalAndRestoresAtomically() throws Exception {
+        seedFlashcards(20_000);
+        seedDailySteps(3 * 365);
+        databaseHelper.rebuildUserStats(userId); // Seeded days bypass the running totals
+        DataBackup backup = new DataBackup(databaseHelper, new File(context.getCacheDir(), "restored_audio"));
+
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        backup.exportBackup(userId, full, false, false);
+        long fullNanos = System.nanoTime() - start;
+        int fullCount = databaseHelper.getUserFlashcardsCount(userId);
+
+        // A few edits after the full backup
+        for (int i = 0; i < 10; i++) {
+            databaseHelper.addFlashcard(userId, "New question " + i, "New answer " + i);
+        }
+        List<Flashcard> firstPage = databaseHelper.getUserFlashcardsPage(userId, null, 20);
+        databaseHelper.updateFlashcard(firstPage.get(0).getId(), "Edited question", "Edited answer");
+        databaseHelper.deleteFlashcard(firstPage.get(1).getId());
+        databaseHelper.updateTodaySteps(userId, 9000);
+        int editedCount = databaseHelper.getUserFlashcardsCount(userId);
+        int editedSteps = databaseHelper.getUserStats(userId).totalSteps;
+
+        ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        BackupArchive.Manifest manifest = backup.exportBackup(userId, changes, true, false);
+        long incrementalNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "backup: full " + full.size() + " bytes in " + fullNanos / 1_000_000 + " ms, incremental "
+                + changes.size() + " bytes in " + incrementalNanos / 1_000_000 + " ms");
+        assertTrue(manifest.isIncremental());
+        assertTrue(changes.size() * 50 < full.size());
+
+        // The full backup rolls the edits back; the incremental reapplies them
+        start = System.nanoTime();
+        backup.restoreBackup(userId, new ByteArrayInputStream(full.toByteArray()));
+        Log.i(TAG, "restore full: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        assertEquals(fullCount, databaseHelper.getUserFlashcardsCount(userId));
+
+        backup.restoreBackup(userId, new ByteArrayInputStream(changes.toByteArray()));
+        assertEquals(editedCount, databaseHelper.getUserFlashcardsCount(userId));
+        assertEquals(editedSteps, databaseHelper.getUserStats(userId).totalSteps);
+        assertEquals("Edited question", databaseHelper.getUserFlashcardsPage(userId, null, 20).get(0).getFrontText());
+
+        // A damaged archive changes nothing
+        byte[] truncated = Arrays.copyOf(full.toByteArray(), full.size() / 2);
+        try {
+            backup.restoreBackup(userId, new ByteArrayInputStream(truncated));
+            fail("Truncated backup restored");
+        } catch (IOException expected) {
+            // Rolled back
+        }
+        assertEquals(editedCount, databaseHelper.getUserFlashcardsCount(userId));
+        assertEquals(editedSteps, databaseHelper.getUserStats(userId).totalSteps);
+    }
+
+    @Test
+    public void restoreNeverReusesASameNamedFileAndDropsOrphanedRecordings() throws Exception {
+        File audioDir = new File(context.getCacheDir(), "restore_audio");
+        DataBackup backup = new DataBackup(databaseHelper, audioDir);
+        try {
+            assertTrue(audioDir.isDirectory() || audioDir.mkdirs());
+            File first = new File(audioDir, "lecture.mp3");
+            writeWav(first, 3);
+            AudioNote week1 = new AudioNote(userId, "Week 1", first.getAbsolutePath(), "0:03", 0);
+            week1.setContentHash("0f1e2d3c");
+            databaseHelper.addAudioNotes(userId, Collections.singletonList(week1));
+            long firstId = week1.getId();
+            byte[] firstBytes = readFile(first);
+            // Its recording was already gone when the backup was made
+            File elsewhere = new File(context.getCacheDir(), "interview.mp3");
+            databaseHelper.addAudioNote(userId, "Interview", elsewhere.getAbsolutePath());
+
+            ByteArrayOutputStream full = new ByteArrayOutputStream();
+            backup.exportBackup(userId, full, false, true);
+
+            // The note goes, and a different recording is imported under the same name
+            assertTrue(databaseHelper.deleteAudioNote((int) firstId));
+            assertFalse(first.exists());
+            writeWav(first, 7);
+            databaseHelper.addAudioNote(userId, "Week 2", first.getAbsolutePath());
+            File unrelated = new File(audioDir, "interview.mp3");
+            writeWav(unrelated, 1);
+
+            backup.restoreBackup(userId, new ByteArrayInputStream(full.toByteArray()));
+
+            assertEquals(2, databaseHelper.getUserAudioNotes(userId).size());
+            AudioNote note = findAudioNote("Week 1");
+            File restored = new File(note.getFilePath());
+            assertEquals("lecture (2).mp3", restored.getName());
+            assertEquals("0f1e2d3c", note.getContentHash());
+            // Not in the archive, so not pointed at the same-named recording in audioDir
+            assertEquals(elsewhere.getAbsolutePath(), findAudioNote("Interview").getFilePath());
+            // Left for the backfill to read from the restored file
+            assertEquals(-1, note.getFileSize());
+            assertEquals(2, new AudioMetadataBackfill(databaseHelper).run());
+            assertEquals(restored.length(), findAudioNote("Week 1").getFileSize());
+            assertArrayEquals(firstBytes, readFile(restored));
+            // Week 2 was replaced by the full restore, and nothing refers to its file now
+            assertFalse(first.exists());
+            assertTrue(unrelated.exists());
+            assertEquals(2, audioDir.list().length);
+        } finally {
+            File[] children = audioDir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            audioDir.delete();
+        }
+    }
+
+    @Test
+    public void restoredAnswersFollowACardRestoredUnderANewId() throws Exception {
+        Flashcard card = databaseHelper.getUserFlashcardsPage(userId, null, 1).get(0);
+        ReviewBuffer buffer = new ReviewBuffer(databaseHelper::applyReviews);
+        buffer.record(card, SpacedRepetition.Grade.GOOD, EpochDate.nowMillis(), 4_000, 1);
+        buffer.flush();
+        DataBackup backup = new DataBackup(databaseHelper, new File(context.getCacheDir(), "restored_audio"));
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        backup.exportBackup(userId, full, false, false);
+
+        // The card goes, and another user's card takes its id
+        int otherUserId = (int) databaseHelper.addUser("Other User", "other@example.com", "password");
+        assertTrue(databaseHelper.deleteFlashcard(card.getId()));
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO flashcards (id, user_id, front_text, back_text, created_at) VALUES (?, ?, ?, ?, ?)",
+                new Object[]{card.getId(), otherUserId, "Their question", "Their answer", SEEDED_CREATED_AT});
+
+        backup.restoreBackup(userId, new ByteArrayInputStream(full.toByteArray()));
+
+        Cursor cursor = db.rawQuery("SELECT f.id, f.user_id, f.front_text FROM " + DatabaseHelper.TABLE_REVIEW_LOG
+                + " r JOIN flashcards f ON f.id = r.flashcard_id WHERE r.user_id = ?",
+                new String[]{String.valueOf(userId)});
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertNotEquals(card.getId(), cursor.getInt(0));
+            assertEquals(userId, cursor.getInt(1));
+            assertEquals(card.getFrontText(), cursor.getString(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void dueQueueUsesIndexAndBatchedReviewsBeatPerAnswerWrites() {
+        seedFlashcards(100_000);
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        // Spread the deck over a year of due dates, half of it already due
+        long now = EpochDate.nowMillis();
+        db.execSQL("UPDATE flashcards SET due_at = ? + (id % 365 - 182) * 86400000 WHERE user_id = ?",
+                new Object[]{now, userId});
+
+        long start = System.nanoTime();
+        List<Flashcard> due = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            due = databaseHelper.getDueFlashcards(userId, now, 20);
+        }
+        long queueMicros = (System.nanoTime() - start) / 1_000 / ITERATIONS;
+
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN SELECT id FROM flashcards WHERE user_id = ? AND due_at <= ? "
+                + "ORDER BY due_at, id LIMIT 20", new String[]{String.valueOf(userId), String.valueOf(now)});
+        StringBuilder planText = new StringBuilder();
+        while (plan.moveToNext()) {
+            planText.append(plan.getString(plan.getColumnIndexOrThrow("detail"))).append('\n');
+        }
+        plan.close();
+
+        assertEquals(20, due.size());
+        for (int i = 1; i < due.size(); i++) {
+            assertTrue(due.get(i - 1).getDueAt() <= due.get(i).getDueAt());
+        }
+        assertTrue(due.get(due.size() - 1).getDueAt() <= now);
+
+        // Answer the queue a card at a time, then the same number through the buffer
+        int dueBefore = databaseHelper.getDueFlashcardsCount(userId, now);
+        List<Flashcard> cards = databaseHelper.getDueFlashcards(userId, now, 2 * ITERATIONS);
+        ReviewBuffer single = new ReviewBuffer(databaseHelper::applyReviews, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            single.record(cards.get(i), SpacedRepetition.Grade.GOOD, now, 3_000, 1);
+            single.flush();
+        }
+        long singleNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        ReviewBuffer batched = new ReviewBuffer(databaseHelper::applyReviews);
+        start = System.nanoTime();
+        for (int i = ITERATIONS; i < 2 * ITERATIONS; i++) {
+            if (batched.record(cards.get(i), SpacedRepetition.Grade.GOOD, now, 3_000, 1)) {
+                batched.flush();
+            }
+        }
+        batched.flush();
+        long batchedNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "due queue over 100k cards: " + queueMicros + " us, plan: " + planText.toString().trim()
+                + "; review write per answer: " + singleNanos + " ns, batched: " + batchedNanos + " ns");
+        assertTrue(planText.toString().contains("idx_flashcards_user_due"));
+        assertFalse(planText.toString().contains("TEMP B-TREE"));
+        assertTrue(batchedNanos < singleNanos);
+        // Every answered card moved out of the due window
+        assertEquals(dueBefore - 2 * ITERATIONS, databaseHelper.getDueFlashcardsCount(userId, now));
+        assertTrue(databaseHelper.getNextDueTime(userId) < now);
+    }
+
+    @Test
+    public void reviewStatsStayFlatAsLogGrows() {
+        seedFlashcards(1_000);
+        List<Flashcard> cards = databaseHelper.getUserFlashcardsPage(userId, null, 1_000);
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        // A year of history: 200 answers a day, a fifth of them forgotten
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_REVIEW_LOG
+                + " (user_id, flashcard_id, reviewed_at, grade, answer_ms, flips, last_interval, interval_days)"
+                + " VALUES (?, ?, ?, ?, ?, 1, ?, 1)");
+        long firstDayMillis = EpochDate.startOfDayMillis(EpochDate.today() - 364);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < 365 * 200; i++) {
+                statement.bindLong(1, userId);
+                statement.bindLong(2, cards.get(i % cards.size()).getId());
+                statement.bindLong(3, firstDayMillis + (i / 200) * EpochDate.MILLIS_PER_DAY + (i % 200) * 60_000L);
+                statement.bindLong(4, i % 5 == 0 ? 0 : 2);
+                statement.bindLong(5, 4_000 + i % 3_000);
+                statement.bindLong(6, i % 2); // Every other answer is a recall
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        databaseHelper.rebuildReviewStats(userId);
+
+        // Running totals
+        long start = System.nanoTime();
+        DatabaseHelper.ReviewStats lifetime = null;
+        DatabaseHelper.ReviewStats week = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            lifetime = databaseHelper.getReviewStats(userId);
+            week = databaseHelper.getReviewStatsForLastDays(userId, 7);
+        }
+        long totalsMicros = (System.nanoTime() - start) / 1_000 / ITERATIONS;
+
+        // Aggregating the log on every read
+        start = System.nanoTime();
+        int scanned = 0;
+        for (int i = 0; i < 20; i++) {
+            Cursor cursor = db.rawQuery("SELECT COUNT(*), SUM(last_interval > 0), SUM(last_interval > 0 AND grade > 0),"
+                    + " SUM(answer_ms) FROM " + DatabaseHelper.TABLE_REVIEW_LOG + " WHERE user_id = ?",
+                    new String[]{String.valueOf(userId)});
+            cursor.moveToFirst();
+            scanned = cursor.getInt(0);
+            cursor.close();
+        }
+        long scanMicros = (System.nanoTime() - start) / 1_000 / 20;
+
+        Log.i(TAG, "review stats over " + scanned + " log rows: running totals " + totalsMicros
+                + " us, log scan " + scanMicros + " us");
+        assertEquals(365 * 200, lifetime.reviews);
+        assertEquals(365 * 100, lifetime.recalls);
+        assertEquals(7 * 200, week.reviews);
+        assertEquals(200, week.dailyReviews[6]);
+        assertEquals(0.8f, lifetime.getRetention(), 0.01f);
+        assertTrue(totalsMicros < scanMicros);
+
+        // A study session lands in today's row and the lifetime row
+        ReviewBuffer buffer = new ReviewBuffer(databaseHelper::applyReviews);
+        long now = EpochDate.nowMillis();
+        for (int i = 0; i < 50; i++) {
+            buffer.record(cards.get(i), i < 10 ? SpacedRepetition.Grade.AGAIN : SpacedRepetition.Grade.GOOD,
+                    now + i, 5_000, 2);
+        }
+        buffer.flush();
+        DatabaseHelper.ReviewStats after = databaseHelper.getReviewStats(userId);
+        assertEquals(lifetime.reviews + 50, after.reviews);
+        assertEquals(lifetime.answerMillis + 50 * 5_000L, after.answerMillis);
+        assertEquals(week.reviews + 50, databaseHelper.getReviewStatsForLastDays(userId, 7).reviews);
+
+        // And the totals still match the log
+        databaseHelper.rebuildReviewStats(userId);
+        DatabaseHelper.ReviewStats rebuilt = databaseHelper.getReviewStats(userId);
+        assertEquals(after.reviews, rebuilt.reviews);
+        assertEquals(after.recalls, rebuilt.recalls);
+        assertEquals(after.recalled, rebuilt.recalled);
+        assertEquals(after.answerMillis, rebuilt.answerMillis);
+    }
+
+    // Checkpoints and empties the WAL so the next count starts from zero
+    private void resetWal() {
+        Cursor cursor = databaseHelper.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
+    /**
+     * Commits in the current WAL generation. Every commit (and so every journal sync) ends
+     * with a frame whose "database size after commit" field is non-zero.
+     */
+    private int countWalCommits() throws Exception {
+        File wal = new File(context.getDatabasePath(BENCHMARK_DB).getPath() + "-wal");
+        if (!wal.exists()) {
+            return 0;
+        }
+        byte[] bytes = new byte[(int) wal.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(wal))) {
+            in.readFully(bytes);
+        }
+        if (bytes.length < 32) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes); // Big-endian, as in the WAL format
+        int pageSize = buffer.getInt(8);
+        int salt1 = buffer.getInt(16);
+        int salt2 = buffer.getInt(20);
+
+        int commits = 0;
+        for (int frame = 32; frame + 24 + pageSize <= bytes.length; frame += 24 + pageSize) {
+            // Frames left over from before a checkpoint carry old salts
+            if (buffer.getInt(frame + 8) != salt1 || buffer.getInt(frame + 12) != salt2) {
+                break;
+            }
+            if (buffer.getInt(frame + 4) != 0) {
+                commits++;
+            }
+        }
+        return commits;
+    }
+
+    // 16-bit mono PCM WAV of a 440 Hz tone, so MediaMetadataRetriever has a real header to parse
+    private static void writeWav(File file, int seconds) throws IOException {
+        int sampleRate = 44_100;
+        int dataBytes = seconds * sampleRate * 2;
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + dataBytes)
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) 1).putShort((short) 1).putInt(sampleRate).putInt(sampleRate * 2)
+                .putShort((short) 2).putShort((short) 16)
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(dataBytes);
+
+        ByteBuffer samples = ByteBuffer.allocate(sampleRate * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < sampleRate; i++) {
+            samples.putShort((short) (Math.sin(2 * Math.PI * 440 * i / sampleRate) * 8000));
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(header.array());
+            for (int second = 0; second < seconds; second++) {
+                out.write(samples.array());
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        return bytes;
+    }
+
+    // Bulk-inserts flashcards for the benchmark user in one transaction
+    private void seedFlashcards(int count) {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(
+                "INSERT INTO flashcards (user_id, front_text, back_text, created_at, updated_at) VALUES (?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                statement.bindLong(1, userId);
+                statement.bindString(2, "Seeded question " + i);
+                statement.bindString(3, "Seeded answer " + i);
+                statement.bindLong(4, SEEDED_CREATED_AT);
+                statement.bindLong(5, SEEDED_CREATED_AT);
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    // Inserts one synthetic row per day before today
+    private void seedDailySteps(int days) {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        long today = EpochDate.today();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < days; i++) {
+                db.execSQL("INSERT INTO daily_steps (user_id, date, step_count, goal) VALUES (?, ?, ?, 10000)",
+                        new Object[]{userId, today - 1 - i, 3000 + (i % 7000)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // The user's audio note with this title, or null
+    private AudioNote findAudioNote(String title) {
+        for (AudioNote audioNote : databaseHelper.getUserAudioNotes(userId)) {
+            if (title.equals(audioNote.getTitle())) {
+                return audioNote;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.stepnotev2;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmarks for the flashcard list: the old inflate-every-row LinearLayout
+ * against the recycled FlashcardAdapter, on a 5,000-card list laid out off screen.
+ * Timings and allocations are written to logcat under the "FlashcardListBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FlashcardListBenchmarkTest {
+
+    private static final String TAG = "FlashcardListBenchmark";
+    private static final int CARD_COUNT = 5_000;
+    private static final int FRAMES = 240;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private List<Flashcard> cards;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_StepNotev2);
+        cards = new ArrayList<>(CARD_COUNT);
+        for (int i = 0; i < CARD_COUNT; i++) {
+            Flashcard card = new Flashcard(1, "Question " + i, "Answer " + i, 1_755_086_400_000L);
+            card.setId(CARD_COUNT - i);
+            cards.add(card);
+        }
+    }
+
+    @Test
+    public void recycledListBindsOnlyVisibleRowsAndScrollsWithinFrame() {
+        instrumentation.runOnMainSync(() -> {
+            // Old pattern: one inflated item view per card
+            LinearLayout container = new LinearLayout(context);
+            container.setOrientation(LinearLayout.VERTICAL);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            LayoutInflater inflater = LayoutInflater.from(context);
+            for (int i = 0; i < cards.size(); i++) {
+                View view = inflater.inflate(R.layout.item_flashcard, container, false);
+                ((TextView) view.findViewById(R.id.tvCardNumber)).setText("#" + (i + 1));
+                ((TextView) view.findViewById(R.id.tvQuestion)).setText(cards.get(i).getFrontText());
+                ((TextView) view.findViewById(R.id.tvAnswer)).setText(cards.get(i).getBackText());
+                container.addView(view);
+            }
+            layout(container, View.MeasureSpec.UNSPECIFIED);
+            long inflateAllMillis = (System.nanoTime() - start) / 1_000_000;
+            long inflateAllBytes = allocatedBytes() - allocatedBefore;
+            int inflatedViews = container.getChildCount();
+
+            // Recycled: the first submission to an empty adapter is applied at once
+            CountingAdapter adapter = new CountingAdapter();
+            RecyclerView recyclerView = newRecyclerView(adapter);
+            allocatedBefore = allocatedBytes();
+            start = System.nanoTime();
+            adapter.submitList(new ArrayList<>(cards));
+            layout(recyclerView, View.MeasureSpec.EXACTLY);
+            long firstLayoutMillis = (System.nanoTime() - start) / 1_000_000;
+            long firstLayoutBytes = allocatedBytes() - allocatedBefore;
+
+            // A quarter screen per frame; scrollBy lays out and binds the rows coming into view
+            long[] frameNanos = new long[FRAMES];
+            allocatedBefore = allocatedBytes();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                start = System.nanoTime();
+                recyclerView.scrollBy(0, HEIGHT / 4);
+                frameNanos[frame] = System.nanoTime() - start;
+            }
+            long scrollBytes = allocatedBytes() - allocatedBefore;
+            Arrays.sort(frameNanos);
+
+            Log.i(TAG, "inflate all " + CARD_COUNT + ": " + inflateAllMillis + " ms, " + inflatedViews
+                    + " item views, " + inflateAllBytes / 1024 + " KB; recycled first layout: " + firstLayoutMillis
+                    + " ms, " + adapter.created + " item views, " + firstLayoutBytes / 1024 + " KB; scroll frame p50 "
+                    + frameNanos[FRAMES / 2] / 1_000 + " us, p99 " + frameNanos[FRAMES * 99 / 100] / 1_000
+                    + " us, " + scrollBytes / 1024 / FRAMES + " KB/frame, " + adapter.created + " item views after "
+                    + adapter.bound + " binds");
+            assertEquals(CARD_COUNT, inflatedViews);
+            assertTrue(adapter.created < 50);
+            assertTrue(firstLayoutMillis < inflateAllMillis);
+            assertTrue(frameNanos[FRAMES / 2] < 16_000_000L);
+        });
+    }
+
+    @Test
+    public void editPatchesOneRowAfterOffThreadDiff() throws Exception {
+        CountingAdapter adapter = new CountingAdapter();
+        RecyclerView[] recyclerView = new RecyclerView[1];
+        instrumentation.runOnMainSync(() -> {
+            recyclerView[0] = newRecyclerView(adapter);
+            adapter.submitList(new ArrayList<>(cards));
+            layout(recyclerView[0], View.MeasureSpec.EXACTLY);
+            adapter.bound = 0;
+        });
+
+        // Same list with the first card edited, as FlashcardsFragment.updateFlashcard submits it
+        List<Flashcard> edited = new ArrayList<>(cards);
+        Flashcard card = new Flashcard(1, "Edited question", "Answer 0", cards.get(0).getCreatedAt());
+        card.setId(cards.get(0).getId());
+        edited.set(0, card);
+
+        CountDownLatch committed = new CountDownLatch(1);
+        long[] diffNanos = new long[1];
+        instrumentation.runOnMainSync(() -> {
+            long start = System.nanoTime();
+            adapter.submitList(edited, () -> {
+                diffNanos[0] = System.nanoTime() - start;
+                committed.countDown();
+            });
+        });
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+
+        instrumentation.runOnMainSync(() -> {
+            layout(recyclerView[0], View.MeasureSpec.EXACTLY);
+            Log.i(TAG, "edit one of " + CARD_COUNT + ": diff + commit " + diffNanos[0] / 1_000 + " us, "
+                    + adapter.bound + " rows rebound");
+            assertEquals(1, adapter.bound);
+            assertEquals("Edited question", adapter.getFlashcard(0).getFrontText());
+        });
+    }
+
+    private RecyclerView newRecyclerView(FlashcardAdapter adapter) {
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setItemAnimator(null); // Measure binds, not change animations
+        recyclerView.setAdapter(adapter);
+        return recyclerView;
+    }
+
+    private static void layout(View view, int heightMode) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, heightMode));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    // Bytes allocated by the runtime so far; ART reports it as a string
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static class CountingAdapter extends FlashcardAdapter {
+        int created = 0;
+        int bound = 0;
+
+        @NonNull
+        @Override
+        public FlashcardViewHolder onCreateViewHolder(@NonNull android.view.ViewGroup parent, int viewType) {
+            created++;
+            return super.onCreateViewHolder(parent, viewType);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull FlashcardViewHolder holder, int position) {
+            bound++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.stepnotev2;
+
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports several picked audio files as notes in one go.
+ *
+ * Each file is copied, and its metadata read, by its own AudioImporter on a pool of at most
+ * {@link #MAX_CONCURRENT} threads. Once every copy has finished the notes are inserted
+ * together in one transaction, titled after their display names; one whose content is
+ * already stored is kept only as a reference to that file. A file that cannot be
+ * copied is counted and skipped; {@link #cancel()} stops the running copies and deletes
+ * the finished ones, so nothing is inserted. Call from a background thread.
+ */
+public class AudioBatchImporter {
+
+    private static final String TAG = "AudioBatchImporter";
+
+    // More parallel copies than this only contend for the same storage
+    public static final int MAX_CONCURRENT = 4;
+
+    public interface Source {
+        // Display name; the file is stored under it and titled after it
+        String getName() throws IOException;
+
+        // Opened on the copy thread and closed once copied
+        FileInputStream open() throws IOException;
+    }
+
+    public interface ProgressListener {
+        // Called on a copy thread; totalBytes covers the files opened so far
+        void onProgress(int filesDone, int fileCount, long bytesCopied, long totalBytes);
+    }
+
+    public static final class Result {
+        public int imported;
+        public int failed;
+        public boolean cancelled;
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final int concurrency;
+    private final Set<AudioImporter> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public AudioBatchImporter(DatabaseHelper databaseHelper) {
+        this(databaseHelper, MAX_CONCURRENT);
+    }
+
+    public AudioBatchImporter(DatabaseHelper databaseHelper, int concurrency) {
+        this.databaseHelper = databaseHelper;
+        this.concurrency = concurrency;
+    }
+
+    public Result importAll(int userId, List<? extends Source> sources, File audioDir,
+                            ProgressListener listener) {
+        Result result = new Result();
+        ThreadPoolExecutor pool = newPool(Math.max(1, Math.min(concurrency, sources.size())));
+        List<AudioNote> copied = new ArrayList<>(sources.size());
+
+        try {
+            List<Future<AudioNote>> copies = new ArrayList<>(sources.size());
+            for (Source source : sources) {
+                copies.add(pool.submit(() -> copy(source, audioDir, sources.size(), listener)));
+            }
+            // Wait for every copy, so none is still writing once the batch returns
+            for (Future<AudioNote> copy : copies) {
+                try {
+                    AudioNote audioNote = await(copy);
+                    if (audioNote != null) {
+                        copied.add(audioNote);
+                    }
+                } catch (ExecutionException e) {
+                    result.failed++;
+                    Log.w(TAG, "Could not import an audio file", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (cancelled) {
+            deleteFiles(copied);
+            result.cancelled = true;
+            return result;
+        }
+        if (copied.isEmpty()) {
+            return result;
+        }
+
+        try {
+            result.imported = databaseHelper.addAudioNotes(userId, copied);
+        } catch (RuntimeException e) {
+            deleteFiles(copied);
+            throw e;
+        }
+        // A note the database turned down keeps id 0; its file would belong to nothing
+        for (AudioNote audioNote : copied) {
+            if (audioNote.getId() == 0) {
+                new File(audioNote.getFilePath()).delete();
+                result.failed++;
+            }
+        }
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (AudioImporter importer : running) {
+            importer.cancel();
+        }
+    }
+
+    // Copies one file; null if the batch was cancelled first
+    private AudioNote copy(Source source, File audioDir, int fileCount, ProgressListener listener)
+            throws IOException {
+        AudioImporter importer = new AudioImporter();
+        running.add(importer);
+        try {
+            // Checked after registering, so a cancel() in between still reaches this copy
+            if (cancelled) {
+                return null;
+            }
+            String fileName = source.getName();
+            AudioImporter.Result result;
+            try (FileInputStream input = source.open()) {
+                long size = sizeOf(input.getChannel());
+                if (size > 0) {
+                    totalBytes.addAndGet(size);
+                }
+                long[] reported = new long[1];
+                result = importer.importAudio(input.getChannel(), size, audioDir, fileName, (bytes, total) -> {
+                    bytesCopied.addAndGet(bytes - reported[0]);
+                    reported[0] = bytes;
+                    reportProgress(listener, fileCount);
+                });
+            }
+            if (result.cancelled) {
+                return null;
+            }
+
+            filesDone.incrementAndGet();
+            reportProgress(listener, fileCount);
+            return result.toAudioNote(AudioImporter.defaultTitle(fileName));
+        } finally {
+            running.remove(importer);
+        }
+    }
+
+    private void reportProgress(ProgressListener listener, int fileCount) {
+        if (listener != null) {
+            listener.onProgress(filesDone.get(), fileCount, bytesCopied.get(), totalBytes.get());
+        }
+    }
+
+    // Size of a regular file, or -1 for a pipe (which reports 0)
+    private static long sizeOf(FileChannel channel) {
+        try {
+            long size = channel.size();
+            return size > 0 ? size : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static AudioNote await(Future<AudioNote> copy) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return copy.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void deleteFiles(List<AudioNote> audioNotes) {
+        for (AudioNote audioNote : audioNotes) {
+            File file = new File(audioNote.getFilePath());
+            if (!file.delete() && file.exists()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "stepnote-import-" + threadNumber.getAndIncrement());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.stepnotev2;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Copies a picked audio file into the app's audio directory and reads its metadata.
+ *
+ * The copy goes channel to channel through one reused direct buffer, {@link #CHUNK_SIZE}
+ * bytes at a time, and each chunk is hashed (SHA-256) on its way through, so the content
+ * hash costs no second read. Data goes to a ".part" file that is renamed into place only
+ * once complete; duration and title are read from that file while it is still open, so it
+ * is never reopened. {@link #cancel()} stops after the current chunk and deletes the
+ * partial file. Call from a background thread.
+ */
+public class AudioImporter {
+
+    private static final String TAG = "AudioImporter";
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+    static final String PARTIAL_SUFFIX = ".part";
+    static final String HASH_ALGORITHM = "SHA-256";
+
+    public interface ProgressListener {
+        // Called on the import thread after each chunk; totalBytes is -1 if unknown
+        void onProgress(long bytesCopied, long totalBytes);
+    }
+
+    // Reads what the notes table keeps about a recording from an open, readable descriptor
+    interface MetadataReader {
+        void read(FileDescriptor fd, Result result);
+    }
+
+    public static final class Result {
+        public File file; // Null if cancelled
+        public long bytesCopied;
+        public long durationMillis = -1; // -1 if the file does not say
+        public String title; // Embedded title, or null
+        public int sampleRate; // Hz, of the first audio track; 0 if the file does not say
+        public int channelCount; // 0 if the file does not say
+        public int bitrate; // Bits per second; 0 if the file does not say
+        public String contentHash; // Lowercase hex SHA-256 of the copied bytes; null if cancelled
+        public boolean cancelled;
+
+        // Copies the stream metadata read from the file onto audioNote
+        void applyTo(AudioNote audioNote) {
+            audioNote.setDurationMs(durationMillis);
+            audioNote.setSampleRate(sampleRate);
+            audioNote.setChannelCount(channelCount);
+            audioNote.setBitrate(bitrate);
+        }
+
+        // The note to insert for this copy, before it has a user or id
+        public AudioNote toAudioNote(String title) {
+            AudioNote audioNote = new AudioNote(0, title, file.getAbsolutePath(), formatDuration(durationMillis), 0);
+            audioNote.setContentHash(contentHash);
+            audioNote.setFileSize(bytesCopied);
+            applyTo(audioNote);
+            return audioNote;
+        }
+    }
+
+    private final MetadataReader metadataReader;
+    private volatile boolean cancelled = false;
+
+    public AudioImporter() {
+        this(AudioImporter::readMetadata);
+    }
+
+    AudioImporter(MetadataReader metadataReader) {
+        this.metadataReader = metadataReader;
+    }
+
+    /**
+     * Copies {@code source} into {@code audioDir} as {@code fileName}, or a numbered variant
+     * if that name is taken, and returns where it went with its metadata.
+     */
+    public Result importAudio(ParcelFileDescriptor source, File audioDir, String fileName,
+                              ProgressListener listener) throws IOException {
+        long statSize = source.getStatSize(); // -1 for pipes
+        try (FileInputStream input = new FileInputStream(source.getFileDescriptor())) {
+            return importAudio(input.getChannel(), statSize, audioDir, fileName, listener);
+        }
+    }
+
+    Result importAudio(ReadableByteChannel source, long totalBytes, File audioDir, String fileName,
+                       ProgressListener listener) throws IOException {
+        if (!audioDir.isDirectory() && !audioDir.mkdirs()) {
+            throw new IOException("Cannot create " + audioDir);
+        }
+        Result result = new Result();
+        File destination = claimFile(audioDir, fileName);
+        File partial = new File(audioDir, destination.getName() + PARTIAL_SUFFIX);
+
+        boolean complete = false;
+        try (RandomAccessFile output = new RandomAccessFile(partial, "rw")) {
+            // Pre-sized, so the file system can lay it out in one go; trimmed below if it came up short
+            if (totalBytes > 0) {
+                output.setLength(totalBytes);
+            }
+            FileChannel out = output.getChannel();
+            MessageDigest digest = newDigest();
+            result.bytesCopied = copy(source, totalBytes, out, digest, listener);
+            if (cancelled) {
+                result.cancelled = true;
+                return result;
+            }
+            output.setLength(result.bytesCopied);
+            out.force(false);
+            result.contentHash = toHex(digest.digest());
+
+            metadataReader.read(output.getFD(), result);
+            complete = true;
+        } finally {
+            if (!complete && !partial.delete() && partial.exists()) {
+                Log.w(TAG, "Could not delete " + partial);
+            }
+        }
+
+        if (!partial.renameTo(destination)) {
+            partial.delete();
+            throw new IOException("Cannot move " + partial + " into place");
+        }
+        result.file = destination;
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the bytes written, each one also fed to digest; stops early, leaving the rest,
+     * once cancelled. Every byte passes through the buffer, even from a seekable source:
+     * transferTo would be quicker but keeps the data from the digest, and hashing a direct
+     * buffer happens natively on Android, without a copy onto the Java heap.
+     */
+    private long copy(ReadableByteChannel source, long totalBytes, FileChannel out, MessageDigest digest,
+                      ProgressListener listener) throws IOException {
+        long copied = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        while (!cancelled) {
+            int n = source.read(buffer);
+            if (n == -1) {
+                break;
+            }
+            // Fill the whole buffer before writing, so small reads from a pipe don't mean small writes
+            if (buffer.hasRemaining() && n > 0) {
+                continue;
+            }
+            copied += drain(buffer, out, digest);
+            reportProgress(listener, copied, totalBytes);
+        }
+        if (!cancelled && buffer.position() > 0) {
+            copied += drain(buffer, out, digest);
+            reportProgress(listener, copied, totalBytes);
+        }
+        return copied;
+    }
+
+    private static int drain(ByteBuffer buffer, FileChannel out, MessageDigest digest) throws IOException {
+        buffer.flip();
+        int written = buffer.remaining();
+        // update() consumes what it hashes; rewind so the same bytes are then written
+        buffer.mark();
+        digest.update(buffer);
+        buffer.reset();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static void reportProgress(ProgressListener listener, long copied, long totalBytes) {
+        if (listener != null) {
+            listener.onProgress(copied, totalBytes);
+        }
+    }
+
+    private static void readTrackFormat(FileDescriptor fd, Result result) {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(fd);
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    if (format.containsKey(MediaFormat.KEY_SAMPLE_RATE)) {
+                        result.sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    }
+                    if (format.containsKey(MediaFormat.KEY_CHANNEL_COUNT)) {
+                        result.channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    }
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read audio track format", e);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(HASH_ALGORITHM + " not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    // File name without its extension, as the note's default title
+    public static String defaultTitle(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    // Duration as the notes list shows it, "m:ss", or "Unknown"
+    public static String formatDuration(long durationMillis) {
+        if (durationMillis < 0) {
+            return "Unknown";
+        }
+        long seconds = durationMillis / 1000;
+        return String.format(Locale.getDefault(), "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * fileName in dir, or "name (2).ext", "name (3).ext"... if that is taken. Its partial
+     * file is created here, atomically, so imports running side by side never share a name.
+     */
+    static File claimFile(File dir, String fileName) throws IOException {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        File file = new File(dir, fileName);
+        for (int n = 2; file.exists() || !new File(dir, file.getName() + PARTIAL_SUFFIX).createNewFile(); n++) {
+            file = new File(dir, base + " (" + n + ")" + extension);
+        }
+        return file;
+    }
+
+    // Sample rate and channels come from the track format; the retriever only has them from API 31
+    static void readMetadata(FileDescriptor fd, Result result) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(fd);
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration != null) {
+                result.durationMillis = Long.parseLong(duration);
+            }
+            result.title = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
+            String bitrate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE);
+            if (bitrate != null) {
+                result.bitrate = Integer.parseInt(bitrate);
+            }
+            readTrackFormat(fd, result);
+        } catch (RuntimeException e) {
+            // Not a format the platform can parse; the note is still imported
+            Log.w(TAG, "Could not read audio metadata", e);
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Error releasing retriever", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.stepnotev2;
+
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads duration, sample rate, channels, bitrate and size for audio notes saved before
+ * those were stored at import (database version 15), and writes them back.
+ *
+ * Notes are taken {@link #BATCH_SIZE} at a time in id order; each file is read once, even
+ * when several notes share it, and a batch is written in one transaction so the list
+ * reloads once per batch. A missing or unreadable file is stored with what is known (size
+ * 0 if missing) so it is not read again. {@link #cancel()} stops after the current file;
+ * the next run carries on where this one stopped. Call from a background thread.
+ */
+public class AudioMetadataBackfill {
+
+    private static final String TAG = "AudioMetadataBackfill";
+
+    static final int BATCH_SIZE = 20;
+
+    private final DatabaseHelper databaseHelper;
+    private final AudioImporter.MetadataReader metadataReader;
+    private volatile boolean cancelled = false;
+
+    public AudioMetadataBackfill(DatabaseHelper databaseHelper) {
+        this(databaseHelper, AudioImporter::readMetadata);
+    }
+
+    AudioMetadataBackfill(DatabaseHelper databaseHelper, AudioImporter.MetadataReader metadataReader) {
+        this.databaseHelper = databaseHelper;
+        this.metadataReader = metadataReader;
+    }
+
+    // Returns the number of notes updated
+    public int run() {
+        int updated = 0;
+        int afterId = 0;
+        Set<String> read = new HashSet<>();
+
+        while (!cancelled) {
+            Map<Integer, String> batch = databaseHelper.getAudioNotesMissingMetadata(afterId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<AudioNote> files = new ArrayList<>(batch.size());
+            for (Map.Entry<Integer, String> note : batch.entrySet()) {
+                afterId = note.getKey();
+                // One update covers every note on the path
+                if (cancelled || !read.add(note.getValue())) {
+                    continue;
+                }
+                files.add(readFile(note.getValue()));
+            }
+            if (!files.isEmpty()) {
+                updated += databaseHelper.updateAudioMetadata(files);
+            }
+        }
+        return updated;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private AudioNote readFile(String filePath) {
+        AudioNote metadata = new AudioNote();
+        metadata.setFilePath(filePath);
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            metadata.setFileSize(0);
+            return metadata;
+        }
+
+        AudioImporter.Result result = new AudioImporter.Result();
+        try (FileInputStream input = new FileInputStream(file)) {
+            metadata.setFileSize(input.getChannel().size());
+            metadataReader.read(input.getFD(), result);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + filePath, e);
+            metadata.setFileSize(file.length());
+        }
+        result.applyTo(metadata);
+        return metadata;
+    }
+}
@@ -6,12 +6,18 @@ public class AudioNote {
     private String title;
     private String filePath;
     private String duration;
-    private String createdAt;
+    private long createdAt; // Epoch millis
+    private String contentHash; // SHA-256 of the file, hex; null if unknown
+    private long durationMs = -1; // -1 if unknown
+    private int sampleRate; // Hz; 0 if unknown
+    private int channelCount; // 0 if unknown
+    private int bitrate; // Bits per second; 0 if unknown
+    private long fileSize = -1; // Bytes; -1 if the file hasn't been read
 
     // Constructors
     public AudioNote() {}
 
-    public AudioNote(int userId, String title, String filePath, String duration, String createdAt) {
+    public AudioNote(int userId, String title, String filePath, String duration, long createdAt) {
         this.userId = userId;
         this.title = title;
         this.filePath = filePath;
@@ -60,14 +66,62 @@ public class AudioNote {
         this.duration = duration;
     }
 
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public void setChannelCount(int channelCount) {
+        this.channelCount = channelCount;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(int bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
     @Override
     public String toString() {
         return "AudioNote{" +
@@ -76,7 +130,8 @@ public class AudioNote {
                 ", title='" + title + '\'' +
                 ", filePath='" + filePath + '\'' +
                 ", duration='" + duration + '\'' +
-                ", createdAt='" + createdAt + '\'' +
+                ", durationMs=" + durationMs +
+                ", createdAt=" + createdAt +
                 '}';
     }
 }
\ No newline at end of file
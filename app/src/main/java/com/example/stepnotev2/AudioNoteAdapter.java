@@ -0,0 +1,158 @@
+package com.example.stepnotev2;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycled list of audio notes for AudioNotesFragment.
+ *
+ * Rows are immutable {@link Row}s whose display strings are formatted when the row is
+ * built, on the thread that loaded the notes, so binding is three setText calls. Item
+ * views for the first screen can be inflated ahead of time off the main thread with
+ * {@link #preinflate}. Ids are the note ids; submitted lists must not be changed afterwards.
+ */
+public class AudioNoteAdapter extends ListAdapter<AudioNoteAdapter.Row, AudioNoteAdapter.AudioNoteViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Row> DIFF_CALLBACK = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.title.equals(newItem.title)
+                    && oldItem.durationLabel.equals(newItem.durationLabel)
+                    && oldItem.dateLabel.equals(newItem.dateLabel);
+        }
+    };
+
+    // One audio note as the list shows it
+    public static final class Row {
+        public final int id;
+        public final AudioNote note; // Not changed once the row is built
+        public final String title;
+        public final String durationLabel;
+        public final String dateLabel;
+
+        public Row(AudioNote note) {
+            this.id = note.getId();
+            this.note = note;
+            this.title = note.getTitle() != null ? note.getTitle() : "";
+            // Formatted from duration_ms where it is known; older notes keep their stored text
+            this.durationLabel = note.getDurationMs() >= 0 ? AudioImporter.formatDuration(note.getDurationMs())
+                    : note.getDuration() != null ? note.getDuration() : "";
+            this.dateLabel = note.getCreatedAt() > 0 ? EpochDate.formatDisplayDate(note.getCreatedAt()) : "";
+        }
+
+        // Call off the main thread, next to the query that loaded the notes
+        public static List<Row> from(List<AudioNote> notes) {
+            List<Row> rows = new ArrayList<>(notes.size());
+            for (AudioNote note : notes) {
+                rows.add(new Row(note));
+            }
+            return rows;
+        }
+    }
+
+    public interface OnAudioNoteClickListener {
+        void onAudioNoteClick(AudioNote audioNote);
+        void onAudioNoteDelete(AudioNote audioNote);
+    }
+
+    private OnAudioNoteClickListener listener;
+
+    // Item views inflated in the background, handed out before inflating on the main thread
+    private final ArrayDeque<View> preinflated = new ArrayDeque<>();
+
+    public AudioNoteAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+
+    public void setOnAudioNoteClickListener(OnAudioNoteClickListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Inflates {@code count} item views for {@code parent} on a background thread, so the
+     * first layout only binds. Views that are not ready in time are inflated as usual.
+     */
+    public void preinflate(RecyclerView parent, int count) {
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(parent.getContext());
+        for (int i = 0; i < count; i++) {
+            // Finished views are delivered on the main thread
+            inflater.inflate(R.layout.item_audio_note, parent, (view, resid, p) -> preinflated.add(view));
+        }
+    }
+
+    int getPreinflatedCount() {
+        return preinflated.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public AudioNoteViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = preinflated.poll();
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_audio_note, parent, false);
+        }
+        AudioNoteViewHolder holder = new AudioNoteViewHolder(view);
+
+        // Set once per holder; the delete button takes its own clicks, so they never reach the row
+        holder.itemView.setOnClickListener(v -> dispatchClick(holder, false));
+        holder.btnDelete.setOnClickListener(v -> dispatchClick(holder, true));
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull AudioNoteViewHolder holder, int position) {
+        Row row = getItem(position);
+        holder.tvTitle.setText(row.title);
+        holder.tvDuration.setText(row.durationLabel);
+        holder.tvCreatedDate.setText(row.dateLabel);
+    }
+
+    private void dispatchClick(AudioNoteViewHolder holder, boolean delete) {
+        int position = holder.getBindingAdapterPosition();
+        if (listener == null || position == RecyclerView.NO_POSITION) {
+            return; // Removed while the click was in flight
+        }
+        AudioNote audioNote = getItem(position).note;
+        if (delete) {
+            listener.onAudioNoteDelete(audioNote);
+        } else {
+            listener.onAudioNoteClick(audioNote);
+        }
+    }
+
+    public static class AudioNoteViewHolder extends RecyclerView.ViewHolder {
+        TextView tvTitle;
+        TextView tvDuration;
+        TextView tvCreatedDate;
+        TextView btnDelete;
+
+        public AudioNoteViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvTitle = itemView.findViewById(R.id.tvAudioTitle);
+            tvDuration = itemView.findViewById(R.id.tvAudioDuration);
+            tvCreatedDate = itemView.findViewById(R.id.tvCreatedDate);
+            btnDelete = itemView.findViewById(R.id.btnDelete);
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.stepnotev2;
 
 import android.app.AlertDialog;
+import android.content.ClipData;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.database.Cursor;
 import android.media.MediaPlayer;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -16,18 +21,21 @@ import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -35,10 +43,33 @@ public class AudioNotesFragment extends Fragment {
 
     private static final String TAG = "AudioNotesFragment";
 
-    private LinearLayout audioNotesContainer;
+    // Search shows the best matches only, without paging
+    private static final int SEARCH_RESULT_LIMIT = 100;
+    // Item views inflated in the background for the first screen of the list
+    private static final int PREINFLATED_ROWS = 8;
+
+    private RecyclerView rvAudioNotes;
+    private View audioNotesEmptyState;
+    private TextView tvAudioNotesEmptyTitle;
+    private TextView tvAudioNotesEmptyMessage;
+    private AudioNoteAdapter audioNoteAdapter;
+    private LinearLayoutManager audioNotesLayoutManager;
+    private EditText etSearchAudioNotes;
     private LinearLayout btnAddAudioNote;
     private TextView tvAudioNotesCount;
-    private DatabaseHelper databaseHelper;
+    private StepNoteRepository repository;
+
+    // Paging state - audioNoteRows holds the pages loaded so far
+    private List<AudioNoteAdapter.Row> audioNoteRows = new ArrayList<>();
+    private int currentUserId = SessionManager.NO_USER;
+    private boolean hasMoreAudioNotes = false;
+    private boolean isLoadingPage = false;
+    // Bumped on every full reload so a page requested before it is dropped
+    private int loadGeneration = 0;
+
+    // Search - an empty query means the normal paged list is showing
+    private String searchQuery = "";
+    private DebouncedSearch audioNoteSearch;
 
     // Media player for audio playback
     private MediaPlayer mediaPlayer;
@@ -46,6 +77,14 @@ public class AudioNotesFragment extends Fragment {
     private Handler playbackHandler = new Handler();
     private Runnable updateSeekBarRunnable;
 
+    // Re-runs the list query when audio notes (or the signed-in user) change
+    private InvalidationTracker.Observation audioNotesObservation;
+
+    // Cancels the import in progress, so leaving the screen stops it and deletes partial copies
+    private Runnable cancelImport;
+    private AlertDialog importDialog;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     // File picker launcher
     private ActivityResultLauncher<Intent> audioPickerLauncher;
 
@@ -53,20 +92,94 @@ public class AudioNotesFragment extends Fragment {
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_audio_notes, container, false);
 
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = StepNoteRepository.getInstance(getContext());
+        searchQuery = "";
+        audioNoteSearch = new DebouncedSearch(this::searchAudioNotes);
 
         initViews(view);
         setupFilePicker();
         setupClickListeners();
         loadAudioNotes();
+        audioNotesObservation = repository.getDatabaseHelper().getInvalidationTracker().observe(
+                getViewLifecycleOwner(), this::loadAudioNotes,
+                DatabaseHelper.TABLE_AUDIO_NOTES, DatabaseHelper.TABLE_USERS);
+        // Fills in durations for notes imported before they were stored; the observer reloads as it goes
+        repository.backfillAudioMetadata();
 
         return view;
     }
 
     private void initViews(View view) {
-        audioNotesContainer = view.findViewById(R.id.audioNotesContainer);
+        rvAudioNotes = view.findViewById(R.id.rvAudioNotes);
+        audioNotesEmptyState = view.findViewById(R.id.audioNotesEmptyState);
+        tvAudioNotesEmptyTitle = view.findViewById(R.id.tvAudioNotesEmptyTitle);
+        tvAudioNotesEmptyMessage = view.findViewById(R.id.tvAudioNotesEmptyMessage);
         btnAddAudioNote = view.findViewById(R.id.btnAddAudioNote);
         tvAudioNotesCount = view.findViewById(R.id.tvAudioNotesCount);
+        etSearchAudioNotes = view.findViewById(R.id.etSearchAudioNotes);
+
+        setupAudioNoteList();
+
+        etSearchAudioNotes.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchQueryChanged(s.toString().trim());
+            }
+        });
+    }
+
+    private void setupAudioNoteList() {
+        audioNoteAdapter = new AudioNoteAdapter();
+        audioNoteAdapter.setOnAudioNoteClickListener(new AudioNoteAdapter.OnAudioNoteClickListener() {
+            @Override
+            public void onAudioNoteClick(AudioNote audioNote) {
+                playAudioNote(audioNote);
+            }
+
+            @Override
+            public void onAudioNoteDelete(AudioNote audioNote) {
+                showDeleteConfirmDialog(audioNote);
+            }
+        });
+
+        audioNotesLayoutManager = new LinearLayoutManager(getContext());
+        rvAudioNotes.setLayoutManager(audioNotesLayoutManager);
+        rvAudioNotes.setHasFixedSize(true);
+        rvAudioNotes.setAdapter(audioNoteAdapter);
+        // Inflated while the first page loads
+        audioNoteAdapter.preinflate(rvAudioNotes, PREINFLATED_ROWS);
+
+        // Fetch the next page once the list is within half a page of its end
+        rvAudioNotes.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = audioNotesLayoutManager.findLastVisibleItemPosition();
+                if (dy > 0 && lastVisible >= audioNoteRows.size() - DatabaseHelper.PAGE_SIZE / 2) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    private void onSearchQueryChanged(String query) {
+        if (query.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = query;
+
+        if (query.isEmpty()) {
+            // Back to the paged list straight away
+            audioNoteSearch.cancel();
+            loadAudioNotes();
+        } else {
+            audioNoteSearch.onQueryChanged(query);
+        }
     }
 
     private void setupFilePicker() {
@@ -74,81 +187,140 @@ public class AudioNotesFragment extends Fragment {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == getActivity().RESULT_OK && result.getData() != null) {
-                        Uri audioUri = result.getData().getData();
-                        if (audioUri != null) {
-                            importAudioFile(audioUri);
+                        List<Uri> audioUris = getPickedUris(result.getData());
+                        if (audioUris.size() == 1) {
+                            importAudioFile(audioUris.get(0));
+                        } else if (audioUris.size() > 1) {
+                            importAudioFiles(audioUris);
                         }
                     }
                 }
         );
     }
 
+    // Several files arrive as ClipData, a single one as the intent's data
+    private static List<Uri> getPickedUris(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        ClipData clipData = data.getClipData();
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                uris.add(clipData.getItemAt(i).getUri());
+            }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        }
+        return uris;
+    }
+
     private void setupClickListeners() {
         btnAddAudioNote.setOnClickListener(v -> showAddAudioNoteDialog());
     }
 
+    // Reloads the first page (or as many notes as are already showing) and the total count
     private void loadAudioNotes() {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser == null) {
-            Toast.makeText(getContext(), "Please sign in to view audio notes", Toast.LENGTH_SHORT).show();
+        if (audioNotesObservation != null) {
+            audioNotesObservation.markCurrent();
+        }
+        if (!searchQuery.isEmpty()) {
+            // Refresh the search results instead of replacing them with the full list
+            searchAudioNotes(searchQuery);
             return;
         }
 
-        List<AudioNote> audioNotes = databaseHelper.getUserAudioNotes(currentUser.getId());
-        displayAudioNotes(audioNotes);
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        int limit = Math.max(DatabaseHelper.PAGE_SIZE, audioNoteRows.size());
+        int generation = ++loadGeneration;
+        isLoadingPage = false;
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            FirstPage firstPage = new FirstPage();
+            firstPage.userId = currentUser.getId();
+            firstPage.rows = AudioNoteAdapter.Row.from(
+                    databaseHelper.getUserAudioNotesPage(currentUser.getId(), null, limit));
+            firstPage.totalCount = databaseHelper.getUserAudioNotesCount(currentUser.getId());
+            firstPage.totalDurationMillis = databaseHelper.getUserAudioNotesDurationMillis(currentUser.getId());
+            return firstPage;
+        }, firstPage -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            if (firstPage == null) {
+                Toast.makeText(getContext(), "Please sign in to view audio notes", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            currentUserId = firstPage.userId;
+            audioNoteRows = firstPage.rows;
+            hasMoreAudioNotes = audioNoteRows.size() == limit;
+            displayAudioNotes();
 
-        // Update count
-        tvAudioNotesCount.setText(audioNotes.size() + " notes");
+            // Update count
+            tvAudioNotesCount.setText(firstPage.totalCount + " notes"
+                    + (firstPage.totalDurationMillis > 0 ? " • " + formatTotalDuration(firstPage.totalDurationMillis) : ""));
+        });
     }
 
-    private void displayAudioNotes(List<AudioNote> audioNotes) {
-        audioNotesContainer.removeAllViews();
+    // Replaces the list with the best title matches for query
+    private StepNoteRepository.Task searchAudioNotes(String query) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        int generation = ++loadGeneration;
+        isLoadingPage = false;
+
+        return repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            return currentUser != null
+                    ? AudioNoteAdapter.Row.from(databaseHelper.searchAudioNotes(currentUser.getId(), query, SEARCH_RESULT_LIMIT))
+                    : null;
+        }, results -> {
+            if (generation != loadGeneration || results == null) {
+                return;
+            }
+            audioNoteRows = results;
+            hasMoreAudioNotes = false;
+            displayAudioNotes();
+            tvAudioNotesCount.setText(results.size() + (results.size() == 1 ? " match" : " matches"));
+        });
+    }
 
-        if (audioNotes.isEmpty()) {
-            showEmptyState();
+    // Appends the page after the last loaded note
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMoreAudioNotes || audioNoteRows.isEmpty()) {
             return;
         }
-
-        for (AudioNote audioNote : audioNotes) {
-            View audioNoteView = createAudioNoteView(audioNote);
-            audioNotesContainer.addView(audioNoteView);
-        }
+        isLoadingPage = true;
+        int generation = loadGeneration;
+        AudioNote lastLoaded = audioNoteRows.get(audioNoteRows.size() - 1).note;
+
+        repository.execute(getViewLifecycleOwner(),
+                () -> AudioNoteAdapter.Row.from(repository.getDatabaseHelper()
+                        .getUserAudioNotesPage(currentUserId, lastLoaded, DatabaseHelper.PAGE_SIZE)),
+                page -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    isLoadingPage = false;
+                    hasMoreAudioNotes = page.size() == DatabaseHelper.PAGE_SIZE;
+                    audioNoteRows.addAll(page);
+                    displayAudioNotes();
+                }, e -> {
+                    if (generation == loadGeneration) {
+                        isLoadingPage = false;
+                    }
+                });
     }
 
-    private View createAudioNoteView(AudioNote audioNote) {
-        View view = LayoutInflater.from(getContext()).inflate(R.layout.item_audio_note, null);
-
-        TextView tvTitle = view.findViewById(R.id.tvAudioTitle);
-        TextView tvDuration = view.findViewById(R.id.tvAudioDuration);
-        TextView tvCreatedDate = view.findViewById(R.id.tvCreatedDate);
-        TextView btnDelete = view.findViewById(R.id.btnDelete);
-
-        // Set audio note data
-        tvTitle.setText(audioNote.getTitle());
-        tvDuration.setText(audioNote.getDuration());
-
-        // Format and set creation date
-        String formattedDate = formatDate(audioNote.getCreatedAt());
-        tvCreatedDate.setText(formattedDate);
-
-        // Set click listener for entire view to play audio
-        view.setOnClickListener(v -> playAudioNote(audioNote));
-
-        // Set delete button click listener - FIXED VERSION
-        btnDelete.setOnClickListener(v -> {
-            // Remove the click listener from parent to prevent play action
-            view.setOnClickListener(null);
-
-            // Show delete confirmation
-            showDeleteConfirmDialog(audioNote);
-
-            // Restore the click listener after a short delay
-            view.postDelayed(() -> {
-                view.setOnClickListener(clickView -> playAudioNote(audioNote));
-            }, 100);
-        });
-
-        return view;
+    // Hands the rows to the adapter, which diffs them against what is showing
+    private void displayAudioNotes() {
+        audioNoteAdapter.submitList(new ArrayList<>(audioNoteRows));
+        rvAudioNotes.setVisibility(audioNoteRows.isEmpty() ? View.GONE : View.VISIBLE);
+        audioNotesEmptyState.setVisibility(audioNoteRows.isEmpty() ? View.VISIBLE : View.GONE);
+        if (audioNoteRows.isEmpty()) {
+            showEmptyState();
+        }
     }
 
     private void playAudioNote(AudioNote audioNote) {
@@ -177,6 +349,7 @@ public class AudioNotesFragment extends Fragment {
         intent.putExtra("AUDIO_TITLE", audioNote.getTitle());
         intent.putExtra("AUDIO_FILE_PATH", audioNote.getFilePath());
         intent.putExtra("AUDIO_DURATION", audioNote.getDuration());
+        intent.putExtra("AUDIO_DURATION_MS", audioNote.getDurationMs());
         startActivity(intent);
     }
 
@@ -234,86 +407,35 @@ public class AudioNotesFragment extends Fragment {
     }
 
     private void deleteAudioNote(AudioNote audioNote) {
-        // Delete from database
-        boolean deleted = databaseHelper.deleteAudioNote(audioNote.getId());
-
-        if (deleted) {
-            // Delete physical file
-            try {
-                File audioFile = new File(audioNote.getFilePath());
-                if (audioFile.exists()) {
-                    audioFile.delete();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error deleting audio file: " + e.getMessage());
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        repository.execute(getViewLifecycleOwner(), () -> {
+            // Also deletes the file, unless another note shares it
+            return databaseHelper.deleteAudioNote(audioNote.getId());
+        }, deleted -> {
+            if (deleted) {
+                Toast.makeText(getContext(), "Audio note deleted successfully! 🗑️", Toast.LENGTH_SHORT).show();
+                loadAudioNotes(); // Refresh the list
+            } else {
+                Toast.makeText(getContext(), "Failed to delete audio note", Toast.LENGTH_SHORT).show();
             }
-
-            Toast.makeText(getContext(), "Audio note deleted successfully! 🗑️", Toast.LENGTH_SHORT).show();
-            loadAudioNotes(); // Refresh the list
-        } else {
-            Toast.makeText(getContext(), "Failed to delete audio note", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
     private void showEmptyState() {
-        // Create the empty state view programmatically instead of inflating
-        LinearLayout emptyStateLayout = new LinearLayout(getContext());
-        emptyStateLayout.setOrientation(LinearLayout.VERTICAL);
-        emptyStateLayout.setGravity(android.view.Gravity.CENTER);
-        emptyStateLayout.setPadding(32, 80, 32, 32);
-
-        // Create and configure the empty state icon
-        TextView iconView = new TextView(getContext());
-        iconView.setText("🎵");
-        iconView.setTextSize(48);
-        iconView.setGravity(android.view.Gravity.CENTER);
-        iconView.setAlpha(0.6f);
-
-        // Create and configure the title
-        TextView titleView = new TextView(getContext());
-        titleView.setText("No Audio Notes Yet");
-        titleView.setTextSize(20);
-        titleView.setTypeface(null, android.graphics.Typeface.BOLD);
-        titleView.setTextColor(getResources().getColor(R.color.text_primary, null));
-        titleView.setGravity(android.view.Gravity.CENTER);
-
-        // Create and configure the description
-        TextView descView = new TextView(getContext());
-        descView.setText("Tap 'Add Audio Note' below to import your first audio file!");
-        descView.setTextSize(14);
-        descView.setTextColor(getResources().getColor(R.color.text_secondary, null));
-        descView.setGravity(android.view.Gravity.CENTER);
-
-        // Set layout parameters with margins
-        LinearLayout.LayoutParams iconParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
-        iconParams.setMargins(0, 0, 0, 24);
-        iconView.setLayoutParams(iconParams);
-
-        LinearLayout.LayoutParams titleParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
-        titleParams.setMargins(0, 0, 0, 8);
-        titleView.setLayoutParams(titleParams);
-
-        LinearLayout.LayoutParams descParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
-        descParams.setMargins(0, 0, 0, 0);
-        descView.setLayoutParams(descParams);
-
-        // Add all views to the empty state layout
-        emptyStateLayout.addView(iconView);
-        emptyStateLayout.addView(titleView);
-        emptyStateLayout.addView(descView);
-
-        // Add the empty state to the container
-        audioNotesContainer.addView(emptyStateLayout);
+        if (searchQuery.isEmpty()) {
+            tvAudioNotesEmptyTitle.setText("No Audio Notes Yet");
+            tvAudioNotesEmptyMessage.setText("Tap 'Add Audio Note' below to import your first audio file!");
+        } else {
+            tvAudioNotesEmptyTitle.setText("No Matches");
+            tvAudioNotesEmptyMessage.setText("No audio notes match \"" + searchQuery + "\"");
+        }
     }
 
     // FIXED: Import audio files instead of recording
     private void showAddAudioNoteDialog() {
         new AlertDialog.Builder(getContext())
                 .setTitle("Add Audio Note")
-                .setMessage("Import an audio file from your device to add as an audio note.")
+                .setMessage("Import audio files from your device to add as audio notes. Pick several to import them all at once.")
                 .setIcon(R.drawable.ic_audio_notes)
                 .setPositiveButton("📁 Browse Files", (dialog, which) -> openFilePicker())
                 .setNegativeButton("Cancel", null)
@@ -323,53 +445,151 @@ public class AudioNotesFragment extends Fragment {
     private void openFilePicker() {
         Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
         intent.setType("audio/*");
-        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, false);
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
 
         try {
-            audioPickerLauncher.launch(Intent.createChooser(intent, "Select Audio File"));
+            audioPickerLauncher.launch(Intent.createChooser(intent, "Select Audio Files"));
         } catch (Exception e) {
             Log.e(TAG, "Error opening file picker: " + e.getMessage());
             Toast.makeText(getContext(), "Error opening file picker", Toast.LENGTH_SHORT).show();
         }
     }
 
+    // Copies the picked file into app storage in the background, with progress and Cancel
     private void importAudioFile(Uri audioUri) {
-        try {
-            // Get file name and details
-            String fileName = getFileName(audioUri);
+        ContentResolver resolver = requireContext().getContentResolver();
+        File audioDir = new File(requireContext().getExternalFilesDir(null), "audio_notes");
+        AudioImporter importer = new AudioImporter();
+        ProgressBar progressBar = showImportDialog("Importing audio", importer::cancel);
+        AlertDialog dialog = importDialog;
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            String fileName = getFileName(resolver, audioUri);
             if (fileName == null) {
                 fileName = "Audio_" + System.currentTimeMillis() + ".mp3";
             }
-
-            // Create app directory for audio files
-            File audioDir = new File(getContext().getExternalFilesDir(null), "audio_notes");
-            if (!audioDir.exists()) {
-                audioDir.mkdirs();
+            try (ParcelFileDescriptor source = resolver.openFileDescriptor(audioUri, "r")) {
+                if (source == null) {
+                    throw new IOException("Cannot open " + audioUri);
+                }
+                return importer.importAudio(source, audioDir, fileName,
+                        (bytesCopied, totalBytes) -> postImportProgress(dialog, progressBar,
+                                formatSize(bytesCopied) + (totalBytes > 0 ? " of " + formatSize(totalBytes) : ""),
+                                bytesCopied, totalBytes));
             }
+        }, result -> {
+            finishImport();
+            if (result.cancelled) {
+                Toast.makeText(getContext(), "Import cancelled", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showTitleInputDialog(result);
+        }, e -> {
+            finishImport();
+            Log.e(TAG, "Error importing audio file", e);
+            Toast.makeText(getContext(), "Error importing audio file", Toast.LENGTH_SHORT).show();
+        });
+    }
 
-            // Create destination file
-            File destinationFile = new File(audioDir, fileName);
+    // Copies several picked files at once and saves them together, titled after their names
+    private void importAudioFiles(List<Uri> audioUris) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        ContentResolver resolver = requireContext().getContentResolver();
+        File audioDir = new File(requireContext().getExternalFilesDir(null), "audio_notes");
+        AudioBatchImporter importer = new AudioBatchImporter(databaseHelper);
+        ProgressBar progressBar = showImportDialog("Importing " + audioUris.size() + " audio files", importer::cancel);
+        AlertDialog dialog = importDialog;
+
+        List<UriSource> sources = new ArrayList<>(audioUris.size());
+        for (Uri audioUri : audioUris) {
+            sources.add(new UriSource(resolver, audioUri));
+        }
 
-            // Copy file from URI to app directory
-            copyFile(audioUri, destinationFile);
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            return importer.importAll(currentUser.getId(), sources, audioDir,
+                    (filesDone, fileCount, bytesCopied, totalBytes) -> postImportProgress(dialog, progressBar,
+                            filesDone + " of " + fileCount + " files · " + formatSize(bytesCopied),
+                            filesDone, fileCount));
+        }, result -> {
+            finishImport();
+            if (result == null) {
+                Toast.makeText(getContext(), "Please sign in to save audio notes", Toast.LENGTH_SHORT).show();
+            } else if (result.cancelled) {
+                Toast.makeText(getContext(), "Import cancelled", Toast.LENGTH_SHORT).show();
+            } else {
+                String message = "Imported " + result.imported + (result.imported == 1 ? " audio note" : " audio notes");
+                if (result.failed > 0) {
+                    message += ", " + result.failed + " failed";
+                }
+                Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+            }
+        }, e -> {
+            finishImport();
+            Log.e(TAG, "Error importing audio files", e);
+            Toast.makeText(getContext(), "Error importing audio files", Toast.LENGTH_SHORT).show();
+        });
+    }
 
-            // Get audio duration
-            String duration = getAudioDuration(destinationFile.getAbsolutePath());
+    // Shows the progress dialog whose Cancel button runs cancel; returns its progress bar
+    private ProgressBar showImportDialog(String title, Runnable cancel) {
+        cancelImport = cancel;
+        ProgressBar progressBar = new ProgressBar(getContext(), null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setPadding(50, 40, 50, 10);
+        progressBar.setIndeterminate(true);
+        importDialog = new AlertDialog.Builder(getContext())
+                .setTitle(title)
+                .setMessage("Copying...")
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Cancel", (dialog, which) -> cancel.run())
+                .show();
+        return progressBar;
+    }
 
-            // Show dialog to enter title
-            showTitleInputDialog(destinationFile.getAbsolutePath(), fileName, duration);
+    // Called on an import thread; updates the dialog if it is still showing
+    private void postImportProgress(AlertDialog dialog, ProgressBar progressBar, String message, long done, long total) {
+        mainHandler.post(() -> {
+            if (!dialog.isShowing()) {
+                return;
+            }
+            dialog.setMessage(message);
+            if (total > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setProgress((int) (done * 100 / total));
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error importing audio file: " + e.getMessage());
-            Toast.makeText(getContext(), "Error importing audio file", Toast.LENGTH_SHORT).show();
+    private void finishImport() {
+        cancelImport = null;
+        if (importDialog != null) {
+            importDialog.dismiss();
+            importDialog = null;
         }
     }
 
-    private String getFileName(Uri uri) {
+    private static String formatSize(long bytes) {
+        return String.format(Locale.getDefault(), "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    // Library length for the header, "1h 05m" or "12m"
+    private static String formatTotalDuration(long millis) {
+        long minutes = millis / 60_000;
+        return minutes >= 60
+                ? String.format(Locale.getDefault(), "%dh %02dm", minutes / 60, minutes % 60)
+                : minutes + "m";
+    }
+
+    // Display name from the provider, else the last path segment; runs off the main thread
+    private static String getFileName(ContentResolver resolver, Uri uri) {
         String result = null;
-        if (uri.getScheme().equals("content")) {
-            try (Cursor cursor = getContext().getContentResolver().query(uri, null, null, null, null)) {
+        if ("content".equals(uri.getScheme())) {
+            try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
                 if (cursor != null && cursor.moveToFirst()) {
                     int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
                     if (nameIndex >= 0) {
@@ -378,7 +598,7 @@ public class AudioNotesFragment extends Fragment {
                 }
             }
         }
-        if (result == null) {
+        if (result == null && uri.getPath() != null) {
             result = uri.getPath();
             int cut = result.lastIndexOf('/');
             if (cut != -1) {
@@ -388,45 +608,18 @@ public class AudioNotesFragment extends Fragment {
         return result;
     }
 
-    private void copyFile(Uri sourceUri, File destinationFile) throws Exception {
-        try (InputStream inputStream = getContext().getContentResolver().openInputStream(sourceUri);
-             FileOutputStream outputStream = new FileOutputStream(destinationFile)) {
-
-            byte[] buffer = new byte[4096];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, length);
-            }
-        }
-    }
+    private void showTitleInputDialog(AudioImporter.Result imported) {
+        String filePath = imported.file.getAbsolutePath();
+        String embeddedTitle = imported.title;
 
-    private String getAudioDuration(String filePath) {
-        try {
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-            retriever.setDataSource(filePath);
-            String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-            retriever.release();
-
-            if (durationStr != null) {
-                int duration = Integer.parseInt(durationStr);
-                return formatTime(duration);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting audio duration: " + e.getMessage());
-        }
-        return "Unknown";
-    }
-
-    private void showTitleInputDialog(String filePath, String fileName, String duration) {
         // Create input field
         EditText input = new EditText(getContext());
         input.setHint("Enter audio note title");
 
-        // Pre-fill with filename (without extension)
-        String defaultTitle = fileName;
-        int dotIndex = defaultTitle.lastIndexOf('.');
-        if (dotIndex > 0) {
-            defaultTitle = defaultTitle.substring(0, dotIndex);
+        // Pre-fill with the title in the file's tags, else the filename (without extension)
+        String defaultTitle = AudioImporter.defaultTitle(imported.file.getName());
+        if (embeddedTitle != null && !embeddedTitle.trim().isEmpty()) {
+            defaultTitle = embeddedTitle.trim();
         }
         input.setText(defaultTitle);
         input.selectAll();
@@ -436,14 +629,14 @@ public class AudioNotesFragment extends Fragment {
 
         new AlertDialog.Builder(getContext())
                 .setTitle("Audio Note Title")
-                .setMessage("Duration: " + duration)
+                .setMessage("Duration: " + AudioImporter.formatDuration(imported.durationMillis))
                 .setView(input)
                 .setPositiveButton("Save", (dialog, which) -> {
                     String title = input.getText().toString().trim();
                     if (title.isEmpty()) {
                         title = finalDefaultTitle; // Use final variable
                     }
-                    saveAudioNote(title, filePath, duration);
+                    saveAudioNote(imported.toAudioNote(title));
                 })
                 .setNegativeButton("Cancel", (dialog, which) -> {
                     // Delete the copied file if user cancels
@@ -452,37 +645,41 @@ public class AudioNotesFragment extends Fragment {
                 .show();
     }
 
-    private void saveAudioNote(String title, String filePath, String duration) {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser == null) {
-            Toast.makeText(getContext(), "Please sign in to save audio notes", Toast.LENGTH_SHORT).show();
-            // Delete the file if user not logged in
-            deleteFileIfExists(filePath);
-            return;
-        }
-
-        try {
-            // Save to database using the correct method signature: addAudioNote(int userId, String title, String filePath)
-            long result = databaseHelper.addAudioNote(currentUser.getId(), title, filePath);
+    private void saveAudioNote(AudioNote audioNote) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        String filePath = audioNote.getFilePath();
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                // Delete the file if user not logged in
+                deleteFileIfExists(filePath);
+                return null;
+            }
 
-            if (result != -1) {
-                // Also update the duration separately since it's not in the main addAudioNote method
-                databaseHelper.updateAudioNote((int)result, title, duration);
+            // If the same recording is already stored, the note shares that file and this copy goes
+            long result = databaseHelper.addAudioNotes(currentUser.getId(), Collections.singletonList(audioNote)) > 0
+                    ? audioNote.getId() : -1;
 
+            if (result == -1) {
+                // Delete the file if database save failed
+                deleteFileIfExists(filePath);
+            }
+            return result;
+        }, result -> {
+            if (result == null) {
+                Toast.makeText(getContext(), "Please sign in to save audio notes", Toast.LENGTH_SHORT).show();
+            } else if (result != -1) {
                 Toast.makeText(getContext(), "Audio note imported successfully! 🎵", Toast.LENGTH_SHORT).show();
                 loadAudioNotes(); // Refresh the list
                 Log.d(TAG, "Audio note saved successfully with ID: " + result);
             } else {
                 Toast.makeText(getContext(), "Failed to save audio note to database", Toast.LENGTH_SHORT).show();
-                // Delete the file if database save failed
-                deleteFileIfExists(filePath);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving audio note: " + e.getMessage());
+        }, e -> {
             Toast.makeText(getContext(), "Error saving audio note: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             // Delete the file if there was an exception
             deleteFileIfExists(filePath);
-        }
+        });
     }
 
     // Helper method for safe file deletion
@@ -502,26 +699,39 @@ public class AudioNotesFragment extends Fragment {
         }
     }
 
-    private String getCurrentDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
-    }
+    // A picked file, opened through the content resolver on the copy thread
+    private static class UriSource implements AudioBatchImporter.Source {
+        private final ContentResolver resolver;
+        private final Uri uri;
 
-    private String formatDate(String dateString) {
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-            Date date = inputFormat.parse(dateString);
-            return outputFormat.format(date);
-        } catch (Exception e) {
-            return dateString; // Return original if parsing fails
+        UriSource(ContentResolver resolver, Uri uri) {
+            this.resolver = resolver;
+            this.uri = uri;
+        }
+
+        @Override
+        public String getName() {
+            String fileName = getFileName(resolver, uri);
+            return fileName != null ? fileName : "Audio_" + System.currentTimeMillis() + ".mp3";
+        }
+
+        @Override
+        public FileInputStream open() throws IOException {
+            ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            // Closing the stream closes the descriptor
+            return new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
         }
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        loadAudioNotes(); // Refresh when returning to fragment
+    // Result of the first-page load
+    private static class FirstPage {
+        int userId;
+        List<AudioNoteAdapter.Row> rows;
+        int totalCount;
+        long totalDurationMillis;
     }
 
     @Override
@@ -530,12 +740,19 @@ public class AudioNotesFragment extends Fragment {
         stopCurrentPlayback(); // Stop any playing audio when leaving fragment
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        audioNoteSearch.cancel();
+        if (cancelImport != null) {
+            cancelImport.run();
+        }
+        finishImport();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         stopCurrentPlayback();
-        if (databaseHelper != null) {
-            databaseHelper.close();
-        }
     }
 }
\ No newline at end of file
@@ -37,12 +37,15 @@ public class AudioPlayerActivity extends AppCompatActivity {
     private String audioTitle;
     private String audioFilePath;
     private String audioDuration;
+    private long audioDurationMs; // -1 if not stored; the prepared player says then
 
     // Playback State
     private boolean isMotionDetectionEnabled = false;
     private float playbackSpeed = 1.0f;
     private boolean isRepeatEnabled = false;
     private boolean isShuffleEnabled = false;
+    private boolean isPrepared = false;
+    private boolean playWhenPrepared = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -77,8 +80,10 @@ public class AudioPlayerActivity extends AppCompatActivity {
         audioTitle = intent.getStringExtra("AUDIO_TITLE");
         audioFilePath = intent.getStringExtra("AUDIO_FILE_PATH");
         audioDuration = intent.getStringExtra("AUDIO_DURATION");
+        audioDurationMs = intent.getLongExtra("AUDIO_DURATION_MS", -1);
 
         if (audioTitle == null) audioTitle = "Unknown Audio";
+        if (audioDurationMs >= 0) audioDuration = formatTime((int) audioDurationMs);
         if (audioDuration == null) audioDuration = "00:00";
 
         Log.d(TAG, "Audio info - Title: " + audioTitle + ", Path: " + audioFilePath + ", Duration: " + audioDuration);
@@ -191,7 +196,7 @@ public class AudioPlayerActivity extends AppCompatActivity {
                 seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
                     @Override
                     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                        if (fromUser && mediaPlayer != null) {
+                        if (fromUser && mediaPlayer != null && isPrepared) {
                             mediaPlayer.seekTo(progress);
                             tvCurrentTime.setText(formatTime(progress));
                         }
@@ -227,18 +232,36 @@ public class AudioPlayerActivity extends AppCompatActivity {
                 return;
             }
 
-            // Initialize MediaPlayer
+            // The stored duration sizes the seek bar now; only older notes wait for the player
+            if (seekBar != null && audioDurationMs > 0) {
+                seekBar.setMax((int) audioDurationMs);
+            }
+
+            // Initialize MediaPlayer; prepared in the background so the screen shows at once
             mediaPlayer = new MediaPlayer();
             mediaPlayer.setDataSource(audioFilePath);
-            mediaPlayer.prepare();
-
-            int duration = mediaPlayer.getDuration();
-            if (seekBar != null) {
-                seekBar.setMax(duration);
-            }
-            if (tvTotalTime != null) {
-                tvTotalTime.setText(formatTime(duration));
-            }
+            mediaPlayer.setOnPreparedListener(mp -> {
+                isPrepared = true;
+                if (audioDurationMs <= 0) {
+                    int duration = mp.getDuration();
+                    if (seekBar != null) {
+                        seekBar.setMax(duration);
+                    }
+                    if (tvTotalTime != null) {
+                        tvTotalTime.setText(formatTime(duration));
+                    }
+                }
+                if (playWhenPrepared) {
+                    startPlayback();
+                }
+            });
+            mediaPlayer.setOnErrorListener((mp, what, extra) -> {
+                Log.e(TAG, "Error preparing audio: " + what + ", " + extra);
+                Toast.makeText(this, "Error loading audio file", Toast.LENGTH_SHORT).show();
+                finish();
+                return true;
+            });
+            mediaPlayer.prepareAsync();
 
             // Set completion listener
             mediaPlayer.setOnCompletionListener(mp -> {
@@ -295,6 +318,14 @@ public class AudioPlayerActivity extends AppCompatActivity {
     }
 
     private void togglePlayPause() {
+        if (mediaPlayer != null && !isPrepared) {
+            // Starts from the prepared listener
+            playWhenPrepared = !playWhenPrepared;
+            if (btnPlayPause != null) {
+                btnPlayPause.setImageResource(playWhenPrepared ? R.drawable.ic_pause : R.drawable.ic_play);
+            }
+            return;
+        }
         if (mediaPlayer != null) {
             try {
                 if (mediaPlayer.isPlaying()) {
@@ -473,6 +504,7 @@ public class AudioPlayerActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        playWhenPrepared = false;
         if (mediaPlayer != null && mediaPlayer.isPlaying()) {
             try {
                 mediaPlayer.pause();
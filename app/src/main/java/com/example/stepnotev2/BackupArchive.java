@@ -0,0 +1,224 @@
+package com.example.stepnotev2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Versioned backup archive: a deflated ZIP whose entries are binary row streams.
+ *
+ * The "manifest" entry comes first. Each table entry is a run of rows, each preceded by
+ * a 1 byte and followed at the end by a 0 byte; field layouts are in DatabaseHelper's
+ * backup section. Audio files are stored as "audio/&lt;file name&gt;". Everything is
+ * written and read one row (or one buffer) at a time.
+ */
+public final class BackupArchive {
+
+    // 2: flashcard rows carry spaced-repetition state; 3: adds the review log;
+    // 4: audio note rows carry the content hash
+    public static final int FORMAT_VERSION = 4;
+    private static final int MAGIC = 0x53544e42; // "STNB"
+
+    static final String ENTRY_MANIFEST = "manifest";
+    static final String ENTRY_FLASHCARDS = "flashcards";
+    static final String ENTRY_AUDIO_NOTES = "audio_notes";
+    static final String ENTRY_DAILY_STEPS = "daily_steps";
+    static final String ENTRY_DELETED = "deleted";
+    static final String ENTRY_REVIEW_LOG = "review_log";
+    static final String AUDIO_PREFIX = "audio/";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private BackupArchive() {}
+
+    public static final class Manifest {
+        public int formatVersion = FORMAT_VERSION;
+        public long exportedAt;
+        // Rows changed from this instant on are included; 0 for a full backup
+        public long since;
+        public long firstUseDay;
+        public boolean includesAudio;
+
+        public boolean isIncremental() {
+            return since > 0;
+        }
+    }
+
+    public static final class Writer implements Closeable {
+        private final ZipOutputStream zip;
+        private final DataOutputStream data;
+        private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+        public Writer(OutputStream out) {
+            zip = new ZipOutputStream(out);
+            // Buffered so fields are not deflated a byte at a time; closing it must not close the archive
+            data = new DataOutputStream(new BufferedOutputStream(new FilterOutputStream(zip) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() {}
+            }, COPY_BUFFER_SIZE));
+        }
+
+        public void writeManifest(Manifest manifest) throws IOException {
+            DataOutputStream out = beginEntry(ENTRY_MANIFEST);
+            out.writeInt(MAGIC);
+            out.writeInt(manifest.formatVersion);
+            out.writeLong(manifest.exportedAt);
+            out.writeLong(manifest.since);
+            out.writeLong(manifest.firstUseDay);
+            out.writeBoolean(manifest.includesAudio);
+            endEntry();
+        }
+
+        // Starts an entry; for a table write beginRow() and the fields per row, then endTable()
+        public DataOutputStream beginEntry(String name) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            return data;
+        }
+
+        public void beginRow() throws IOException {
+            data.writeByte(1);
+        }
+
+        public void endTable() throws IOException {
+            data.writeByte(0);
+            endEntry();
+        }
+
+        public void endEntry() throws IOException {
+            data.flush();
+            zip.closeEntry();
+        }
+
+        public void writeFile(String entryName, File file) throws IOException {
+            zip.putNextEntry(new ZipEntry(entryName));
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(copyBuffer)) != -1) {
+                    zip.write(copyBuffer, 0, n);
+                }
+            }
+            zip.closeEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final ZipInputStream zip;
+        private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+        private DataInputStream data;
+
+        public Reader(InputStream in) {
+            zip = new ZipInputStream(in);
+        }
+
+        // Name of the next entry, or null at the end of the archive
+        public String nextEntry() throws IOException {
+            ZipEntry entry = zip.getNextEntry();
+            // A fresh buffer per entry, so nothing left unread carries over
+            data = new DataInputStream(new BufferedInputStream(new FilterInputStream(zip) {
+                @Override
+                public void close() {}
+            }, COPY_BUFFER_SIZE));
+            return entry != null ? entry.getName() : null;
+        }
+
+        public Manifest readManifest() throws IOException {
+            if (!ENTRY_MANIFEST.equals(nextEntry()) || data.readInt() != MAGIC) {
+                throw new IOException("Not a StepNote backup");
+            }
+            Manifest manifest = new Manifest();
+            manifest.formatVersion = data.readInt();
+            if (manifest.formatVersion > FORMAT_VERSION) {
+                throw new IOException("Backup was made by a newer version of the app");
+            }
+            manifest.exportedAt = data.readLong();
+            manifest.since = data.readLong();
+            manifest.firstUseDay = data.readLong();
+            manifest.includesAudio = data.readBoolean();
+            return manifest;
+        }
+
+        // Data stream of the current entry
+        public DataInputStream data() {
+            return data;
+        }
+
+        // True if another row follows in the current table entry
+        public boolean nextRow() throws IOException {
+            int marker = data.read();
+            if (marker == -1) {
+                throw new EOFException("Truncated backup table");
+            }
+            return marker == 1;
+        }
+
+        public void copyEntryTo(File file) throws IOException {
+            try (OutputStream out = new FileOutputStream(file)) {
+                int n;
+                while ((n = zip.read(copyBuffer)) != -1) {
+                    out.write(copyBuffer, 0, n);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    // ===== FIELD ENCODING =====
+    // Strings are a length-prefixed UTF-8 run (-1 for null), so they are not limited to 64 KB
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.stepnotev2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Backup and restore of one user's flashcards, audio notes and step history.
+ *
+ * Exports stream straight from the database cursors into a BackupArchive, so memory use
+ * does not grow with the data. An incremental export holds only what changed since the
+ * user's last backup; restoring a full backup followed by its incrementals, in order,
+ * rebuilds the data. Call from a background thread.
+ */
+public class DataBackup {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final DatabaseHelper databaseHelper;
+    private final File audioDir;
+
+    // audioDir is where restored recordings go
+    public DataBackup(DatabaseHelper databaseHelper, File audioDir) {
+        this.databaseHelper = databaseHelper;
+        this.audioDir = audioDir;
+    }
+
+    /**
+     * Writes a backup to {@code output} and closes it. With {@code incremental} and a
+     * previous backup on record, only changes since that backup are written; otherwise
+     * everything is. Returns the manifest that was written.
+     */
+    public BackupArchive.Manifest exportBackup(int userId, OutputStream output, boolean incremental,
+                                               boolean includeAudio) throws IOException {
+        BackupArchive.Manifest manifest = new BackupArchive.Manifest();
+        // Taken before reading, so a write made during the export is picked up by the next one
+        manifest.exportedAt = EpochDate.nowMillis();
+        manifest.since = incremental ? databaseHelper.getLastBackupTime(userId) : 0;
+        manifest.firstUseDay = databaseHelper.getUserStats(userId).firstUseDay;
+        manifest.includesAudio = includeAudio;
+
+        try (BackupArchive.Writer archive = new BackupArchive.Writer(
+                new BufferedOutputStream(output, STREAM_BUFFER_SIZE))) {
+            databaseHelper.writeBackup(userId, manifest, archive);
+        }
+
+        databaseHelper.recordBackup(userId, manifest.exportedAt);
+        return manifest;
+    }
+
+    // Restores a backup from {@code input} and closes it; returns the rows restored
+    public int restoreBackup(int userId, InputStream input) throws IOException {
+        try (BackupArchive.Reader archive = new BackupArchive.Reader(
+                new BufferedInputStream(input, STREAM_BUFFER_SIZE))) {
+            return databaseHelper.restoreBackup(userId, archive, audioDir);
+        }
+    }
+}
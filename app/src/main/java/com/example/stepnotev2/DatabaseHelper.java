@@ -2,30 +2,88 @@ package com.example.stepnotev2;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.os.Build;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     // Database info
     private static final String DATABASE_NAME = "stepnote.db";
-    private static final int DATABASE_VERSION = 4; // Updated version for new changes
+    private static final int DATABASE_VERSION = 15; // Audio duration in millis and stream metadata
+
+    // Table names (package-visible so screens can observe them through the InvalidationTracker)
+    static final String TABLE_USERS = "users";
+    static final String TABLE_FLASHCARDS = "flashcards";
+    static final String TABLE_AUDIO_NOTES = "audio_notes";
+    static final String TABLE_STEPS = "daily_steps";
+    static final String TABLE_USER_STATS = "user_stats";
+    static final String TABLE_REVIEW_LOG = "review_log";
+    static final String TABLE_REVIEW_DAILY = "review_daily";
+    static final String TABLE_REVIEW_STATS = "review_stats";
+    private static final String TABLE_FLASHCARDS_FTS = "flashcards_fts";
+    private static final String TABLE_AUDIO_NOTES_FTS = "audio_notes_fts";
+    private static final String TABLE_DELETED_ROWS = "deleted_rows";
+    private static final String TABLE_BACKUP_STATE = "backup_state";
+
+    // Everything a daily step write touches
+    private static final String[] STEP_TABLES = {TABLE_STEPS, TABLE_USER_STATS,
+            StepPeriod.WEEK.table, StepPeriod.MONTH.table, StepPeriod.YEAR.table};
+
+    // Everything a batch of flashcard answers touches
+    private static final String[] REVIEW_TABLES = {TABLE_FLASHCARDS, TABLE_REVIEW_LOG,
+            TABLE_REVIEW_DAILY, TABLE_REVIEW_STATS};
+
+    // Rows per page for the flashcard and audio-note lists
+    public static final int PAGE_SIZE = 50;
+
+    // Single process-wide instance so the connection is opened once and reused
+    private static DatabaseHelper instance;
+
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    private final SessionManager sessionManager = new SessionManager(this);
+
+    // Writers notify it of the tables they changed; screens observe it instead of reloading on resume
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
 
-    // Table names
-    private static final String TABLE_USERS = "users";
-    private static final String TABLE_FLASHCARDS = "flashcards";
-    private static final String TABLE_AUDIO_NOTES = "audio_notes";
-    private static final String TABLE_STEPS = "daily_steps";
-    private static final String TABLE_USER_STATS = "user_stats";
+    // Compiled statements for the hot write paths, keyed by SQL and reused across calls
+    private final Map<String, SQLiteStatement> statementCache = new HashMap<>();
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // runInTransaction nesting and deferred notifications; transactions belong to the calling thread
+    private final ThreadLocal<TransactionScope> transactionScope = ThreadLocal.withInitial(TransactionScope::new);
+
+    // Package-private so tests can open an isolated database file
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // Let step writes from the service run alongside UI reads
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -35,6 +93,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         createAudioNotesTable(db);
         createStepsTable(db);
         createUserStatsTable(db);
+        createStepsIndex(db);
+        createPagingIndexes(db);
+        createSearchIndex(db);
+        createStepRollupTables(db);
+        createChangeTracking(db);
+        createDueIndex(db);
+        createReviewTables(db);
+        createAudioFileIndexes(db);
     }
 
     @Override
@@ -68,6 +134,171 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 // Column might already exist, ignore
             }
         }
+
+        if (oldVersion < 5) {
+            // Collapse duplicate (user_id, date) rows, keeping the highest count on the newest row
+            db.execSQL("UPDATE " + TABLE_STEPS + " SET step_count = (SELECT MAX(d.step_count) FROM "
+                    + TABLE_STEPS + " d WHERE d.user_id = " + TABLE_STEPS + ".user_id AND d.date = "
+                    + TABLE_STEPS + ".date)");
+            db.execSQL("DELETE FROM " + TABLE_STEPS + " WHERE id NOT IN (SELECT MAX(id) FROM "
+                    + TABLE_STEPS + " GROUP BY user_id, date)");
+            createStepsIndex(db);
+
+            // Duplicates inflated the stored totals
+            Cursor cursor = db.query(TABLE_USER_STATS, new String[]{"user_id"},
+                    null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                rebuildUserStats(db, cursor.getInt(0));
+            }
+            cursor.close();
+        }
+
+        if (oldVersion < 6) {
+            createPagingIndexes(db);
+        }
+
+        if (oldVersion < 7) {
+            createSearchIndex(db);
+            // Index the rows that existed before the triggers did
+            db.execSQL("INSERT INTO " + TABLE_FLASHCARDS_FTS + "(" + TABLE_FLASHCARDS_FTS + ") VALUES ('rebuild')");
+            db.execSQL("INSERT INTO " + TABLE_AUDIO_NOTES_FTS + "(" + TABLE_AUDIO_NOTES_FTS + ") VALUES ('rebuild')");
+        }
+
+        if (oldVersion < 8) {
+            migrateDatesToIntegers(db);
+        }
+
+        if (oldVersion < 9) {
+            createStepRollupTables(db);
+            backfillStepRollups(db, null);
+        }
+
+        if (oldVersion < 10) {
+            try {
+                db.execSQL("ALTER TABLE " + TABLE_STEPS + " ADD COLUMN step_histogram BLOB");
+            } catch (Exception e) {
+                // Already there when the table was rebuilt by the version 8 migration
+            }
+        }
+
+        if (oldVersion < 11) {
+            for (String table : new String[]{TABLE_FLASHCARDS, TABLE_AUDIO_NOTES, TABLE_STEPS}) {
+                try {
+                    db.execSQL("ALTER TABLE " + table + " ADD COLUMN updated_at INTEGER");
+                } catch (Exception e) {
+                    // Already there when the table was rebuilt by the version 8 migration
+                }
+            }
+            // Existing rows predate any backup, so only their relative order matters
+            db.execSQL("UPDATE " + TABLE_FLASHCARDS + " SET updated_at = created_at WHERE updated_at IS NULL");
+            db.execSQL("UPDATE " + TABLE_AUDIO_NOTES + " SET updated_at = created_at WHERE updated_at IS NULL");
+            db.execSQL("UPDATE " + TABLE_STEPS + " SET updated_at = 0 WHERE updated_at IS NULL");
+            createChangeTracking(db);
+        }
+
+        if (oldVersion < 12) {
+            String[] columns = {"due_at INTEGER DEFAULT 0", "interval_days INTEGER DEFAULT 0",
+                    "ease INTEGER DEFAULT " + SpacedRepetition.INITIAL_EASE,
+                    "repetitions INTEGER DEFAULT 0", "lapses INTEGER DEFAULT 0"};
+            for (String column : columns) {
+                try {
+                    db.execSQL("ALTER TABLE " + TABLE_FLASHCARDS + " ADD COLUMN " + column);
+                } catch (Exception e) {
+                    // Already there when the table was rebuilt by the version 8 migration
+                }
+            }
+            createDueIndex(db);
+        }
+
+        if (oldVersion < 13) {
+            // Nothing to backfill; answers given before now were not logged
+            createReviewTables(db);
+        }
+
+        if (oldVersion < 14) {
+            try {
+                db.execSQL("ALTER TABLE " + TABLE_AUDIO_NOTES + " ADD COLUMN content_hash TEXT");
+            } catch (Exception e) {
+                // Already there when the table was rebuilt by the version 8 migration
+            }
+            // Existing recordings stay unhashed; they are never matched, only counted by path
+            createAudioFileIndexes(db);
+        }
+
+        if (oldVersion < 15) {
+            for (String column : new String[]{"duration_ms", "sample_rate", "channels", "bitrate", "file_size"}) {
+                try {
+                    db.execSQL("ALTER TABLE " + TABLE_AUDIO_NOTES + " ADD COLUMN " + column + " INTEGER");
+                } catch (Exception e) {
+                    // Already there when the table was rebuilt by the version 8 migration
+                }
+            }
+            // Existing rows are left NULL; AudioMetadataBackfill reads their files in the background
+        }
+    }
+
+    /**
+     * Rebuilds the date-keyed tables with INTEGER columns: daily_steps.date and
+     * user_stats.first_use_date become local epoch days, flashcards/audio_notes.created_at
+     * become epoch millis. Rows keep their ids, so the FTS index stays valid.
+     */
+    private void migrateDatesToIntegers(SQLiteDatabase db) {
+        // Dates were written with the device locale; rewrite any SQLite can't parse as ISO first
+        normalizeLegacyDates(db, TABLE_STEPS, "date", "yyyy-MM-dd");
+        normalizeLegacyDates(db, TABLE_USER_STATS, "first_use_date", "yyyy-MM-dd");
+        normalizeLegacyDates(db, TABLE_FLASHCARDS, "created_at", "yyyy-MM-dd HH:mm:ss");
+        normalizeLegacyDates(db, TABLE_AUDIO_NOTES, "created_at", "yyyy-MM-dd HH:mm:ss");
+
+        // 'yyyy-MM-dd' -> days since 1970-01-01; local 'yyyy-MM-dd HH:mm:ss' -> epoch millis
+        String toEpochDay = "CAST(julianday(%s) - 2440587.5 AS INTEGER)";
+        String toEpochMillis = "CAST(strftime('%%s', %s, 'utc') AS INTEGER) * 1000";
+
+        rebuildTable(db, TABLE_STEPS, this::createStepsTable,
+                "id, user_id, date, step_count, goal",
+                "id, user_id, " + String.format(toEpochDay, "date") + ", step_count, goal");
+        db.execSQL("DELETE FROM " + TABLE_STEPS + " WHERE date IS NULL");
+        rebuildTable(db, TABLE_USER_STATS, this::createUserStatsTable,
+                "id, user_id, first_use_date, total_steps, total_days",
+                "id, user_id, " + String.format(toEpochDay, "first_use_date") + ", total_steps, total_days");
+        rebuildTable(db, TABLE_FLASHCARDS, this::createFlashcardsTable,
+                "id, user_id, front_text, back_text, created_at",
+                "id, user_id, front_text, back_text, " + String.format(toEpochMillis, "created_at"));
+        rebuildTable(db, TABLE_AUDIO_NOTES, this::createAudioNotesTable,
+                "id, user_id, title, file_path, duration, created_at",
+                "id, user_id, title, file_path, duration, " + String.format(toEpochMillis, "created_at"));
+
+        // Indexes and triggers went with the old tables
+        createStepsIndex(db);
+        createPagingIndexes(db);
+        createSearchIndex(db);
+    }
+
+    private void rebuildTable(SQLiteDatabase db, String table, Consumer<SQLiteDatabase> createTable,
+                              String columns, String selectExpressions) {
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + table + "_old");
+        createTable.accept(db);
+        db.execSQL("INSERT INTO " + table + " (" + columns + ") SELECT " + selectExpressions
+                + " FROM " + table + "_old");
+        db.execSQL("DROP TABLE " + table + "_old");
+    }
+
+    // Rewrites values julianday() can't read (e.g. non-ASCII digits) into ASCII form
+    private void normalizeLegacyDates(SQLiteDatabase db, String table, String column, String pattern) {
+        Cursor cursor = db.query(table, new String[]{"id", column},
+                column + " IS NOT NULL AND julianday(" + column + ") IS NULL",
+                null, null, null, null);
+        SimpleDateFormat localeFormat = new SimpleDateFormat(pattern, Locale.getDefault());
+        SimpleDateFormat isoFormat = new SimpleDateFormat(pattern, Locale.US);
+        while (cursor.moveToNext()) {
+            ContentValues values = new ContentValues();
+            try {
+                values.put(column, isoFormat.format(localeFormat.parse(cursor.getString(1))));
+            } catch (ParseException e) {
+                values.putNull(column);
+            }
+            db.update(table, values, "id = ?", new String[]{String.valueOf(cursor.getInt(0))});
+        }
+        cursor.close();
     }
 
     // ===== TABLE CREATION METHODS =====
@@ -92,7 +323,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + "user_id INTEGER,"
                 + "front_text TEXT NOT NULL,"
                 + "back_text TEXT NOT NULL,"
-                + "created_at TEXT,"
+                + "created_at INTEGER," // Epoch millis
+                + "updated_at INTEGER," // Epoch millis of the last write, for incremental backups
+                // Spaced-repetition state; a new card is due at once
+                + "due_at INTEGER DEFAULT 0," // Epoch millis
+                + "interval_days INTEGER DEFAULT 0,"
+                + "ease INTEGER DEFAULT " + SpacedRepetition.INITIAL_EASE + "," // Permille
+                + "repetitions INTEGER DEFAULT 0,"
+                + "lapses INTEGER DEFAULT 0,"
                 + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
                 + ")";
         db.execSQL(CREATE_FLASHCARDS_TABLE);
@@ -105,7 +343,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + "title TEXT NOT NULL,"
                 + "file_path TEXT NOT NULL,"
                 + "duration TEXT DEFAULT '00:00',"
-                + "created_at TEXT,"
+                + "created_at INTEGER," // Epoch millis
+                + "updated_at INTEGER," // Epoch millis
+                + "content_hash TEXT," // SHA-256 of the file, hex; null if imported before version 14
+                // Read from the file; all null until it has been, then null only where it doesn't say
+                + "duration_ms INTEGER,"
+                + "sample_rate INTEGER," // Hz
+                + "channels INTEGER,"
+                + "bitrate INTEGER," // Bits per second
+                + "file_size INTEGER," // Bytes; set once the file has been read, 0 if it was missing
                 + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
                 + ")";
         db.execSQL(CREATE_AUDIO_NOTES_TABLE);
@@ -115,19 +361,170 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         String CREATE_STEPS_TABLE = "CREATE TABLE " + TABLE_STEPS + "("
                 + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + "user_id INTEGER,"
-                + "date TEXT,"
+                + "date INTEGER," // Local epoch day
                 + "step_count INTEGER DEFAULT 0,"
                 + "goal INTEGER DEFAULT 10000,"
+                + "step_histogram BLOB," // StepHistogram encoding, null until the service writes one
+                + "updated_at INTEGER," // Epoch millis
                 + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
                 + ")";
         db.execSQL(CREATE_STEPS_TABLE);
     }
 
+    private void createStepsIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_daily_steps_user_date ON "
+                + TABLE_STEPS + "(user_id, date)");
+    }
+
+    // Cover the (created_at, id) keyset used by the paged list queries
+    private void createPagingIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_flashcards_user_created ON "
+                + TABLE_FLASHCARDS + "(user_id, created_at, id)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_audio_notes_user_created ON "
+                + TABLE_AUDIO_NOTES + "(user_id, created_at, id)");
+    }
+
+    // Notes with identical content share one file: found by hash on import, counted by path on delete
+    private void createAudioFileIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_audio_notes_hash ON " + TABLE_AUDIO_NOTES + "(content_hash)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_audio_notes_file ON " + TABLE_AUDIO_NOTES + "(file_path)");
+    }
+
+    /**
+     * FTS4 tables over flashcards and audio note titles. They are external-content tables
+     * (the text lives only in the base tables) and are kept in sync by triggers; the
+     * BEFORE triggers remove the old tokens while the old row is still readable.
+     */
+    private void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_FLASHCARDS_FTS
+                + " USING fts4(content=\"" + TABLE_FLASHCARDS + "\", front_text, back_text)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS flashcards_fts_bu BEFORE UPDATE ON " + TABLE_FLASHCARDS
+                + " BEGIN DELETE FROM " + TABLE_FLASHCARDS_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS flashcards_fts_bd BEFORE DELETE ON " + TABLE_FLASHCARDS
+                + " BEGIN DELETE FROM " + TABLE_FLASHCARDS_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS flashcards_fts_au AFTER UPDATE ON " + TABLE_FLASHCARDS
+                + " BEGIN INSERT INTO " + TABLE_FLASHCARDS_FTS + "(docid, front_text, back_text)"
+                + " VALUES (new.id, new.front_text, new.back_text); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS flashcards_fts_ai AFTER INSERT ON " + TABLE_FLASHCARDS
+                + " BEGIN INSERT INTO " + TABLE_FLASHCARDS_FTS + "(docid, front_text, back_text)"
+                + " VALUES (new.id, new.front_text, new.back_text); END");
+
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_AUDIO_NOTES_FTS
+                + " USING fts4(content=\"" + TABLE_AUDIO_NOTES + "\", title)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS audio_notes_fts_bu BEFORE UPDATE ON " + TABLE_AUDIO_NOTES
+                + " BEGIN DELETE FROM " + TABLE_AUDIO_NOTES_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS audio_notes_fts_bd BEFORE DELETE ON " + TABLE_AUDIO_NOTES
+                + " BEGIN DELETE FROM " + TABLE_AUDIO_NOTES_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS audio_notes_fts_au AFTER UPDATE ON " + TABLE_AUDIO_NOTES
+                + " BEGIN INSERT INTO " + TABLE_AUDIO_NOTES_FTS + "(docid, title) VALUES (new.id, new.title); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS audio_notes_fts_ai AFTER INSERT ON " + TABLE_AUDIO_NOTES
+                + " BEGIN INSERT INTO " + TABLE_AUDIO_NOTES_FTS + "(docid, title) VALUES (new.id, new.title); END");
+    }
+
+    // One row per user and period, keyed by the period's first local epoch day
+    private void createStepRollupTables(SQLiteDatabase db) {
+        for (StepPeriod period : StepPeriod.values()) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + period.table + "("
+                    + "user_id INTEGER NOT NULL,"
+                    + "period_start INTEGER NOT NULL," // Local epoch day
+                    + "step_count INTEGER DEFAULT 0,"
+                    + "active_days INTEGER DEFAULT 0,"
+                    + "PRIMARY KEY(user_id, period_start),"
+                    + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
+                    + ")");
+        }
+    }
+
+    // The study queue seeks to the user's earliest due cards; the rowid in the index breaks ties
+    private void createDueIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_flashcards_user_due ON "
+                + TABLE_FLASHCARDS + "(user_id, due_at)");
+    }
+
+    /**
+     * Append-only log of flashcard answers plus the running totals derived from it: one
+     * row per user and local day, and one lifetime row per user. The totals are moved by
+     * each batch written, so the stats screens never read the log itself. Log rows outlive
+     * their card, and (user_id, flashcard_id, reviewed_at) makes re-restoring one a no-op.
+     */
+    private void createReviewTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_REVIEW_LOG + "("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "user_id INTEGER NOT NULL,"
+                + "flashcard_id INTEGER NOT NULL,"
+                + "reviewed_at INTEGER NOT NULL," // Epoch millis
+                + "grade INTEGER NOT NULL," // SpacedRepetition.Grade ordinal
+                + "answer_ms INTEGER DEFAULT 0,"
+                + "flips INTEGER DEFAULT 0,"
+                + "last_interval INTEGER DEFAULT 0," // Interval before the answer; 0 while learning
+                + "interval_days INTEGER DEFAULT 0," // Interval after it
+                + "ease INTEGER DEFAULT " + SpacedRepetition.INITIAL_EASE + ","
+                + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
+                + ")");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_review_log_user_card_time ON "
+                + TABLE_REVIEW_LOG + "(user_id, flashcard_id, reviewed_at)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_review_log_user_time ON "
+                + TABLE_REVIEW_LOG + "(user_id, reviewed_at)");
+
+        // Retention is measured on recalls: answers to cards that had already been learned
+        String totals = "reviews INTEGER DEFAULT 0,"
+                + "recalls INTEGER DEFAULT 0,"
+                + "recalled INTEGER DEFAULT 0," // Recalls not answered Again
+                + "answer_ms INTEGER DEFAULT 0,";
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_REVIEW_DAILY + "("
+                + "user_id INTEGER NOT NULL,"
+                + "day INTEGER NOT NULL," // Local epoch day
+                + totals
+                + "PRIMARY KEY(user_id, day),"
+                + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
+                + ")");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_REVIEW_STATS + "("
+                + "user_id INTEGER PRIMARY KEY,"
+                + "first_day INTEGER," // Local epoch day of the first logged answer
+                + totals
+                + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
+                + ")");
+    }
+
+    /**
+     * What incremental backups need: (user_id, updated_at) indexes to find changed rows,
+     * a tombstone per deleted flashcard or audio note (written by triggers, so every delete
+     * path is covered), and the time of each user's last backup.
+     */
+    private void createChangeTracking(SQLiteDatabase db) {
+        for (String table : new String[]{TABLE_FLASHCARDS, TABLE_AUDIO_NOTES, TABLE_STEPS}) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + table + "_user_updated ON "
+                    + table + "(user_id, updated_at)");
+        }
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DELETED_ROWS + "("
+                + "table_name TEXT NOT NULL,"
+                + "row_id INTEGER NOT NULL,"
+                + "user_id INTEGER,"
+                + "deleted_at INTEGER," // Epoch millis
+                + "PRIMARY KEY(table_name, row_id)"
+                + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_deleted_rows_user_deleted ON "
+                + TABLE_DELETED_ROWS + "(user_id, deleted_at)");
+        String nowMillis = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+        for (String table : new String[]{TABLE_FLASHCARDS, TABLE_AUDIO_NOTES}) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_deleted_ad AFTER DELETE ON " + table
+                    + " BEGIN INSERT OR REPLACE INTO " + TABLE_DELETED_ROWS
+                    + "(table_name, row_id, user_id, deleted_at)"
+                    + " VALUES ('" + table + "', old.id, old.user_id, " + nowMillis + "); END");
+        }
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_BACKUP_STATE + "("
+                + "user_id INTEGER PRIMARY KEY,"
+                + "last_backup_at INTEGER" // Epoch millis the last backup started at
+                + ")");
+    }
+
     private void createUserStatsTable(SQLiteDatabase db) {
         String CREATE_USER_STATS_TABLE = "CREATE TABLE " + TABLE_USER_STATS + "("
                 + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + "user_id INTEGER UNIQUE,"
-                + "first_use_date TEXT,"
+                + "first_use_date INTEGER," // Local epoch day
                 + "total_steps INTEGER DEFAULT 0,"
                 + "total_days INTEGER DEFAULT 0,"
                 + "FOREIGN KEY(user_id) REFERENCES " + TABLE_USERS + "(id)"
@@ -149,85 +546,77 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put("join_date", currentDateTime); // Set join date when user registers
 
         long result = db.insert(TABLE_USERS, null, values);
-        db.close();
+        if (result != -1) {
+            notifyChanged(TABLE_USERS);
+        }
         return result;
     }
 
     public User loginUser(String email, String password) {
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // First, set all users as logged out
-        ContentValues logoutValues = new ContentValues();
-        logoutValues.put("is_logged_in", 0);
-        db.update(TABLE_USERS, logoutValues, null, null);
-
-        // Check credentials
-        Cursor cursor = db.query(TABLE_USERS, null,
-                "email = ? AND password = ?",
-                new String[]{email, password},
-                null, null, null);
-
-        User user = null;
-        if (cursor.moveToFirst()) {
-            user = new User();
-            user.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
-            user.setName(cursor.getString(cursor.getColumnIndexOrThrow("name")));
-            user.setEmail(cursor.getString(cursor.getColumnIndexOrThrow("email")));
-            user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow("password"))); // Add password for ProfileFragment
-
-            String profilePath = cursor.getString(cursor.getColumnIndexOrThrow("profile_image_path"));
-            user.setProfileImagePath(profilePath);
-
-            // Get join date with fallback
-            int joinDateIndex = cursor.getColumnIndex("join_date");
-            if (joinDateIndex != -1) {
-                String joinDate = cursor.getString(joinDateIndex);
-                user.setJoinDate(joinDate != null ? joinDate : cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
-            } else {
-                user.setJoinDate(cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
+        // Logging everyone out and the user in is one commit
+        User user = runInTransaction(() -> {
+            // First, set all users as logged out
+            ContentValues logoutValues = new ContentValues();
+            logoutValues.put("is_logged_in", 0);
+            db.update(TABLE_USERS, logoutValues, null, null);
+
+            // Check credentials
+            Cursor cursor = db.query(TABLE_USERS, UserMapper.PROJECTION,
+                    "email = ? AND password = ?",
+                    new String[]{email, password},
+                    null, null, null);
+
+            User loggedIn = null;
+            if (cursor.moveToFirst()) {
+                loggedIn = new UserMapper(cursor).map(cursor);
+
+                // Set user as logged in
+                ContentValues loginValues = new ContentValues();
+                loginValues.put("is_logged_in", 1);
+                db.update(TABLE_USERS, loginValues, "id = ?", new String[]{String.valueOf(loggedIn.getId())});
             }
 
-            // Set user as logged in
-            ContentValues loginValues = new ContentValues();
-            loginValues.put("is_logged_in", 1);
-            db.update(TABLE_USERS, loginValues, "id = ?", new String[]{String.valueOf(user.getId())});
-        }
+            cursor.close();
+            notifyChanged(TABLE_USERS);
+            return loggedIn;
+        });
 
-        cursor.close();
-        db.close();
+        if (user != null) {
+            sessionManager.setCurrentUser(user);
+        } else {
+            sessionManager.invalidate();
+        }
         return user;
     }
 
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    // Served from the session cache; the users table is only queried after an invalidation
     public User getCurrentLoggedInUser() {
+        return sessionManager.getCurrentUser();
+    }
+
+    User queryLoggedInUser() {
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_USERS, null,
+        Cursor cursor = db.query(TABLE_USERS, UserMapper.PROJECTION,
                 "is_logged_in = 1",
                 null, null, null, null);
 
         User user = null;
         if (cursor.moveToFirst()) {
-            user = new User();
-            user.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
-            user.setName(cursor.getString(cursor.getColumnIndexOrThrow("name")));
-            user.setEmail(cursor.getString(cursor.getColumnIndexOrThrow("email")));
-            user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow("password"))); // Add password for ProfileFragment
-
-            String profilePath = cursor.getString(cursor.getColumnIndexOrThrow("profile_image_path"));
-            user.setProfileImagePath(profilePath);
-
-            // Get join date with fallback
-            int joinDateIndex = cursor.getColumnIndex("join_date");
-            if (joinDateIndex != -1) {
-                String joinDate = cursor.getString(joinDateIndex);
-                user.setJoinDate(joinDate != null ? joinDate : cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
-            } else {
-                user.setJoinDate(cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
-            }
+            user = new UserMapper(cursor).map(cursor);
         }
 
         cursor.close();
-        db.close();
         return user;
     }
 
@@ -236,7 +625,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put("is_logged_in", 0);
         db.update(TABLE_USERS, values, null, null);
-        db.close();
+        sessionManager.invalidate();
+        notifyChanged(TABLE_USERS);
     }
 
     // Updated for ProfileFragment compatibility
@@ -250,7 +640,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         int rowsAffected = db.update(TABLE_USERS, values, "id = ?", new String[]{String.valueOf(userId)});
-        db.close();
+        sessionManager.invalidate();
+        notifyChanged(TABLE_USERS);
         return rowsAffected;
     }
 
@@ -264,7 +655,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         int rowsAffected = db.update(TABLE_USERS, values, "id = ?", new String[]{String.valueOf(userId)});
-        db.close();
+        sessionManager.invalidate();
+        notifyChanged(TABLE_USERS);
         return rowsAffected > 0;
     }
 
@@ -275,7 +667,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put("password", newPassword);
 
         int rowsAffected = db.update(TABLE_USERS, values, "id = ?", new String[]{String.valueOf(userId)});
-        db.close();
+        sessionManager.invalidate();
+        notifyChanged(TABLE_USERS);
         return rowsAffected;
     }
 
@@ -285,7 +678,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put("is_logged_in", isLoggedIn ? 1 : 0);
         db.update(TABLE_USERS, values, "id = ?", new String[]{String.valueOf(userId)});
-        db.close();
+        sessionManager.invalidate();
+        notifyChanged(TABLE_USERS);
     }
 
     // Renamed method for ProfileFragment compatibility
@@ -301,48 +695,116 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         boolean exists = cursor.getCount() > 0;
         cursor.close();
-        db.close();
         return exists;
     }
 
     // ===== FLASHCARD METHODS =====
 
     public long addFlashcard(int userId, String frontText, String backText) {
+        long now = EpochDate.nowMillis();
+        long id = executeInsert("INSERT INTO " + TABLE_FLASHCARDS
+                        + " (user_id, front_text, back_text, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                userId, frontText, backText, now, now);
+        if (id != -1) {
+            notifyChanged(TABLE_FLASHCARDS);
+        }
+        return id;
+    }
+
+    /**
+     * Inserts front/back pairs from up to {@code maxRecords} records of {@code reader} in one
+     * transaction through a compiled statement, and returns the number inserted. Records
+     * without both sides, and a leading header row, are skipped. Used by FlashcardImporter,
+     * which calls this once per chunk.
+     */
+    public int importFlashcards(int userId, DelimitedReader reader, int maxRecords) throws IOException {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("user_id", userId);
-        values.put("front_text", frontText);
-        values.put("back_text", backText);
-        values.put("created_at", getCurrentDateTime());
+        long createdAt = EpochDate.nowMillis();
+
+        return runInIoTransaction(() -> {
+            int inserted = 0;
+            SQLiteStatement statement = getCachedStatement(db, "INSERT INTO " + TABLE_FLASHCARDS
+                    + " (user_id, front_text, back_text, created_at, updated_at) VALUES (?, ?, ?, ?, ?)");
+            synchronized (statement) {
+                for (int read = 0; read < maxRecords && reader.next(); read++) {
+                    String front = reader.getField(0).trim();
+                    String back = reader.getField(1).trim();
+                    if (front.isEmpty() || back.isEmpty()
+                            || (reader.getRecordNumber() == 1 && FlashcardImporter.isHeader(front, back))) {
+                        continue;
+                    }
+                    statement.bindLong(1, userId);
+                    statement.bindString(2, front);
+                    statement.bindString(3, back);
+                    statement.bindLong(4, createdAt);
+                    statement.bindLong(5, createdAt);
+                    statement.executeInsert();
+                    inserted++;
+                }
+                statement.clearBindings();
+            }
 
-        long result = db.insert(TABLE_FLASHCARDS, null, values);
-        db.close();
-        return result;
+            if (inserted > 0) {
+                notifyChanged(TABLE_FLASHCARDS);
+            }
+            return inserted;
+        });
+    }
+
+    // One card by id, or null if it no longer exists
+    public Flashcard getFlashcard(int flashcardId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_FLASHCARDS, FlashcardMapper.PROJECTION,
+                "id = ?", new String[]{String.valueOf(flashcardId)},
+                null, null, null);
+
+        Flashcard flashcard = null;
+        if (cursor.moveToFirst()) {
+            flashcard = new FlashcardMapper(cursor).map(cursor);
+        }
+
+        cursor.close();
+        return flashcard;
     }
 
     public List<Flashcard> getUserFlashcards(int userId) {
         List<Flashcard> flashcards = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_FLASHCARDS, null,
+        Cursor cursor = db.query(TABLE_FLASHCARDS, FlashcardMapper.PROJECTION,
                 "user_id = ?",
                 new String[]{String.valueOf(userId)},
-                null, null, "created_at DESC");
+                null, null, KEYSET_ORDER);
 
         if (cursor.moveToFirst()) {
+            FlashcardMapper mapper = new FlashcardMapper(cursor);
             do {
-                Flashcard flashcard = new Flashcard();
-                flashcard.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
-                flashcard.setUserId(cursor.getInt(cursor.getColumnIndexOrThrow("user_id")));
-                flashcard.setFrontText(cursor.getString(cursor.getColumnIndexOrThrow("front_text")));
-                flashcard.setBackText(cursor.getString(cursor.getColumnIndexOrThrow("back_text")));
-                flashcard.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
-                flashcards.add(flashcard);
+                flashcards.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return flashcards;
+    }
+
+    /**
+     * Returns up to {@code limit} flashcards that sort after {@code after} (newest first),
+     * or the first page when {@code after} is null.
+     */
+    public List<Flashcard> getUserFlashcardsPage(int userId, Flashcard after, int limit) {
+        List<Flashcard> flashcards = new ArrayList<>(limit);
+        Cursor cursor = queryPage(TABLE_FLASHCARDS, FlashcardMapper.PROJECTION, userId,
+                after != null ? after.getCreatedAt() : null,
+                after != null ? after.getId() : 0, limit);
+
+        if (cursor.moveToFirst()) {
+            FlashcardMapper mapper = new FlashcardMapper(cursor);
+            do {
+                flashcards.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        db.close();
         return flashcards;
     }
 
@@ -358,71 +820,432 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         cursor.close();
-        db.close();
         return count;
     }
 
     public boolean updateFlashcard(int flashcardId, String frontText, String backText) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("front_text", frontText);
-        values.put("back_text", backText);
-
-        int rowsAffected = db.update(TABLE_FLASHCARDS, values, "id = ?", new String[]{String.valueOf(flashcardId)});
-        db.close();
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_FLASHCARDS
+                        + " SET front_text = ?, back_text = ?, updated_at = ? WHERE id = ?",
+                frontText, backText, EpochDate.nowMillis(), flashcardId);
+        if (rowsAffected > 0) {
+            notifyChanged(TABLE_FLASHCARDS);
+        }
         return rowsAffected > 0;
     }
 
     public boolean deleteFlashcard(int flashcardId) {
         SQLiteDatabase db = this.getWritableDatabase();
         int rowsDeleted = db.delete(TABLE_FLASHCARDS, "id = ?", new String[]{String.valueOf(flashcardId)});
-        db.close();
+        if (rowsDeleted > 0) {
+            notifyChanged(TABLE_FLASHCARDS);
+        }
         return rowsDeleted > 0;
     }
 
+    // ===== STUDY QUEUE =====
+
+    /**
+     * Up to {@code limit} of the user's cards due at {@code nowMillis}, most overdue first
+     * (never-reviewed cards, due at 0, oldest first). A seek on the (user_id, due_at) index
+     * that reads only the rows returned, however large the collection.
+     */
+    public List<Flashcard> getDueFlashcards(int userId, long nowMillis, int limit) {
+        List<Flashcard> flashcards = new ArrayList<>(limit);
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.query(TABLE_FLASHCARDS, FlashcardMapper.PROJECTION,
+                "user_id = ? AND due_at <= ?",
+                new String[]{String.valueOf(userId), String.valueOf(nowMillis)},
+                null, null, "due_at, id", String.valueOf(limit));
+
+        if (cursor.moveToFirst()) {
+            FlashcardMapper mapper = new FlashcardMapper(cursor);
+            do {
+                flashcards.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return flashcards;
+    }
+
+    // Cards due at nowMillis; an index range count
+    public int getDueFlashcardsCount(int userId, long nowMillis) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_FLASHCARDS + " WHERE user_id = ? AND due_at <= ?",
+                new String[]{String.valueOf(userId), String.valueOf(nowMillis)});
+
+        int count = 0;
+        if (cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+        }
+
+        cursor.close();
+        return count;
+    }
+
+    // When the user's next card falls due, or 0 if they have no cards
+    public long getNextDueTime(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT MIN(due_at) FROM " + TABLE_FLASHCARDS + " WHERE user_id = ?",
+                new String[]{String.valueOf(userId)});
+
+        long dueAt = 0;
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            dueAt = cursor.getLong(0);
+        }
+
+        cursor.close();
+        return dueAt;
+    }
+
+    /**
+     * Writes a batch of answers from a ReviewBuffer in one transaction: each card's new
+     * scheduling state and a review_log row, in answer order, through compiled statements,
+     * then one stats delta per user and day the batch covers.
+     */
+    public void applyReviews(List<ReviewBuffer.Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        runInTransaction(() -> {
+            // Per user, then per local day, in answer order
+            Map<Integer, Map<Long, ReviewStats>> deltas = new LinkedHashMap<>();
+            for (ReviewBuffer.Review review : reviews) {
+                executeUpdateDelete("UPDATE " + TABLE_FLASHCARDS
+                                + " SET due_at = ?, interval_days = ?, ease = ?, repetitions = ?, lapses = ?,"
+                                + " updated_at = ? WHERE id = ?",
+                        review.dueAt, review.intervalDays, review.ease, review.repetitions, review.lapses,
+                        review.reviewedAt, review.flashcardId);
+                long rowId = appendReviewLog(review.userId, review.flashcardId, review.reviewedAt,
+                        review.grade.ordinal(), review.answerMillis, review.flips, review.previousIntervalDays,
+                        review.intervalDays, review.ease);
+                if (rowId == -1) {
+                    continue; // Already logged
+                }
+
+                long day = EpochDate.epochDay(review.reviewedAt);
+                ReviewStats delta = deltas.computeIfAbsent(review.userId, user -> new LinkedHashMap<>())
+                        .computeIfAbsent(day, key -> {
+                            ReviewStats stats = new ReviewStats();
+                            stats.firstDay = key;
+                            return stats;
+                        });
+                delta.add(review.grade.ordinal(), review.previousIntervalDays, review.answerMillis);
+            }
+
+            for (Map.Entry<Integer, Map<Long, ReviewStats>> user : deltas.entrySet()) {
+                for (ReviewStats delta : user.getValue().values()) {
+                    applyReviewStatsDelta(user.getKey(), delta);
+                }
+            }
+            notifyChanged(REVIEW_TABLES);
+        });
+    }
+
+    // ===== REVIEW STATS =====
+
+    // Returns the new row id, or -1 if this answer is already in the log
+    private long appendReviewLog(int userId, int flashcardId, long reviewedAt, int grade, long answerMillis,
+                                 int flips, int lastInterval, int intervalDays, int ease) {
+        return executeInsert("INSERT OR IGNORE INTO " + TABLE_REVIEW_LOG
+                        + " (user_id, flashcard_id, reviewed_at, grade, answer_ms, flips, last_interval,"
+                        + " interval_days, ease) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                userId, flashcardId, reviewedAt, grade, answerMillis, flips, lastInterval, intervalDays, ease);
+    }
+
+    // Moves the day's row and the lifetime row by one day's worth of new answers
+    private void applyReviewStatsDelta(int userId, ReviewStats delta) {
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_REVIEW_DAILY
+                        + " SET reviews = reviews + ?, recalls = recalls + ?, recalled = recalled + ?,"
+                        + " answer_ms = answer_ms + ? WHERE user_id = ? AND day = ?",
+                delta.reviews, delta.recalls, delta.recalled, delta.answerMillis, userId, delta.firstDay);
+        if (rowsAffected == 0) {
+            executeInsert("INSERT INTO " + TABLE_REVIEW_DAILY
+                            + " (user_id, day, reviews, recalls, recalled, answer_ms) VALUES (?, ?, ?, ?, ?, ?)",
+                    userId, delta.firstDay, delta.reviews, delta.recalls, delta.recalled, delta.answerMillis);
+        }
+
+        rowsAffected = executeUpdateDelete("UPDATE " + TABLE_REVIEW_STATS
+                        + " SET reviews = reviews + ?, recalls = recalls + ?, recalled = recalled + ?,"
+                        + " answer_ms = answer_ms + ?, first_day = MIN(first_day, ?) WHERE user_id = ?",
+                delta.reviews, delta.recalls, delta.recalled, delta.answerMillis, delta.firstDay, userId);
+        if (rowsAffected == 0) {
+            executeInsert("INSERT INTO " + TABLE_REVIEW_STATS
+                            + " (user_id, first_day, reviews, recalls, recalled, answer_ms) VALUES (?, ?, ?, ?, ?, ?)",
+                    userId, delta.firstDay, delta.reviews, delta.recalls, delta.recalled, delta.answerMillis);
+        }
+    }
+
+    // Lifetime review totals; reviews per day are averaged from the first logged answer
+    public ReviewStats getReviewStats(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        ReviewStats stats = new ReviewStats();
+
+        Cursor cursor = db.query(TABLE_REVIEW_STATS,
+                new String[]{"first_day", "reviews", "recalls", "recalled", "answer_ms"},
+                "user_id = ?", new String[]{String.valueOf(userId)},
+                null, null, null);
+
+        if (cursor.moveToFirst()) {
+            stats.firstDay = cursor.getLong(0);
+            stats.days = (int) (EpochDate.today() - stats.firstDay + 1);
+            stats.reviews = cursor.getInt(1);
+            stats.recalls = cursor.getInt(2);
+            stats.recalled = cursor.getInt(3);
+            stats.answerMillis = cursor.getLong(4);
+        }
+
+        cursor.close();
+        return stats;
+    }
+
+    /**
+     * Review totals for the last {@code days} days ending today, with
+     * {@code dailyReviews} filled oldest first. One range scan on review_daily's key.
+     */
+    public ReviewStats getReviewStatsForLastDays(int userId, int days) {
+        long today = EpochDate.today();
+        long firstDay = today - days + 1;
+        ReviewStats stats = new ReviewStats();
+        stats.firstDay = firstDay;
+        stats.days = days;
+        stats.dailyReviews = new int[days];
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_REVIEW_DAILY,
+                new String[]{"day", "reviews", "recalls", "recalled", "answer_ms"},
+                "user_id = ? AND day BETWEEN ? AND ?",
+                new String[]{String.valueOf(userId), String.valueOf(firstDay), String.valueOf(today)},
+                null, null, null);
+
+        while (cursor.moveToNext()) {
+            stats.dailyReviews[(int) (cursor.getLong(0) - firstDay)] = cursor.getInt(1);
+            stats.reviews += cursor.getInt(1);
+            stats.recalls += cursor.getInt(2);
+            stats.recalled += cursor.getInt(3);
+            stats.answerMillis += cursor.getLong(4);
+        }
+
+        cursor.close();
+        return stats;
+    }
+
+    /**
+     * Recomputes review_daily and review_stats from the full review log.
+     * Use this to repair the totals if they ever drift from the log.
+     */
+    public void rebuildReviewStats(int userId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        runInTransaction(() -> {
+            rebuildReviewStats(db, userId);
+            notifyChanged(TABLE_REVIEW_DAILY, TABLE_REVIEW_STATS);
+        });
+    }
+
+    private void rebuildReviewStats(SQLiteDatabase db, int userId) {
+        String[] userArgs = {String.valueOf(userId)};
+        db.delete(TABLE_REVIEW_DAILY, "user_id = ?", userArgs);
+        db.delete(TABLE_REVIEW_STATS, "user_id = ?", userArgs);
+
+        // Days are grouped in Java so they match EpochDate's local days
+        Cursor cursor = db.query(TABLE_REVIEW_LOG, new String[]{"reviewed_at", "grade", "last_interval", "answer_ms"},
+                "user_id = ?", userArgs, null, null, "reviewed_at");
+        try {
+            ReviewStats day = null;
+            while (cursor.moveToNext()) {
+                long epochDay = EpochDate.epochDay(cursor.getLong(0));
+                if (day != null && day.firstDay != epochDay) {
+                    applyReviewStatsDelta(userId, day);
+                    day = null;
+                }
+                if (day == null) {
+                    day = new ReviewStats();
+                    day.firstDay = epochDay;
+                }
+                day.add(cursor.getInt(1), cursor.getInt(2), cursor.getLong(3));
+            }
+            if (day != null) {
+                applyReviewStatsDelta(userId, day);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     // ===== AUDIO NOTES METHODS =====
 
     public long addAudioNote(int userId, String title, String filePath) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("user_id", userId);
-        values.put("title", title);
-        values.put("file_path", filePath);
-        values.put("duration", "00:00");
-        values.put("created_at", getCurrentDateTime());
+        long now = EpochDate.nowMillis();
+        long id = executeInsert("INSERT INTO " + TABLE_AUDIO_NOTES
+                        + " (user_id, title, file_path, duration, created_at, updated_at) VALUES (?, ?, ?, '00:00', ?, ?)",
+                userId, title, filePath, now, now);
+        if (id != -1) {
+            notifyChanged(TABLE_AUDIO_NOTES);
+        }
+        return id;
+    }
 
-        long result = db.insert(TABLE_AUDIO_NOTES, null, values);
-        db.close();
-        return result;
+    /**
+     * Inserts imported notes (title, file path, duration and content hash) for userId in one
+     * transaction, setting each one's id, user and created_at; a note that fails to insert
+     * keeps id 0 and its path. A note whose hash matches a recording already stored is
+     * pointed at that file instead, and its own copy is deleted after the commit. Returns
+     * the number inserted. Used by the audio importers once their files are copied.
+     */
+    public int addAudioNotes(int userId, List<AudioNote> audioNotes) {
+        long now = EpochDate.nowMillis();
+        List<File> duplicates = new ArrayList<>();
+        int inserted = runInTransaction(() -> {
+            int count = 0;
+            for (AudioNote audioNote : audioNotes) {
+                // Looked up inside the transaction, so a delete can't remove the file in between
+                String sharedPath = findAudioFileByHash(audioNote.getContentHash());
+                String filePath = sharedPath != null ? sharedPath : audioNote.getFilePath();
+                long id = executeInsert("INSERT INTO " + TABLE_AUDIO_NOTES
+                                + " (user_id, title, file_path, duration, created_at, updated_at, content_hash,"
+                                + " duration_ms, sample_rate, channels, bitrate, file_size)"
+                                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                        userId, audioNote.getTitle(), filePath, audioNote.getDuration(), now, now,
+                        audioNote.getContentHash(), knownOrNull(audioNote.getDurationMs()),
+                        knownOrNull(audioNote.getSampleRate()), knownOrNull(audioNote.getChannelCount()),
+                        knownOrNull(audioNote.getBitrate()), knownOrNull(audioNote.getFileSize()));
+                if (id != -1) {
+                    if (!filePath.equals(audioNote.getFilePath())) {
+                        duplicates.add(new File(audioNote.getFilePath()));
+                        audioNote.setFilePath(filePath);
+                    }
+                    audioNote.setId((int) id);
+                    audioNote.setUserId(userId);
+                    audioNote.setCreatedAt(now);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                notifyChanged(TABLE_AUDIO_NOTES);
+            }
+            return count;
+        });
+
+        for (File duplicate : duplicates) {
+            duplicate.delete();
+        }
+        return inserted;
+    }
+
+    // Metadata the file didn't give (-1 or 0) is stored as NULL, so SUM and AVG skip it
+    private static Long knownOrNull(long value) {
+        return value > 0 ? value : null;
+    }
+
+    // Path of a stored recording with this content, or null if there is none on disk
+    private String findAudioFileByHash(String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        // The newest note's file, so one deleted behind our back is not matched forever
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT file_path FROM " + TABLE_AUDIO_NOTES
+                + " WHERE content_hash = ? ORDER BY id DESC LIMIT 1", new String[]{contentHash});
+        try {
+            if (cursor.moveToFirst() && new File(cursor.getString(0)).isFile()) {
+                return cursor.getString(0);
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
     }
 
     public List<AudioNote> getUserAudioNotes(int userId) {
         List<AudioNote> audioNotes = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_AUDIO_NOTES, null,
+        Cursor cursor = db.query(TABLE_AUDIO_NOTES, AudioNoteMapper.PROJECTION,
                 "user_id = ?",
                 new String[]{String.valueOf(userId)},
-                null, null, "created_at DESC");
+                null, null, KEYSET_ORDER);
+
+        if (cursor.moveToFirst()) {
+            AudioNoteMapper mapper = new AudioNoteMapper(cursor);
+            do {
+                audioNotes.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return audioNotes;
+    }
+
+    // Same paging contract as getUserFlashcardsPage
+    public List<AudioNote> getUserAudioNotesPage(int userId, AudioNote after, int limit) {
+        List<AudioNote> audioNotes = new ArrayList<>(limit);
+        Cursor cursor = queryPage(TABLE_AUDIO_NOTES, AudioNoteMapper.PROJECTION, userId,
+                after != null ? after.getCreatedAt() : null,
+                after != null ? after.getId() : 0, limit);
 
         if (cursor.moveToFirst()) {
+            AudioNoteMapper mapper = new AudioNoteMapper(cursor);
             do {
-                AudioNote audioNote = new AudioNote();
-                audioNote.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
-                audioNote.setUserId(cursor.getInt(cursor.getColumnIndexOrThrow("user_id")));
-                audioNote.setTitle(cursor.getString(cursor.getColumnIndexOrThrow("title")));
-                audioNote.setFilePath(cursor.getString(cursor.getColumnIndexOrThrow("file_path")));
-                audioNote.setDuration(cursor.getString(cursor.getColumnIndexOrThrow("duration")));
-                audioNote.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow("created_at")));
-                audioNotes.add(audioNote);
+                audioNotes.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        db.close();
         return audioNotes;
     }
 
+    /**
+     * Total length of the user's recordings in millis, one SUM over duration_ms. Notes whose
+     * duration isn't known yet (before the backfill reaches them) count as zero.
+     */
+    public long getUserAudioNotesDurationMillis(int userId) {
+        return DatabaseUtils.longForQuery(getReadableDatabase(), "SELECT COALESCE(SUM(duration_ms), 0) FROM "
+                + TABLE_AUDIO_NOTES + " WHERE user_id = ?", new String[]{String.valueOf(userId)});
+    }
+
+    /**
+     * Up to limit notes after afterId, by id, whose file has not been read yet (file_size is
+     * null), as id to path. Paged by id, so a row that can't be updated is never returned twice.
+     */
+    public Map<Integer, String> getAudioNotesMissingMetadata(int afterId, int limit) {
+        Map<Integer, String> paths = new LinkedHashMap<>();
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT id, file_path FROM " + TABLE_AUDIO_NOTES
+                        + " WHERE file_size IS NULL AND id > ? ORDER BY id LIMIT ?",
+                new String[]{String.valueOf(afterId), String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                paths.put(cursor.getInt(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return paths;
+    }
+
+    /**
+     * Stores what was read from each file on every note that shares it, in one transaction.
+     * The display duration is rewritten from duration_ms where that is known. Used by
+     * AudioMetadataBackfill. Returns the number of notes updated.
+     */
+    public int updateAudioMetadata(List<AudioNote> files) {
+        return runInTransaction(() -> {
+            int updated = 0;
+            for (AudioNote file : files) {
+                Long durationMs = knownOrNull(file.getDurationMs());
+                updated += executeUpdateDelete("UPDATE " + TABLE_AUDIO_NOTES
+                                + " SET duration_ms = ?, sample_rate = ?, channels = ?, bitrate = ?, file_size = ?,"
+                                + " duration = COALESCE(?, duration) WHERE file_path = ?",
+                        durationMs, knownOrNull(file.getSampleRate()), knownOrNull(file.getChannelCount()),
+                        knownOrNull(file.getBitrate()), Math.max(0, file.getFileSize()),
+                        durationMs != null ? AudioImporter.formatDuration(durationMs) : null, file.getFilePath());
+            }
+            if (updated > 0) {
+                notifyChanged(TABLE_AUDIO_NOTES);
+            }
+            return updated;
+        });
+    }
+
     // New method for ProfileFragment statistics
     public int getUserAudioNotesCount(int userId) {
         SQLiteDatabase db = this.getReadableDatabase();
@@ -435,15 +1258,43 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         cursor.close();
-        db.close();
         return count;
     }
 
+    /**
+     * Deletes the note, and its recording once no other note refers to the same file
+     * (notes imported from identical content share one). The file is removed after the
+     * commit, so a rolled-back delete never loses it.
+     */
     public boolean deleteAudioNote(int audioNoteId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        int rowsDeleted = db.delete(TABLE_AUDIO_NOTES, "id = ?", new String[]{String.valueOf(audioNoteId)});
-        db.close();
-        return rowsDeleted > 0;
+        String[] unreferenced = new String[1];
+        boolean deleted = runInTransaction(() -> {
+            SQLiteDatabase db = this.getWritableDatabase();
+            String filePath;
+            Cursor cursor = db.rawQuery("SELECT file_path FROM " + TABLE_AUDIO_NOTES + " WHERE id = ?",
+                    new String[]{String.valueOf(audioNoteId)});
+            try {
+                if (!cursor.moveToFirst()) {
+                    return false;
+                }
+                filePath = cursor.getString(0);
+            } finally {
+                cursor.close();
+            }
+
+            executeUpdateDelete("DELETE FROM " + TABLE_AUDIO_NOTES + " WHERE id = ?", audioNoteId);
+            notifyChanged(TABLE_AUDIO_NOTES);
+            if (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_AUDIO_NOTES + " WHERE file_path = ?",
+                    new String[]{filePath}) == 0) {
+                unreferenced[0] = filePath;
+            }
+            return true;
+        });
+
+        if (unreferenced[0] != null) {
+            new File(unreferenced[0]).delete();
+        }
+        return deleted;
     }
 
     public boolean updateAudioNote(int audioNoteId, String title, String duration) {
@@ -451,83 +1302,202 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put("title", title);
         values.put("duration", duration);
+        values.put("updated_at", EpochDate.nowMillis());
 
         int rowsAffected = db.update(TABLE_AUDIO_NOTES, values, "id = ?", new String[]{String.valueOf(audioNoteId)});
-        db.close();
+        if (rowsAffected > 0) {
+            notifyChanged(TABLE_AUDIO_NOTES);
+        }
         return rowsAffected > 0;
     }
 
     // ===== STEP TRACKING METHODS =====
 
     public void updateTodaySteps(int userId, int steps) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        String today = getCurrentDate();
+        updateStepsForDate(userId, EpochDate.today(), steps, null);
+    }
 
-        Cursor cursor = db.query(TABLE_STEPS, null,
-                "user_id = ? AND date = ?",
-                new String[]{String.valueOf(userId), today},
-                null, null, null);
+    /**
+     * Used by the step buffer so a day's final count is written under that day after rollover.
+     * A null histogram leaves the stored one unchanged.
+     */
+    public void updateStepsForDate(int userId, long epochDay, int steps, byte[] histogram) {
+        SQLiteDatabase db = this.getWritableDatabase();
 
-        ContentValues values = new ContentValues();
-        values.put("step_count", steps);
+        long now = EpochDate.nowMillis();
 
-        if (cursor.moveToFirst()) {
-            db.update(TABLE_STEPS, values,
+        // Day row, stats and rollups commit together
+        runInTransaction(() -> {
+            Cursor cursor = db.query(TABLE_STEPS, new String[]{"step_count"},
                     "user_id = ? AND date = ?",
-                    new String[]{String.valueOf(userId), today});
-        } else {
-            values.put("user_id", userId);
-            values.put("date", today);
-            values.put("goal", 10000);
-            db.insert(TABLE_STEPS, null, values);
-        }
+                    new String[]{String.valueOf(userId), String.valueOf(epochDay)},
+                    null, null, null);
 
-        cursor.close();
-        updateUserStats(userId);
-        db.close();
+            int oldSteps = 0;
+            boolean exists = cursor.moveToFirst();
+            if (exists) {
+                oldSteps = cursor.getInt(0);
+            }
+            cursor.close();
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                // SQLite 3.24+ - single-statement upsert on the (user_id, date) index
+                executeInsert("INSERT INTO " + TABLE_STEPS
+                                + " (user_id, date, step_count, goal, step_histogram, updated_at)"
+                                + " VALUES (?, ?, ?, 10000, ?, ?)"
+                                + " ON CONFLICT(user_id, date) DO UPDATE SET step_count = excluded.step_count,"
+                                + " step_histogram = COALESCE(excluded.step_histogram, step_histogram),"
+                                + " updated_at = excluded.updated_at",
+                        userId, epochDay, steps, histogram, now);
+            } else if (exists) {
+                // Older platform SQLite has no upsert; the probe above already told us which one to run
+                executeUpdateDelete("UPDATE " + TABLE_STEPS + " SET step_count = ?,"
+                                + " step_histogram = COALESCE(?, step_histogram), updated_at = ?"
+                                + " WHERE user_id = ? AND date = ?",
+                        steps, histogram, now, userId, epochDay);
+            } else {
+                executeInsert("INSERT INTO " + TABLE_STEPS
+                                + " (user_id, date, step_count, goal, step_histogram, updated_at)"
+                                + " VALUES (?, ?, ?, 10000, ?, ?)",
+                        userId, epochDay, steps, histogram, now);
+            }
+
+            // Days are counted once they have any steps
+            int daysDelta = 0;
+            if (oldSteps <= 0 && steps > 0) {
+                daysDelta = 1;
+            } else if (oldSteps > 0 && steps <= 0) {
+                daysDelta = -1;
+            }
+            applyUserStatsDelta(db, userId, steps - oldSteps, daysDelta);
+            applyStepRollupDelta(userId, epochDay, steps - oldSteps, daysDelta);
+            notifyChanged(STEP_TABLES);
+        });
     }
 
     public int getTodaySteps(int userId) {
+        return getTodayStepData(userId).steps;
+    }
+
+    public int getTodayGoal(int userId) {
+        return getTodayStepData(userId).goal;
+    }
+
+    // Steps and goal for today from one indexed lookup
+    public DailySteps getTodayStepData(int userId) {
         SQLiteDatabase db = this.getReadableDatabase();
-        String today = getCurrentDate();
+        DailySteps dailySteps = new DailySteps();
 
-        Cursor cursor = db.query(TABLE_STEPS, new String[]{"step_count"},
+        Cursor cursor = db.query(TABLE_STEPS, new String[]{"step_count", "goal"},
                 "user_id = ? AND date = ?",
-                new String[]{String.valueOf(userId), today},
+                new String[]{String.valueOf(userId), String.valueOf(EpochDate.today())},
                 null, null, null);
 
-        int steps = 0;
         if (cursor.moveToFirst()) {
-            steps = cursor.getInt(0);
+            dailySteps.steps = cursor.getInt(0);
+            dailySteps.goal = cursor.getInt(1);
         }
 
         cursor.close();
-        db.close();
-        return steps;
+        return dailySteps;
     }
 
-    public int getTodayGoal(int userId) {
+    // Encoded StepHistogram for one day, or null if none was recorded
+    public byte[] getStepHistogramBlob(int userId, long epochDay) {
         SQLiteDatabase db = this.getReadableDatabase();
-        String today = getCurrentDate();
-
-        Cursor cursor = db.query(TABLE_STEPS, new String[]{"goal"},
+        Cursor cursor = db.query(TABLE_STEPS, new String[]{"step_histogram"},
                 "user_id = ? AND date = ?",
-                new String[]{String.valueOf(userId), today},
+                new String[]{String.valueOf(userId), String.valueOf(epochDay)},
                 null, null, null);
 
-        int goal = 10000;
+        byte[] histogram = null;
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            histogram = cursor.getBlob(0);
+        }
+
+        cursor.close();
+        return histogram;
+    }
+
+    /**
+     * Decodes one day's histogram into {@code buckets} (StepHistogram.BUCKETS_PER_DAY long,
+     * reusable across calls) and returns the number of buckets recorded.
+     */
+    public int getStepHistogram(int userId, long epochDay, int[] buckets) {
+        return StepHistogram.decode(getStepHistogramBlob(userId, epochDay), buckets);
+    }
+
+    /**
+     * Step counts for the last {@code days} days ending today, oldest first, with 0 for days
+     * without a row. One range scan on the (user_id, date) index.
+     */
+    public int[] getDailyStepsForLastDays(int userId, int days) {
+        int[] steps = new int[days];
+        long today = EpochDate.today();
+        long firstDay = today - days + 1;
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_STEPS, new String[]{"date", "step_count"},
+                "user_id = ? AND date BETWEEN ? AND ?",
+                new String[]{String.valueOf(userId), String.valueOf(firstDay), String.valueOf(today)},
+                null, null, null);
+
+        while (cursor.moveToNext()) {
+            steps[(int) (cursor.getLong(0) - firstDay)] = cursor.getInt(1);
+        }
+
+        cursor.close();
+        return steps;
+    }
+
+    // Total steps over the last {@code days} days ending today
+    public int getStepTotalForLastDays(int userId, int days) {
+        long today = EpochDate.today();
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT SUM(step_count) FROM " + TABLE_STEPS
+                        + " WHERE user_id = ? AND date BETWEEN ? AND ?",
+                new String[]{String.valueOf(userId), String.valueOf(today - days + 1), String.valueOf(today)});
+
+        int total = 0;
         if (cursor.moveToFirst()) {
-            goal = cursor.getInt(0);
+            total = cursor.getInt(0);
         }
 
         cursor.close();
-        db.close();
-        return goal;
+        return total;
     }
 
-    private void updateUserStats(int userId) {
+    // Adjusts the running totals by the change in one day's row instead of rescanning daily_steps
+    private void applyUserStatsDelta(SQLiteDatabase db, int userId, int stepsDelta, int daysDelta) {
+        if (stepsDelta == 0 && daysDelta == 0) {
+            return;
+        }
+
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_USER_STATS
+                        + " SET total_steps = total_steps + ?, total_days = total_days + ?"
+                        + " WHERE user_id = ?",
+                stepsDelta, daysDelta, userId);
+
+        if (rowsAffected == 0) {
+            // No stats row yet (first use or pre-existing history) - build it from scratch
+            rebuildUserStats(db, userId);
+        }
+    }
+
+    /**
+     * Recomputes total_steps and total_days from the full daily_steps history.
+     * Use this to repair user_stats if it ever drifts from the daily rows.
+     */
+    public void rebuildUserStats(int userId) {
         SQLiteDatabase db = this.getWritableDatabase();
+        runInTransaction(() -> {
+            rebuildUserStats(db, userId);
+            notifyChanged(TABLE_USER_STATS);
+        });
+    }
 
+    private void rebuildUserStats(SQLiteDatabase db, int userId) {
         // Calculate total steps
         Cursor stepsCursor = db.rawQuery(
                 "SELECT SUM(step_count) FROM " + TABLE_STEPS + " WHERE user_id = ?",
@@ -555,7 +1525,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put("total_steps", totalSteps);
         values.put("total_days", totalDays);
 
-        Cursor userStatsCursor = db.query(TABLE_USER_STATS, null,
+        Cursor userStatsCursor = db.query(TABLE_USER_STATS, new String[]{"id"},
                 "user_id = ?", new String[]{String.valueOf(userId)},
                 null, null, null);
 
@@ -564,7 +1534,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     "user_id = ?", new String[]{String.valueOf(userId)});
         } else {
             values.put("user_id", userId);
-            values.put("first_use_date", getCurrentDate());
+            values.put("first_use_date", EpochDate.today());
             db.insert(TABLE_USER_STATS, null, values);
         }
 
@@ -582,24 +1552,962 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (cursor.moveToFirst()) {
             stats.totalSteps = cursor.getInt(cursor.getColumnIndexOrThrow("total_steps"));
             stats.totalDays = cursor.getInt(cursor.getColumnIndexOrThrow("total_days"));
-            stats.firstUseDate = cursor.getString(cursor.getColumnIndexOrThrow("first_use_date"));
+            stats.firstUseDay = cursor.getLong(cursor.getColumnIndexOrThrow("first_use_date"));
         }
 
         cursor.close();
-        db.close();
         return stats;
     }
 
-    // ===== UTILITY METHODS =====
+    // ===== STEP ROLLUPS =====
+
+    // Moves the week, month and year containing epochDay by the change in that day's row
+    private void applyStepRollupDelta(int userId, long epochDay, int stepsDelta, int daysDelta) {
+        if (stepsDelta == 0 && daysDelta == 0) {
+            return;
+        }
+
+        for (StepPeriod period : StepPeriod.values()) {
+            long periodStart = period.periodStart(epochDay);
+            int rowsAffected = executeUpdateDelete("UPDATE " + period.table
+                            + " SET step_count = step_count + ?, active_days = active_days + ?"
+                            + " WHERE user_id = ? AND period_start = ?",
+                    stepsDelta, daysDelta, userId, periodStart);
+
+            if (rowsAffected == 0) {
+                // First write in this period; existing history was backfilled, so the delta is the total
+                executeInsert("INSERT INTO " + period.table
+                                + " (user_id, period_start, step_count, active_days) VALUES (?, ?, ?, ?)",
+                        userId, periodStart, stepsDelta, daysDelta);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the week, month and year rollups from daily_steps.
+     * Use this to repair the rollups if they ever drift from the daily rows.
+     */
+    public void rebuildStepRollups(int userId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        runInTransaction(() -> {
+            backfillStepRollups(db, userId);
+            notifyChanged(StepPeriod.WEEK.table, StepPeriod.MONTH.table, StepPeriod.YEAR.table);
+        });
+    }
+
+    // One INSERT ... SELECT per period, for one user or for everyone when userId is null
+    private void backfillStepRollups(SQLiteDatabase db, Integer userId) {
+        String where = userId != null ? " WHERE user_id = " + userId : "";
+        for (StepPeriod period : StepPeriod.values()) {
+            db.execSQL("DELETE FROM " + period.table + where);
+            db.execSQL("INSERT INTO " + period.table + " (user_id, period_start, step_count, active_days)"
+                    + " SELECT user_id, " + periodStartSql(period) + " AS period_start, SUM(step_count),"
+                    + " SUM(CASE WHEN step_count > 0 THEN 1 ELSE 0 END)"
+                    + " FROM " + TABLE_STEPS + where
+                    + " GROUP BY user_id, period_start");
+        }
+    }
+
+    // SQL version of StepPeriod.periodStart over daily_steps.date
+    private static String periodStartSql(StepPeriod period) {
+        switch (period) {
+            case WEEK:
+                // Monday on or before the day; 1970-01-01 was a Thursday
+                return "(date - ((date + 3) % 7 + 7) % 7)";
+            case MONTH:
+                return "CAST(julianday(date(date * 86400, 'unixepoch', 'start of month')) - 2440587.5 AS INTEGER)";
+            default:
+                return "CAST(julianday(date(date * 86400, 'unixepoch', 'start of year')) - 2440587.5 AS INTEGER)";
+        }
+    }
+
+    /**
+     * Step totals for the last {@code count} periods ending with the current one, oldest
+     * first, with zeros for periods without steps. One range scan on the rollup table's
+     * primary key, however long the history is.
+     */
+    public StepSeries getStepSeries(int userId, StepPeriod period, int count) {
+        long today = EpochDate.today();
+        long lastStart = period.periodStart(today);
+        long firstStart = period.plus(today, -(count - 1));
+
+        StepSeries series = new StepSeries(count);
+        for (int i = 0; i < count; i++) {
+            series.periodStarts[i] = period.plus(firstStart, i);
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(period.table, new String[]{"period_start", "step_count", "active_days"},
+                "user_id = ? AND period_start BETWEEN ? AND ?",
+                new String[]{String.valueOf(userId), String.valueOf(firstStart), String.valueOf(lastStart)},
+                null, null, null);
+
+        while (cursor.moveToNext()) {
+            int index = period.periodsBetween(firstStart, cursor.getLong(0));
+            series.steps[index] = cursor.getInt(1);
+            series.activeDays[index] = cursor.getInt(2);
+        }
+
+        cursor.close();
+        return series;
+    }
+
+    // ===== BACKUP =====
+    // Row layouts in the archive (see BackupArchive):
+    //   flashcards:  id, created_at, updated_at (long), front_text, back_text (string),
+    //                then from format 2: due_at (long), interval_days, ease, repetitions, lapses (int)
+    //   audio_notes: id, created_at, updated_at (long), title, file_path, duration (string),
+    //                then from format 4: content_hash (string, null if unknown)
+    //   daily_steps: date (long), step_count, goal (int), updated_at (long), step_histogram (bytes)
+    //   deleted:     table_name (string), row_id, deleted_at (long)
+    //   review_log:  flashcard_id (long), reviewed_at (long), grade, answer_ms, flips, last_interval,
+    //                interval_days, ease (int); from format 3
+
+    /**
+     * Streams the user's flashcards, audio notes, daily steps and review log into
+     * {@code archive} one cursor row at a time. For an incremental manifest only rows
+     * written from {@code manifest.since} on are included, plus tombstones for rows
+     * deleted since; the log is append-only, so its new rows are the ones answered since. With
+     * {@code manifest.includesAudio} the recordings of the included notes follow.
+     */
+    public void writeBackup(int userId, BackupArchive.Manifest manifest, BackupArchive.Writer archive)
+            throws IOException {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String where = manifest.isIncremental() ? "user_id = ? AND updated_at >= ?" : "user_id = ?";
+        String[] args = manifest.isIncremental()
+                ? new String[]{String.valueOf(userId), String.valueOf(manifest.since)}
+                : new String[]{String.valueOf(userId)};
+
+        archive.writeManifest(manifest);
+
+        DataOutputStream out = archive.beginEntry(BackupArchive.ENTRY_FLASHCARDS);
+        Cursor cursor = db.query(TABLE_FLASHCARDS,
+                new String[]{"id", "created_at", "updated_at", "front_text", "back_text",
+                        "due_at", "interval_days", "ease", "repetitions", "lapses"},
+                where, args, null, null, "id");
+        try {
+            while (cursor.moveToNext()) {
+                archive.beginRow();
+                out.writeLong(cursor.getLong(0));
+                out.writeLong(cursor.getLong(1));
+                out.writeLong(cursor.getLong(2));
+                BackupArchive.writeString(out, cursor.getString(3));
+                BackupArchive.writeString(out, cursor.getString(4));
+                out.writeLong(cursor.getLong(5));
+                out.writeInt(cursor.getInt(6));
+                out.writeInt(cursor.getInt(7));
+                out.writeInt(cursor.getInt(8));
+                out.writeInt(cursor.getInt(9));
+            }
+        } finally {
+            cursor.close();
+        }
+        archive.endTable();
+
+        out = archive.beginEntry(BackupArchive.ENTRY_AUDIO_NOTES);
+        cursor = db.query(TABLE_AUDIO_NOTES,
+                new String[]{"id", "created_at", "updated_at", "title", "file_path", "duration", "content_hash"},
+                where, args, null, null, "id");
+        try {
+            while (cursor.moveToNext()) {
+                archive.beginRow();
+                out.writeLong(cursor.getLong(0));
+                out.writeLong(cursor.getLong(1));
+                out.writeLong(cursor.getLong(2));
+                BackupArchive.writeString(out, cursor.getString(3));
+                BackupArchive.writeString(out, cursor.getString(4));
+                BackupArchive.writeString(out, cursor.getString(5));
+                BackupArchive.writeString(out, cursor.getString(6));
+            }
+        } finally {
+            cursor.close();
+        }
+        archive.endTable();
+
+        out = archive.beginEntry(BackupArchive.ENTRY_DAILY_STEPS);
+        cursor = db.query(TABLE_STEPS,
+                new String[]{"date", "step_count", "goal", "updated_at", "step_histogram"},
+                where, args, null, null, "date");
+        try {
+            while (cursor.moveToNext()) {
+                archive.beginRow();
+                out.writeLong(cursor.getLong(0));
+                out.writeInt(cursor.getInt(1));
+                out.writeInt(cursor.getInt(2));
+                out.writeLong(cursor.getLong(3));
+                BackupArchive.writeBytes(out, cursor.isNull(4) ? null : cursor.getBlob(4));
+            }
+        } finally {
+            cursor.close();
+        }
+        archive.endTable();
+
+        // A full backup replaces everything on restore, so it needs no tombstones
+        out = archive.beginEntry(BackupArchive.ENTRY_DELETED);
+        if (manifest.isIncremental()) {
+            cursor = db.query(TABLE_DELETED_ROWS, new String[]{"table_name", "row_id", "deleted_at"},
+                    "user_id = ? AND deleted_at >= ?", args, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    archive.beginRow();
+                    BackupArchive.writeString(out, cursor.getString(0));
+                    out.writeLong(cursor.getLong(1));
+                    out.writeLong(cursor.getLong(2));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        archive.endTable();
+
+        out = archive.beginEntry(BackupArchive.ENTRY_REVIEW_LOG);
+        cursor = db.query(TABLE_REVIEW_LOG,
+                new String[]{"flashcard_id", "reviewed_at", "grade", "answer_ms", "flips", "last_interval",
+                        "interval_days", "ease"},
+                manifest.isIncremental() ? "user_id = ? AND reviewed_at >= ?" : "user_id = ?", args,
+                null, null, "reviewed_at");
+        try {
+            while (cursor.moveToNext()) {
+                archive.beginRow();
+                out.writeLong(cursor.getLong(0));
+                out.writeLong(cursor.getLong(1));
+                for (int column = 2; column < 8; column++) {
+                    out.writeInt(cursor.getInt(column));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        archive.endTable();
+
+        if (manifest.includesAudio) {
+            // Notes can share a recording; each file goes in once
+            cursor = db.query(true, TABLE_AUDIO_NOTES, new String[]{"file_path"}, where, args, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    File file = new File(cursor.getString(0));
+                    if (file.isFile()) {
+                        archive.writeFile(BackupArchive.AUDIO_PREFIX + file.getName(), file);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Restores an archive written by {@link #writeBackup} for {@code userId}, in one
+     * transaction: if any part fails nothing changes, and restored recordings are removed
+     * again. A full backup replaces the user's flashcards, audio notes and steps (and the
+     * review log, if it has one); an incremental one is applied on top, rows matched by id
+     * (steps by day), tombstoned rows deleted and log rows already present skipped.
+     * Recordings are written to {@code audioDir}, each under a name not yet taken there, and
+     * the restored notes pointed at them; a note whose recording is not in the archive keeps
+     * the archived path. Recordings of notes the restore deleted or repointed are removed
+     * after the commit, unless another note still uses them. Returns the rows restored.
+     */
+    public int restoreBackup(int userId, BackupArchive.Reader archive, File audioDir) throws IOException {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<File> restoredFiles = new ArrayList<>();
+        Map<Long, String> restoredNoteFiles = new HashMap<>(); // Note id to archived file name
+        Map<String, String> restoredPaths = new HashMap<>(); // Archived file name to restored path
+        Map<Integer, Integer> restoredCardIds = new HashMap<>(); // Archived card id to row id, where they differ
+        Set<String> releasedPaths = new HashSet<>(); // Files of notes deleted or repointed
+        String[] userArgs = {String.valueOf(userId)};
+        boolean successful = false;
+        int restored;
+
+        try {
+            restored = runInIoTransaction(() -> {
+                int rows = 0;
+                BackupArchive.Manifest manifest = archive.readManifest();
+                if (!manifest.isIncremental()) {
+                    db.delete(TABLE_FLASHCARDS, "user_id = ?", userArgs);
+                    releasedPaths.addAll(queryAudioFilePaths(db, "user_id = ?", userArgs));
+                    db.delete(TABLE_AUDIO_NOTES, "user_id = ?", userArgs);
+                    db.delete(TABLE_STEPS, "user_id = ?", userArgs);
+                    db.delete(TABLE_DELETED_ROWS, "user_id = ?", userArgs);
+                    if (manifest.formatVersion >= 3) {
+                        db.delete(TABLE_REVIEW_LOG, "user_id = ?", userArgs);
+                    }
+                }
+
+                String entry;
+                while ((entry = archive.nextEntry()) != null) {
+                    DataInputStream in = archive.data();
+                    switch (entry) {
+                        case BackupArchive.ENTRY_FLASHCARDS:
+                            while (archive.nextRow()) {
+                                Flashcard flashcard = new Flashcard();
+                                flashcard.setId((int) in.readLong());
+                                flashcard.setCreatedAt(in.readLong());
+                                long updatedAt = in.readLong();
+                                flashcard.setFrontText(BackupArchive.readString(in));
+                                flashcard.setBackText(BackupArchive.readString(in));
+                                if (manifest.formatVersion >= 2) {
+                                    flashcard.setDueAt(in.readLong());
+                                    flashcard.setIntervalDays(in.readInt());
+                                    flashcard.setEase(in.readInt());
+                                    flashcard.setRepetitions(in.readInt());
+                                    flashcard.setLapses(in.readInt());
+                                }
+                                int cardId = restoreFlashcard(userId, flashcard, updatedAt);
+                                if (cardId != flashcard.getId()) {
+                                    restoredCardIds.put(flashcard.getId(), cardId);
+                                }
+                                rows++;
+                            }
+                            break;
+                        case BackupArchive.ENTRY_AUDIO_NOTES:
+                            while (archive.nextRow()) {
+                                long id = in.readLong();
+                                long createdAt = in.readLong();
+                                long updatedAt = in.readLong();
+                                String title = BackupArchive.readString(in);
+                                String filePath = BackupArchive.readString(in);
+                                String duration = BackupArchive.readString(in);
+                                String contentHash = manifest.formatVersion >= 4 ? BackupArchive.readString(in) : null;
+                                String fileName = new File(filePath).getName();
+                                // An incremental restore may move an existing note to another file
+                                releasedPaths.addAll(queryAudioFilePaths(db, "id = ? AND user_id = ?",
+                                        new String[]{String.valueOf(id), String.valueOf(userId)}));
+                                long rowId = restoreAudioNote(userId, id, createdAt, updatedAt, title, filePath, duration,
+                                        contentHash);
+                                if (manifest.includesAudio) {
+                                    restoredNoteFiles.put(rowId, fileName);
+                                }
+                                rows++;
+                            }
+                            break;
+                        case BackupArchive.ENTRY_DAILY_STEPS:
+                            while (archive.nextRow()) {
+                                restoreStepDay(userId, in.readLong(), in.readInt(), in.readInt(), in.readLong(),
+                                        BackupArchive.readBytes(in));
+                                rows++;
+                            }
+                            break;
+                        case BackupArchive.ENTRY_DELETED:
+                            while (archive.nextRow()) {
+                                String table = BackupArchive.readString(in);
+                                long rowId = in.readLong();
+                                in.readLong(); // deleted_at
+                                if (TABLE_FLASHCARDS.equals(table) || TABLE_AUDIO_NOTES.equals(table)) {
+                                    String[] rowArgs = {String.valueOf(rowId), String.valueOf(userId)};
+                                    if (TABLE_AUDIO_NOTES.equals(table)) {
+                                        releasedPaths.addAll(queryAudioFilePaths(db, "id = ? AND user_id = ?", rowArgs));
+                                    }
+                                    db.delete(table, "id = ? AND user_id = ?", rowArgs);
+                                }
+                            }
+                            break;
+                        case BackupArchive.ENTRY_REVIEW_LOG:
+                            while (archive.nextRow()) {
+                                // Answers follow their card to the id it was restored under
+                                int archivedCardId = (int) in.readLong();
+                                Integer cardId = restoredCardIds.get(archivedCardId);
+                                appendReviewLog(userId, cardId != null ? cardId : archivedCardId, in.readLong(),
+                                        in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                                        in.readInt());
+                                rows++;
+                            }
+                            break;
+                        default:
+                            String name = entry.startsWith(BackupArchive.AUDIO_PREFIX)
+                                    ? entry.substring(BackupArchive.AUDIO_PREFIX.length()) : "";
+                            // Plain file names only; anything else is not ours and is skipped
+                            if (!name.isEmpty() && name.indexOf('/') < 0 && name.indexOf('\\') < 0
+                                    && !name.equals("..")) {
+                                audioDir.mkdirs();
+                                // Files are named after what was picked, so one already here with this
+                                // name may be another recording; never reuse or overwrite it
+                                File file = AudioImporter.claimFile(audioDir, name);
+                                File partial = new File(audioDir, file.getName() + AudioImporter.PARTIAL_SUFFIX);
+                                restoredFiles.add(partial);
+                                archive.copyEntryTo(partial);
+                                if (!partial.renameTo(file)) {
+                                    throw new IOException("Cannot move " + partial + " into place");
+                                }
+                                restoredFiles.add(file);
+                                restoredPaths.put(name, file.getPath());
+                            }
+                            break;
+                    }
+                }
+
+                // Recordings follow the rows in the archive; point each note at where its file went
+                for (Map.Entry<Long, String> note : restoredNoteFiles.entrySet()) {
+                    String path = restoredPaths.get(note.getValue());
+                    if (path != null) {
+                        executeUpdateDelete("UPDATE " + TABLE_AUDIO_NOTES + " SET file_path = ? WHERE id = ?",
+                                path, note.getKey());
+                    }
+                }
+
+                // Totals are derived data; recompute them from the restored days
+                rebuildUserStats(db, userId);
+                backfillStepRollups(db, userId);
+                rebuildReviewStats(db, userId);
+                if (!manifest.isIncremental() && manifest.firstUseDay > 0) {
+                    ContentValues values = new ContentValues();
+                    values.put("first_use_date", manifest.firstUseDay);
+                    db.update(TABLE_USER_STATS, values, "user_id = ?", userArgs);
+                }
+
+                notifyChanged(TABLE_FLASHCARDS, TABLE_AUDIO_NOTES, TABLE_STEPS, TABLE_USER_STATS,
+                        StepPeriod.WEEK.table, StepPeriod.MONTH.table, StepPeriod.YEAR.table,
+                        TABLE_REVIEW_LOG, TABLE_REVIEW_DAILY, TABLE_REVIEW_STATS);
+                return rows;
+            });
+            successful = true;
+        } finally {
+            if (!successful) {
+                for (File file : restoredFiles) {
+                    file.delete();
+                }
+            }
+        }
+        deleteUnreferencedAudioFiles(releasedPaths);
+        return restored;
+    }
+
+    private static List<String> queryAudioFilePaths(SQLiteDatabase db, String where, String[] args) {
+        List<String> paths = new ArrayList<>();
+        Cursor cursor = db.query(true, TABLE_AUDIO_NOTES, new String[]{"file_path"}, where, args,
+                null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                paths.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return paths;
+    }
+
+    // Deletes each file no note refers to any more, as deleteAudioNote does; call after the commit
+    private void deleteUnreferencedAudioFiles(Set<String> filePaths) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        for (String filePath : filePaths) {
+            if (filePath != null && DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_AUDIO_NOTES
+                    + " WHERE file_path = ?", new String[]{filePath}) == 0) {
+                new File(filePath).delete();
+            }
+        }
+    }
+
+    /**
+     * Update in place, else insert under the same id, else (id taken by another user) under a
+     * new one. Returns the id the card ended up under.
+     */
+    private int restoreFlashcard(int userId, Flashcard card, long updatedAt) {
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_FLASHCARDS
+                        + " SET front_text = ?, back_text = ?, created_at = ?, updated_at = ?, due_at = ?,"
+                        + " interval_days = ?, ease = ?, repetitions = ?, lapses = ? WHERE id = ? AND user_id = ?",
+                card.getFrontText(), card.getBackText(), card.getCreatedAt(), updatedAt, card.getDueAt(),
+                card.getIntervalDays(), card.getEase(), card.getRepetitions(), card.getLapses(),
+                card.getId(), userId);
+        if (rowsAffected > 0) {
+            return card.getId();
+        }
+        long rowId = executeInsert("INSERT OR IGNORE INTO " + TABLE_FLASHCARDS
+                        + " (id, user_id, front_text, back_text, created_at, updated_at, due_at, interval_days,"
+                        + " ease, repetitions, lapses) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                card.getId(), userId, card.getFrontText(), card.getBackText(), card.getCreatedAt(), updatedAt,
+                card.getDueAt(), card.getIntervalDays(), card.getEase(), card.getRepetitions(), card.getLapses());
+        if (rowId == -1) {
+            rowId = executeInsert("INSERT INTO " + TABLE_FLASHCARDS
+                            + " (user_id, front_text, back_text, created_at, updated_at, due_at, interval_days,"
+                            + " ease, repetitions, lapses) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    userId, card.getFrontText(), card.getBackText(), card.getCreatedAt(), updatedAt,
+                    card.getDueAt(), card.getIntervalDays(), card.getEase(), card.getRepetitions(), card.getLapses());
+        }
+        return (int) rowId;
+    }
+
+    /**
+     * Same matching as restoreFlashcard; returns the id the note ended up under. The hash is
+     * always overwritten, null from older archives, so it never describes a file the note
+     * no longer points at; what was read from the file is cleared for AudioMetadataBackfill
+     * to read again.
+     */
+    private long restoreAudioNote(int userId, long id, long createdAt, long updatedAt,
+                                  String title, String filePath, String duration, String contentHash) {
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_AUDIO_NOTES
+                        + " SET title = ?, file_path = ?, duration = ?, created_at = ?, updated_at = ?,"
+                        + " content_hash = ?, duration_ms = NULL, sample_rate = NULL, channels = NULL,"
+                        + " bitrate = NULL, file_size = NULL WHERE id = ? AND user_id = ?",
+                title, filePath, duration, createdAt, updatedAt, contentHash, id, userId);
+        if (rowsAffected > 0) {
+            return id;
+        }
+        long rowId = executeInsert("INSERT OR IGNORE INTO " + TABLE_AUDIO_NOTES
+                        + " (id, user_id, title, file_path, duration, created_at, updated_at, content_hash)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                id, userId, title, filePath, duration, createdAt, updatedAt, contentHash);
+        if (rowId == -1) {
+            rowId = executeInsert("INSERT INTO " + TABLE_AUDIO_NOTES
+                            + " (user_id, title, file_path, duration, created_at, updated_at, content_hash)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    userId, title, filePath, duration, createdAt, updatedAt, contentHash);
+        }
+        return rowId;
+    }
+
+    // Steps are keyed by day, not id
+    private void restoreStepDay(int userId, long epochDay, int steps, int goal, long updatedAt, byte[] histogram) {
+        int rowsAffected = executeUpdateDelete("UPDATE " + TABLE_STEPS
+                        + " SET step_count = ?, goal = ?, step_histogram = ?, updated_at = ?"
+                        + " WHERE user_id = ? AND date = ?",
+                steps, goal, histogram, updatedAt, userId, epochDay);
+        if (rowsAffected == 0) {
+            executeInsert("INSERT INTO " + TABLE_STEPS
+                            + " (user_id, date, step_count, goal, step_histogram, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    userId, epochDay, steps, goal, histogram, updatedAt);
+        }
+    }
+
+    // Start time of the user's last backup, or 0 if there has been none
+    public long getLastBackupTime(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_BACKUP_STATE, new String[]{"last_backup_at"},
+                "user_id = ?", new String[]{String.valueOf(userId)},
+                null, null, null);
+
+        long lastBackupAt = 0;
+        if (cursor.moveToFirst()) {
+            lastBackupAt = cursor.getLong(0);
+        }
+
+        cursor.close();
+        return lastBackupAt;
+    }
+
+    /**
+     * Records a completed backup that started at {@code startedAt}. Tombstones from before
+     * then are in that backup or an earlier one, so they are pruned.
+     */
+    public void recordBackup(int userId, long startedAt) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        runInTransaction(() -> {
+            executeInsert("INSERT OR REPLACE INTO " + TABLE_BACKUP_STATE
+                    + " (user_id, last_backup_at) VALUES (?, ?)", userId, startedAt);
+            db.delete(TABLE_DELETED_ROWS, "user_id = ? AND deleted_at < ?",
+                    new String[]{String.valueOf(userId), String.valueOf(startedAt)});
+        });
+    }
+
+    // ===== PAGING =====
+
+    // Newest first; id breaks ties between rows created in the same second
+    private static final String KEYSET_ORDER = "created_at DESC, id DESC";
+
+    /**
+     * Seeks past the (afterCreatedAt, afterId) key instead of using OFFSET, so every page
+     * costs the same however deep the user has scrolled.
+     */
+    private Cursor queryPage(String table, String[] projection, int userId,
+                             Long afterCreatedAt, int afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        if (afterCreatedAt == null) {
+            return db.query(table, projection,
+                    "user_id = ?",
+                    new String[]{String.valueOf(userId)},
+                    null, null, KEYSET_ORDER, String.valueOf(limit));
+        }
+        return db.query(table, projection,
+                "user_id = ? AND (created_at < ? OR (created_at = ? AND id < ?))",
+                new String[]{String.valueOf(userId), String.valueOf(afterCreatedAt),
+                        String.valueOf(afterCreatedAt), String.valueOf(afterId)},
+                null, null, KEYSET_ORDER, String.valueOf(limit));
+    }
+
+    // ===== SEARCH =====
+
+    // offsets() lists four numbers per matched token, so more spaces means more hits
+    private static final String SEARCH_RANK = "(length(match_offsets) - length(replace(match_offsets, ' ', ''))) DESC";
+
+    /**
+     * Flashcards whose question or answer contain every word of {@code query} as a prefix,
+     * best matches first. Returns an empty list when the query has nothing searchable.
+     */
+    public List<Flashcard> searchFlashcards(int userId, String query, int limit) {
+        List<Flashcard> flashcards = new ArrayList<>();
+        String matchExpression = FtsQuery.toMatchExpression(query);
+        if (matchExpression == null) {
+            return flashcards;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT f.id AS id, f.user_id AS user_id, f.front_text AS front_text,"
+                        + " f.back_text AS back_text, f.created_at AS created_at, f.due_at AS due_at,"
+                        + " f.interval_days AS interval_days, f.ease AS ease, f.repetitions AS repetitions,"
+                        + " f.lapses AS lapses,"
+                        + " offsets(" + TABLE_FLASHCARDS_FTS + ") AS match_offsets"
+                        + " FROM " + TABLE_FLASHCARDS_FTS
+                        + " JOIN " + TABLE_FLASHCARDS + " f ON f.id = " + TABLE_FLASHCARDS_FTS + ".docid"
+                        + " WHERE " + TABLE_FLASHCARDS_FTS + " MATCH ? AND f.user_id = ?"
+                        + " ORDER BY " + SEARCH_RANK + ", f.created_at DESC, f.id DESC"
+                        + " LIMIT ?",
+                new String[]{matchExpression, String.valueOf(userId), String.valueOf(limit)});
 
-    private String getCurrentDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        return sdf.format(new Date());
+        if (cursor.moveToFirst()) {
+            FlashcardMapper mapper = new FlashcardMapper(cursor);
+            do {
+                flashcards.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return flashcards;
     }
 
+    // Same matching and ranking as searchFlashcards, over audio note titles
+    public List<AudioNote> searchAudioNotes(int userId, String query, int limit) {
+        List<AudioNote> audioNotes = new ArrayList<>();
+        String matchExpression = FtsQuery.toMatchExpression(query);
+        if (matchExpression == null) {
+            return audioNotes;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT a.id AS id, a.user_id AS user_id, a.title AS title,"
+                        + " a.file_path AS file_path, a.duration AS duration, a.created_at AS created_at,"
+                        + " a.content_hash AS content_hash, COALESCE(a.duration_ms, -1) AS duration_ms,"
+                        + " a.sample_rate AS sample_rate, a.channels AS channels, a.bitrate AS bitrate,"
+                        + " COALESCE(a.file_size, -1) AS file_size,"
+                        + " offsets(" + TABLE_AUDIO_NOTES_FTS + ") AS match_offsets"
+                        + " FROM " + TABLE_AUDIO_NOTES_FTS
+                        + " JOIN " + TABLE_AUDIO_NOTES + " a ON a.id = " + TABLE_AUDIO_NOTES_FTS + ".docid"
+                        + " WHERE " + TABLE_AUDIO_NOTES_FTS + " MATCH ? AND a.user_id = ?"
+                        + " ORDER BY " + SEARCH_RANK + ", a.created_at DESC, a.id DESC"
+                        + " LIMIT ?",
+                new String[]{matchExpression, String.valueOf(userId), String.valueOf(limit)});
+
+        if (cursor.moveToFirst()) {
+            AudioNoteMapper mapper = new AudioNoteMapper(cursor);
+            do {
+                audioNotes.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return audioNotes;
+    }
+
+    // ===== ROW MAPPERS =====
+    // Each mapper resolves its column indexes once per cursor, then maps rows by index.
+
+    static final class FlashcardMapper {
+        static final String[] PROJECTION = {"id", "user_id", "front_text", "back_text", "created_at",
+                "due_at", "interval_days", "ease", "repetitions", "lapses"};
+
+        private final int idIndex;
+        private final int userIdIndex;
+        private final int frontTextIndex;
+        private final int backTextIndex;
+        private final int createdAtIndex;
+        private final int dueAtIndex;
+        private final int intervalDaysIndex;
+        private final int easeIndex;
+        private final int repetitionsIndex;
+        private final int lapsesIndex;
+
+        FlashcardMapper(Cursor cursor) {
+            idIndex = cursor.getColumnIndexOrThrow("id");
+            userIdIndex = cursor.getColumnIndexOrThrow("user_id");
+            frontTextIndex = cursor.getColumnIndexOrThrow("front_text");
+            backTextIndex = cursor.getColumnIndexOrThrow("back_text");
+            createdAtIndex = cursor.getColumnIndexOrThrow("created_at");
+            dueAtIndex = cursor.getColumnIndexOrThrow("due_at");
+            intervalDaysIndex = cursor.getColumnIndexOrThrow("interval_days");
+            easeIndex = cursor.getColumnIndexOrThrow("ease");
+            repetitionsIndex = cursor.getColumnIndexOrThrow("repetitions");
+            lapsesIndex = cursor.getColumnIndexOrThrow("lapses");
+        }
+
+        Flashcard map(Cursor cursor) {
+            Flashcard flashcard = new Flashcard(cursor.getInt(userIdIndex),
+                    cursor.getString(frontTextIndex),
+                    cursor.getString(backTextIndex),
+                    cursor.getLong(createdAtIndex));
+            flashcard.setId(cursor.getInt(idIndex));
+            flashcard.setDueAt(cursor.getLong(dueAtIndex));
+            flashcard.setIntervalDays(cursor.getInt(intervalDaysIndex));
+            flashcard.setEase(cursor.getInt(easeIndex));
+            flashcard.setRepetitions(cursor.getInt(repetitionsIndex));
+            flashcard.setLapses(cursor.getInt(lapsesIndex));
+            return flashcard;
+        }
+    }
+
+    static final class AudioNoteMapper {
+        // Unknown duration and size read as -1; the other stream details as 0
+        static final String[] PROJECTION = {"id", "user_id", "title", "file_path", "duration", "created_at",
+                "content_hash", "COALESCE(duration_ms, -1) AS duration_ms", "sample_rate", "channels", "bitrate",
+                "COALESCE(file_size, -1) AS file_size"};
+
+        private final int idIndex;
+        private final int userIdIndex;
+        private final int titleIndex;
+        private final int filePathIndex;
+        private final int durationIndex;
+        private final int createdAtIndex;
+        private final int contentHashIndex;
+        private final int durationMsIndex;
+        private final int sampleRateIndex;
+        private final int channelsIndex;
+        private final int bitrateIndex;
+        private final int fileSizeIndex;
+
+        AudioNoteMapper(Cursor cursor) {
+            idIndex = cursor.getColumnIndexOrThrow("id");
+            userIdIndex = cursor.getColumnIndexOrThrow("user_id");
+            titleIndex = cursor.getColumnIndexOrThrow("title");
+            filePathIndex = cursor.getColumnIndexOrThrow("file_path");
+            durationIndex = cursor.getColumnIndexOrThrow("duration");
+            createdAtIndex = cursor.getColumnIndexOrThrow("created_at");
+            contentHashIndex = cursor.getColumnIndexOrThrow("content_hash");
+            durationMsIndex = cursor.getColumnIndexOrThrow("duration_ms");
+            sampleRateIndex = cursor.getColumnIndexOrThrow("sample_rate");
+            channelsIndex = cursor.getColumnIndexOrThrow("channels");
+            bitrateIndex = cursor.getColumnIndexOrThrow("bitrate");
+            fileSizeIndex = cursor.getColumnIndexOrThrow("file_size");
+        }
+
+        AudioNote map(Cursor cursor) {
+            AudioNote audioNote = new AudioNote(cursor.getInt(userIdIndex),
+                    cursor.getString(titleIndex),
+                    cursor.getString(filePathIndex),
+                    cursor.getString(durationIndex),
+                    cursor.getLong(createdAtIndex));
+            audioNote.setId(cursor.getInt(idIndex));
+            audioNote.setContentHash(cursor.getString(contentHashIndex));
+            audioNote.setDurationMs(cursor.getLong(durationMsIndex));
+            audioNote.setSampleRate(cursor.getInt(sampleRateIndex));
+            audioNote.setChannelCount(cursor.getInt(channelsIndex));
+            audioNote.setBitrate(cursor.getInt(bitrateIndex));
+            audioNote.setFileSize(cursor.getLong(fileSizeIndex));
+            return audioNote;
+        }
+    }
+
+    static final class UserMapper {
+        // join_date falls back to created_at for accounts created before the column existed
+        static final String[] PROJECTION = {"id", "name", "email", "password", "profile_image_path",
+                "COALESCE(join_date, created_at) AS join_date"};
+
+        private final int idIndex;
+        private final int nameIndex;
+        private final int emailIndex;
+        private final int passwordIndex;
+        private final int profileImagePathIndex;
+        private final int joinDateIndex;
+
+        UserMapper(Cursor cursor) {
+            idIndex = cursor.getColumnIndexOrThrow("id");
+            nameIndex = cursor.getColumnIndexOrThrow("name");
+            emailIndex = cursor.getColumnIndexOrThrow("email");
+            passwordIndex = cursor.getColumnIndexOrThrow("password");
+            profileImagePathIndex = cursor.getColumnIndexOrThrow("profile_image_path");
+            joinDateIndex = cursor.getColumnIndexOrThrow("join_date");
+        }
+
+        User map(Cursor cursor) {
+            User user = new User();
+            user.setId(cursor.getInt(idIndex));
+            user.setName(cursor.getString(nameIndex));
+            user.setEmail(cursor.getString(emailIndex));
+            user.setPassword(cursor.getString(passwordIndex)); // Kept for ProfileFragment
+            user.setProfileImagePath(cursor.getString(profileImagePathIndex));
+            user.setJoinDate(cursor.getString(joinDateIndex));
+            return user;
+        }
+    }
+
+    // ===== TRANSACTIONS =====
+
+    /**
+     * Runs {@code body} in one transaction and returns its result, so a multi-statement
+     * operation costs one commit instead of one per statement. Calls nest: an inner call
+     * joins the outer transaction and everything commits or rolls back together. Table
+     * changes reported inside are announced to the InvalidationTracker only after the
+     * outermost commit, and dropped on rollback.
+     */
+    public <T> T runInTransaction(Supplier<T> body) {
+        return transact(body::get);
+    }
+
+    public void runInTransaction(Runnable body) {
+        runInTransaction(() -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Body for {@link #runInIoTransaction}: it reads a stream while it writes, so it may
+     * throw an IOException.
+     */
+    public interface IoTransaction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * {@link #runInTransaction(Supplier)} for a body that reads a stream as it writes. An
+     * IOException from the body rolls the transaction back and is rethrown. (Not an overload:
+     * a lambda would match both.)
+     */
+    public <T> T runInIoTransaction(IoTransaction<T> body) throws IOException {
+        return transact(body::run);
+    }
+
+    // Shared by both; E is whatever the body may throw, RuntimeException for a Supplier
+    private interface TransactionBody<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private <T, E extends Exception> T transact(TransactionBody<T, E> body) throws E {
+        SQLiteDatabase db = this.getWritableDatabase();
+        TransactionScope scope = transactionScope.get();
+
+        db.beginTransaction();
+        scope.depth++;
+        boolean successful = false;
+        try {
+            T result = body.run();
+            db.setTransactionSuccessful();
+            successful = true;
+            return result;
+        } finally {
+            db.endTransaction();
+            scope.depth--;
+            if (!successful) {
+                // A failed inner transaction rolls back the outer one too
+                scope.failed = true;
+            }
+            if (scope.depth == 0) {
+                if (!scope.failed && !scope.changedTables.isEmpty()) {
+                    invalidationTracker.notifyChanged(scope.changedTables.toArray(new String[0]));
+                }
+                scope.changedTables.clear();
+                scope.failed = false;
+            }
+        }
+    }
+
+    // Announces changed tables now, or at the commit of the enclosing runInTransaction
+    private void notifyChanged(String... tables) {
+        TransactionScope scope = transactionScope.get();
+        if (scope.depth > 0) {
+            Collections.addAll(scope.changedTables, tables);
+        } else {
+            invalidationTracker.notifyChanged(tables);
+        }
+    }
+
+    private static class TransactionScope {
+        int depth = 0;
+        boolean failed = false;
+        final Set<String> changedTables = new HashSet<>();
+    }
+
+    // ===== COMPILED STATEMENTS =====
+
+    /**
+     * Runs a cached INSERT and returns the new row id, or -1 on a constraint failure
+     * (matching SQLiteDatabase.insert).
+     */
+    private long executeInsert(String sql, Object... args) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        // Lock order is always connection (transaction) first, then statement
+        db.beginTransactionNonExclusive();
+        try {
+            SQLiteStatement statement = getCachedStatement(db, sql);
+            long rowId;
+            synchronized (statement) {
+                bindArgs(statement, args);
+                try {
+                    rowId = statement.executeInsert();
+                } catch (SQLException e) {
+                    // A failed statement leaves the rest of the transaction intact, as with db.insert
+                    rowId = -1;
+                }
+                statement.clearBindings();
+            }
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Runs a cached UPDATE or DELETE and returns the number of rows affected
+    private int executeUpdateDelete(String sql, Object... args) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            SQLiteStatement statement = getCachedStatement(db, sql);
+            int rowsAffected;
+            synchronized (statement) {
+                bindArgs(statement, args);
+                rowsAffected = statement.executeUpdateDelete();
+                statement.clearBindings();
+            }
+            db.setTransactionSuccessful();
+            return rowsAffected;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private SQLiteStatement getCachedStatement(SQLiteDatabase db, String sql) {
+        synchronized (statementCache) {
+            SQLiteStatement statement = statementCache.get(sql);
+            if (statement == null) {
+                statement = db.compileStatement(sql);
+                statementCache.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
+    private static void bindArgs(SQLiteStatement statement, Object... args) {
+        statement.clearBindings();
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            int index = i + 1;
+            if (arg == null) {
+                statement.bindNull(index);
+            } else if (arg instanceof Integer || arg instanceof Long) {
+                statement.bindLong(index, ((Number) arg).longValue());
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.bindDouble(index, ((Number) arg).doubleValue());
+            } else if (arg instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) arg);
+            } else {
+                statement.bindString(index, arg.toString());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        // Compiled statements belong to the connection being closed
+        synchronized (statementCache) {
+            for (SQLiteStatement statement : statementCache.values()) {
+                statement.close();
+            }
+            statementCache.clear();
+        }
+        super.close();
+    }
+
+    // ===== UTILITY METHODS =====
+
+    // users.created_at and join_date are still display text
     private String getCurrentDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
+        return EpochDate.formatDateTime(EpochDate.nowMillis());
     }
 
     // Methods for ProfileFragment compatibility
@@ -607,10 +2515,64 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         logoutUser();
     }
 
+    // Inner class for today's step row
+    public static class DailySteps {
+        public int steps = 0;
+        public int goal = 10000;
+    }
+
+    // Chart series as parallel arrays, one entry per period, oldest first
+    public static class StepSeries {
+        public final long[] periodStarts; // Local epoch day each period starts on
+        public final int[] steps;
+        public final int[] activeDays;
+
+        StepSeries(int count) {
+            periodStarts = new long[count];
+            steps = new int[count];
+            activeDays = new int[count];
+        }
+    }
+
     // Inner class for user statistics
     public static class UserStats {
         public int totalSteps = 0;
         public int totalDays = 0;
-        public String firstUseDate = "";
+        public long firstUseDay = 0; // Local epoch day
+    }
+
+    // Flashcard answer totals over a range of days
+    public static class ReviewStats {
+        public long firstDay = 0; // Local epoch day
+        public int days = 0;
+        public int reviews = 0;
+        public int recalls = 0; // Answers to cards already learned
+        public int recalled = 0; // Of those, the ones not answered Again
+        public long answerMillis = 0;
+        public int[] dailyReviews; // Oldest first; only for a range of recent days
+
+        // Share of recalls remembered, 0..1, or -1 before the first recall
+        public float getRetention() {
+            return recalls > 0 ? (float) recalled / recalls : -1f;
+        }
+
+        public float getReviewsPerDay() {
+            return days > 0 ? (float) reviews / days : 0f;
+        }
+
+        public long getAverageAnswerMillis() {
+            return reviews > 0 ? answerMillis / reviews : 0;
+        }
+
+        void add(int grade, int lastInterval, long answerMillis) {
+            reviews++;
+            this.answerMillis += answerMillis;
+            if (lastInterval > 0) {
+                recalls++;
+                if (grade != SpacedRepetition.Grade.AGAIN.ordinal()) {
+                    recalled++;
+                }
+            }
+        }
     }
 }
\ No newline at end of file
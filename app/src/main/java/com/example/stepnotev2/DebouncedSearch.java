@@ -0,0 +1,55 @@
+package com.example.stepnotev2;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Search-as-you-type helper. A query only runs once typing has paused for the debounce
+ * delay, and each new keystroke cancels both the pending query and any query still in
+ * flight, so results for stale text are never delivered. Main thread only.
+ */
+public class DebouncedSearch {
+
+    public static final long DEFAULT_DELAY_MS = 250;
+
+    public interface Search {
+        // Starts the query and returns its task so it can be cancelled
+        StepNoteRepository.Task start(String query);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long delayMs;
+    private final Search search;
+
+    private Runnable pendingSearch;
+    private StepNoteRepository.Task runningSearch;
+
+    public DebouncedSearch(Search search) {
+        this(DEFAULT_DELAY_MS, search);
+    }
+
+    public DebouncedSearch(long delayMs, Search search) {
+        this.delayMs = delayMs;
+        this.search = search;
+    }
+
+    public void onQueryChanged(String query) {
+        cancel();
+        pendingSearch = () -> {
+            pendingSearch = null;
+            runningSearch = search.start(query);
+        };
+        handler.postDelayed(pendingSearch, delayMs);
+    }
+
+    public void cancel() {
+        if (pendingSearch != null) {
+            handler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (runningSearch != null) {
+            runningSearch.cancel();
+            runningSearch = null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.stepnotev2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming CSV/TSV record reader for deck imports.
+ *
+ * Reads one record at a time from a Reader with a fixed-size buffer. Unless given, the
+ * delimiter is whichever of comma or tab first appears outside quotes. Quoted
+ * fields follow RFC 4180 ("" is a literal quote, delimiters and line breaks are allowed
+ * inside). Only the first {@link #KEPT_FIELDS} fields are kept, each capped at
+ * {@link #MAX_FIELD_LENGTH} characters, so memory use does not depend on the input.
+ */
+public class DelimitedReader implements Closeable {
+
+    public static final int KEPT_FIELDS = 2;
+    public static final int MAX_FIELD_LENGTH = 8 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    // 0 until the first record settles it
+    private char delimiter;
+
+    private final StringBuilder[] fields = new StringBuilder[KEPT_FIELDS];
+    private int fieldCount;
+    private boolean truncated;
+    private long recordNumber = 0;
+
+    public DelimitedReader(Reader in) {
+        this(in, (char) 0);
+    }
+
+    public DelimitedReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+        for (int i = 0; i < KEPT_FIELDS; i++) {
+            fields[i] = new StringBuilder();
+        }
+    }
+
+    /**
+     * Advances to the next non-blank record. Returns false at end of input.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            if (recordNumber == 0 && c == '\uFEFF') {
+                c = read(); // Byte order mark
+            }
+            if (c == '\r' || c == '\n') {
+                continue; // Blank line
+            }
+            if (c == -1) {
+                return false;
+            }
+            readRecord(c);
+            recordNumber++;
+            return true;
+        }
+    }
+
+    // Number of fields in the current record, including ones beyond KEPT_FIELDS
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    // Field of the current record, or "" if it has fewer fields
+    public String getField(int index) {
+        return index < fieldCount && index < KEPT_FIELDS ? fields[index].toString() : "";
+    }
+
+    // True if a kept field of the current record was cut at MAX_FIELD_LENGTH
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    // 1-based number of the current record, blank lines excluded
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readRecord(int c) throws IOException {
+        for (StringBuilder field : fields) {
+            field.setLength(0);
+        }
+        fieldCount = 0;
+        truncated = false;
+
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (c == -1) {
+                break;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        append('"');
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (isDelimiter(c)) {
+                fieldCount++;
+                fieldStart = true;
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n' && following != -1) {
+                        position--; // Lone CR; the character is still in the buffer
+                    }
+                }
+                break;
+            } else {
+                append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+        fieldCount++;
+    }
+
+    private boolean isDelimiter(int c) {
+        if (delimiter == 0 && (c == ',' || c == '\t')) {
+            delimiter = (char) c;
+        }
+        return c == delimiter;
+    }
+
+    private void append(char c) {
+        if (fieldCount >= KEPT_FIELDS) {
+            return;
+        }
+        StringBuilder field = fields[fieldCount];
+        if (field.length() < MAX_FIELD_LENGTH) {
+            field.append(c);
+        } else {
+            truncated = true;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
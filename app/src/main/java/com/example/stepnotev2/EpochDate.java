@@ -0,0 +1,171 @@
+package com.example.stepnotev2;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Date keys as stored in the database.
+ *
+ * daily_steps.date is a local epoch day (days since 1970-01-01 in the device time zone) and
+ * created_at columns are epoch milliseconds, so range queries are integer comparisons.
+ * The bounds of the current local day are cached, so the per-step lookup of "today" is a
+ * clock read and two comparisons with no allocation. Formatting is for display only.
+ */
+public final class EpochDate {
+
+    public static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // Local day most recently resolved, as [dayStartMillis, dayEndMillis)
+    private static TimeZone zone;
+    private static long cachedDay;
+    private static long dayStartMillis = Long.MAX_VALUE;
+    private static long dayEndMillis = Long.MIN_VALUE;
+
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(
+            () -> new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()));
+    private static final ThreadLocal<SimpleDateFormat> DATE_TIME_FORMAT = ThreadLocal.withInitial(
+            () -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()));
+    private static final ThreadLocal<SimpleDateFormat> DISPLAY_DATE_FORMAT = ThreadLocal.withInitial(
+            () -> new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault()));
+
+    private EpochDate() {}
+
+    public static long nowMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // Today's local epoch day
+    public static long today() {
+        return epochDay(System.currentTimeMillis());
+    }
+
+    // Local epoch day containing the instant epochMillis
+    public static synchronized long epochDay(long epochMillis) {
+        if (epochMillis >= dayStartMillis && epochMillis < dayEndMillis) {
+            return cachedDay;
+        }
+
+        // Re-read the zone only when leaving the cached day, so a zone change applies from then on
+        zone = TimeZone.getDefault();
+        cachedDay = Math.floorDiv(epochMillis + zone.getOffset(epochMillis), MILLIS_PER_DAY);
+        dayStartMillis = localMidnight(cachedDay);
+        dayEndMillis = localMidnight(cachedDay + 1);
+        return cachedDay;
+    }
+
+    // First instant of the local epoch day
+    public static synchronized long startOfDayMillis(long epochDay) {
+        currentZone();
+        return localMidnight(epochDay);
+    }
+
+    // The DST offset can differ either side of midnight, so resolve it at the result
+    private static long localMidnight(long epochDay) {
+        long utcMidnight = epochDay * MILLIS_PER_DAY;
+        long guess = utcMidnight - zone.getOffset(utcMidnight);
+        return utcMidnight - zone.getOffset(guess);
+    }
+
+    // ===== CALENDAR PERIODS =====
+    // Pure integer arithmetic on epoch days (proleptic Gregorian), no Calendar objects.
+
+    // Monday of the ISO week containing epochDay (1970-01-01 was a Thursday)
+    public static long startOfWeek(long epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    public static long startOfMonth(long epochDay) {
+        int civil = toCivil(epochDay);
+        return epochDay - (civil % 100) + 1;
+    }
+
+    public static long startOfYear(long epochDay) {
+        return fromCivil(toCivil(epochDay) / 10000, 1, 1);
+    }
+
+    // First day of the month {@code months} after the month containing epochDay
+    public static long plusMonths(long epochDay, int months) {
+        int civil = toCivil(epochDay);
+        int monthIndex = (civil / 10000) * 12 + (civil / 100 % 100 - 1) + months;
+        return fromCivil(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1);
+    }
+
+    // Months since year 0, for counting whole months between two days
+    public static int monthIndex(long epochDay) {
+        int civil = toCivil(epochDay);
+        return (civil / 10000) * 12 + (civil / 100 % 100 - 1);
+    }
+
+    public static int year(long epochDay) {
+        return toCivil(epochDay) / 10000;
+    }
+
+    // Epoch day to yyyyMMdd packed in an int (years 0..9999)
+    static int toCivil(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return year * 10000 + month * 100 + day;
+    }
+
+    static long fromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    // Forget the cached day and zone, e.g. after the device time zone changes
+    public static synchronized void reset() {
+        zone = null;
+        dayStartMillis = Long.MAX_VALUE;
+        dayEndMillis = Long.MIN_VALUE;
+    }
+
+    // "yyyy-MM-dd" for a local epoch day
+    public static String formatDay(long epochDay) {
+        return format(DATE_FORMAT, startOfDayMillis(epochDay));
+    }
+
+    // "yyyy-MM-dd" for an instant
+    public static String formatDate(long epochMillis) {
+        return format(DATE_FORMAT, epochMillis);
+    }
+
+    // "yyyy-MM-dd HH:mm:ss" for an instant
+    public static String formatDateTime(long epochMillis) {
+        return format(DATE_TIME_FORMAT, epochMillis);
+    }
+
+    // "MMM dd, yyyy" for an instant, as lists show it
+    public static String formatDisplayDate(long epochMillis) {
+        return format(DISPLAY_DATE_FORMAT, epochMillis);
+    }
+
+    private static String format(ThreadLocal<SimpleDateFormat> formats, long epochMillis) {
+        SimpleDateFormat format = formats.get();
+        // Keep per-thread formatters on the same zone as the day keys
+        TimeZone currentZone = currentZone();
+        if (!format.getTimeZone().equals(currentZone)) {
+            format.setTimeZone(currentZone);
+        }
+        return format.format(new Date(epochMillis));
+    }
+
+    private static synchronized TimeZone currentZone() {
+        if (zone == null) {
+            zone = TimeZone.getDefault();
+        }
+        return zone;
+    }
+}
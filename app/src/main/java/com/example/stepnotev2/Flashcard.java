@@ -5,12 +5,19 @@ public class Flashcard {
     private int userId;
     private String frontText;
     private String backText;
-    private String createdAt;
+    private long createdAt; // Epoch millis
+
+    // Spaced-repetition state, see SpacedRepetition
+    private long dueAt = 0; // Epoch millis; 0 for a card never reviewed
+    private int intervalDays = 0;
+    private int ease = SpacedRepetition.INITIAL_EASE; // Permille, 2500 = 2.5x
+    private int repetitions = 0;
+    private int lapses = 0;
 
     // Constructors
     public Flashcard() {}
 
-    public Flashcard(int userId, String frontText, String backText, String createdAt) {
+    public Flashcard(int userId, String frontText, String backText, long createdAt) {
         this.userId = userId;
         this.frontText = frontText;
         this.backText = backText;
@@ -50,14 +57,54 @@ public class Flashcard {
         this.backText = backText;
     }
 
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
+    public long getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(long dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+
+    public void setIntervalDays(int intervalDays) {
+        this.intervalDays = intervalDays;
+    }
+
+    public int getEase() {
+        return ease;
+    }
+
+    public void setEase(int ease) {
+        this.ease = ease;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public void setRepetitions(int repetitions) {
+        this.repetitions = repetitions;
+    }
+
+    public int getLapses() {
+        return lapses;
+    }
+
+    public void setLapses(int lapses) {
+        this.lapses = lapses;
+    }
+
     @Override
     public String toString() {
         return "Flashcard{" +
@@ -65,7 +112,9 @@ public class Flashcard {
                 ", userId=" + userId +
                 ", frontText='" + frontText + '\'' +
                 ", backText='" + backText + '\'' +
-                ", createdAt='" + createdAt + '\'' +
+                ", createdAt=" + createdAt +
+                ", dueAt=" + dueAt +
+                ", intervalDays=" + intervalDays +
                 '}';
     }
 }
\ No newline at end of file
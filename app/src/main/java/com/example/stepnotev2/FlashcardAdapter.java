@@ -5,12 +5,39 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
 
-public class FlashcardAdapter extends RecyclerView.Adapter<FlashcardAdapter.FlashcardViewHolder> {
+/**
+ * Recycled list of flashcards for the "All Flashcards" section.
+ *
+ * Lists are handed over with {@link #submitList}; ListAdapter diffs them against the
+ * current one on a background thread and dispatches only the inserts, removes and changes,
+ * so appending a page or patching one card never rebinds the rest. Submitted lists must
+ * not be changed afterwards. Ids are the card ids, so rows keep their views across updates.
+ */
+public class FlashcardAdapter extends ListAdapter<Flashcard, FlashcardAdapter.FlashcardViewHolder> {
+
+    // Payload for rows that only moved, so just the "#n" label is redrawn
+    private static final Object PAYLOAD_NUMBER = new Object();
+
+    private static final DiffUtil.ItemCallback<Flashcard> DIFF_CALLBACK = new DiffUtil.ItemCallback<Flashcard>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Flashcard oldItem, @NonNull Flashcard newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Flashcard oldItem, @NonNull Flashcard newItem) {
+            // Only what the row shows; scheduling changes do not touch it
+            return oldItem.getFrontText().equals(newItem.getFrontText())
+                    && oldItem.getBackText().equals(newItem.getBackText())
+                    && oldItem.getCreatedAt() == newItem.getCreatedAt();
+        }
+    };
 
-    private List<Flashcard> flashcardList;
     private OnFlashcardClickListener listener;
 
     // Interface for click handling
@@ -20,25 +47,37 @@ public class FlashcardAdapter extends RecyclerView.Adapter<FlashcardAdapter.Flas
         void onFlashcardDelete(Flashcard flashcard, int position);
     }
 
-    public FlashcardAdapter(List<Flashcard> flashcardList) {
-        this.flashcardList = flashcardList;
+    public FlashcardAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
     }
 
     public void setOnFlashcardClickListener(OnFlashcardClickListener listener) {
         this.listener = listener;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
     @NonNull
     @Override
     public FlashcardViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_flashcard, parent, false);
-        return new FlashcardViewHolder(view);
+        FlashcardViewHolder holder = new FlashcardViewHolder(view);
+
+        // Set once per holder; the position is looked up at click time, never captured at bind
+        holder.itemView.setOnClickListener(v -> dispatchClick(holder, Click.OPEN));
+        holder.btnEdit.setOnClickListener(v -> dispatchClick(holder, Click.EDIT));
+        holder.btnDelete.setOnClickListener(v -> dispatchClick(holder, Click.DELETE));
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull FlashcardViewHolder holder, int position) {
-        Flashcard flashcard = flashcardList.get(position);
+        Flashcard flashcard = getItem(position);
 
         // Set card number
         holder.tvCardNumber.setText("#" + (position + 1));
@@ -50,84 +89,66 @@ public class FlashcardAdapter extends RecyclerView.Adapter<FlashcardAdapter.Flas
         holder.tvAnswer.setText(flashcard.getBackText());
 
         // Set created date
-        if (flashcard.getCreatedAt() != null && !flashcard.getCreatedAt().isEmpty()) {
-            // Extract just the date part if it's a full datetime string
-            String dateOnly = flashcard.getCreatedAt();
-            if (dateOnly.contains(" ")) {
-                dateOnly = dateOnly.split(" ")[0]; // Get just the date part
-            }
-            holder.tvCreatedDate.setText(dateOnly);
+        if (flashcard.getCreatedAt() > 0) {
+            // created_at is epoch millis
+            holder.tvCreatedDate.setText(EpochDate.formatDate(flashcard.getCreatedAt()));
         } else {
             holder.tvCreatedDate.setText("2025-08-13");
         }
-
-        // Set click listeners
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onFlashcardClick(flashcard, position);
-            }
-        });
-
-        // Edit button click
-        holder.btnEdit.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onFlashcardEdit(flashcard, position);
-            }
-        });
-
-        // Delete button click
-        holder.btnDelete.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onFlashcardDelete(flashcard, position);
-            }
-        });
     }
 
     @Override
-    public int getItemCount() {
-        return flashcardList != null ? flashcardList.size() : 0;
-    }
-
-    // Method to update the list
-    public void updateFlashcards(List<Flashcard> newFlashcards) {
-        this.flashcardList = newFlashcards;
-        notifyDataSetChanged();
-    }
-
-    // Method to add a flashcard
-    public void addFlashcard(Flashcard flashcard) {
-        flashcardList.add(0, flashcard); // Add to top
-        notifyItemInserted(0);
-        // Update card numbers for all items
-        notifyItemRangeChanged(0, flashcardList.size());
-    }
-
-    // Method to remove a flashcard
-    public void removeFlashcard(int position) {
-        if (position >= 0 && position < flashcardList.size()) {
-            flashcardList.remove(position);
-            notifyItemRemoved(position);
-            // Update card numbers for remaining items
-            notifyItemRangeChanged(position, flashcardList.size() - position);
+    public void onBindViewHolder(@NonNull FlashcardViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // A full change arrives with no payloads, so any payload here is a renumbering
+        if (payloads.contains(PAYLOAD_NUMBER)) {
+            holder.tvCardNumber.setText("#" + (position + 1));
+            return;
         }
+        onBindViewHolder(holder, position);
     }
 
-    // Method to update a flashcard
-    public void updateFlashcard(int position, Flashcard updatedFlashcard) {
-        if (position >= 0 && position < flashcardList.size()) {
-            flashcardList.set(position, updatedFlashcard);
-            notifyItemChanged(position);
+    @Override
+    public void onCurrentListChanged(@NonNull List<Flashcard> previousList, @NonNull List<Flashcard> currentList) {
+        // Rows after an insert or remove shifted; renumber from the first one that differs
+        int first = 0;
+        int common = Math.min(previousList.size(), currentList.size());
+        while (first < common && previousList.get(first).getId() == currentList.get(first).getId()) {
+            first++;
+        }
+        if (first < common) {
+            notifyItemRangeChanged(first, currentList.size() - first, PAYLOAD_NUMBER);
         }
     }
 
-    // Method to get flashcard at position
+    // Card at position, or null if it is out of range
     public Flashcard getFlashcard(int position) {
-        if (position >= 0 && position < flashcardList.size()) {
-            return flashcardList.get(position);
+        if (position >= 0 && position < getItemCount()) {
+            return getItem(position);
         }
         return null;
     }
 
+    private enum Click { OPEN, EDIT, DELETE }
+
+    private void dispatchClick(FlashcardViewHolder holder, Click click) {
+        int position = holder.getBindingAdapterPosition();
+        if (listener == null || position == RecyclerView.NO_POSITION) {
+            return; // Removed while the click was in flight
+        }
+        Flashcard flashcard = getItem(position);
+        switch (click) {
+            case OPEN:
+                listener.onFlashcardClick(flashcard, position);
+                break;
+            case EDIT:
+                listener.onFlashcardEdit(flashcard, position);
+                break;
+            default:
+                listener.onFlashcardDelete(flashcard, position);
+                break;
+        }
+    }
+
     // ViewHolder class matching your layout
     public static class FlashcardViewHolder extends RecyclerView.ViewHolder {
         TextView tvCardNumber;
@@ -149,4 +170,4 @@ public class FlashcardAdapter extends RecyclerView.Adapter<FlashcardAdapter.Flas
             btnDelete = itemView.findViewById(R.id.btnDelete);
         }
     }
-}
\ No newline at end of file
+}
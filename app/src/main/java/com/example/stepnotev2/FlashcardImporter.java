@@ -0,0 +1,103 @@
+package com.example.stepnotev2;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Bulk flashcard import from a CSV or TSV deck (front, back per line).
+ *
+ * The deck is streamed through a DelimitedReader and inserted in chunks of
+ * {@link #CHUNK_SIZE} records, one transaction each, so memory stays fixed however large
+ * the file is and the list refreshes as chunks land. {@link #cancel()} stops after the
+ * current chunk; chunks already committed are kept. Call from a background thread.
+ */
+public class FlashcardImporter {
+
+    public static final int CHUNK_SIZE = 1000;
+
+    public interface ProgressListener {
+        // Called on the import thread after each chunk; totalBytes is -1 if unknown
+        void onProgress(int imported, long bytesRead, long totalBytes);
+    }
+
+    public static final class Result {
+        public int imported;
+        public long recordsRead;
+        public boolean cancelled;
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private volatile boolean cancelled = false;
+
+    public FlashcardImporter(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    public Result importDeck(int userId, InputStream input, long totalBytes, ProgressListener listener)
+            throws IOException {
+        Result result = new Result();
+        CountingInputStream counted = new CountingInputStream(input);
+
+        try (DelimitedReader reader = new DelimitedReader(
+                new InputStreamReader(counted, StandardCharsets.UTF_8))) {
+            while (!cancelled) {
+                long before = reader.getRecordNumber();
+                result.imported += databaseHelper.importFlashcards(userId, reader, CHUNK_SIZE);
+                result.recordsRead = reader.getRecordNumber();
+
+                if (listener != null) {
+                    listener.onProgress(result.imported, counted.count, totalBytes);
+                }
+                if (reader.getRecordNumber() - before < CHUNK_SIZE) {
+                    break; // End of input
+                }
+            }
+        }
+
+        result.cancelled = cancelled;
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // A first row naming the columns rather than holding a card
+    static boolean isHeader(String front, String back) {
+        String first = front.toLowerCase(Locale.ROOT);
+        String second = back.toLowerCase(Locale.ROOT);
+        return (first.equals("front") || first.equals("question") || first.equals("term"))
+                && (second.equals("back") || second.equals("answer") || second.equals("definition"));
+    }
+
+    // Bytes consumed so far, for progress against the file size
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
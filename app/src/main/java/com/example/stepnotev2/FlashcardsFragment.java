@@ -1,7 +1,17 @@
 package com.example.stepnotev2;
 
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.LayoutInflater;
@@ -10,10 +20,17 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,6 +38,12 @@ public class FlashcardsFragment extends Fragment {
 
     private static final String TAG = "FlashcardsFragment";
 
+    // Due cards fetched per study-queue load
+    private static final int STUDY_BATCH_SIZE = 20;
+
+    // Search shows the best matches only, without paging
+    private static final int SEARCH_RESULT_LIMIT = 100;
+
     // UI Components (matching your XML)
     private LinearLayout flashcardContainer;
     private TextView tvCardContent;
@@ -28,27 +51,71 @@ public class FlashcardsFragment extends Fragment {
     private TextView tvCardProgress;
     private LinearLayout btnAddFlashcard;
     private TextView tvFlashcardCount;
-    private LinearLayout flashcardsContainer;
-
-    // Flashcard Study Mode
-    private List<Flashcard> flashcardsList;
+    private RecyclerView rvFlashcards;
+    private TextView tvFlashcardsEmpty;
+    private FlashcardAdapter flashcardAdapter;
+    private LinearLayoutManager flashcardsLayoutManager;
+    private EditText etSearchFlashcards;
+    private LinearLayout gradeButtonsContainer;
+    private LinearLayout swipeInstructions;
+
+    // Flashcard Study Mode - the earliest due cards, answered through the review buffer
+    private List<Flashcard> studyQueue;
     private int currentCardIndex = 0;
     private boolean isShowingFront = true;
+    private int dueCount = 0;
+    private long nextDueAt = 0; // 0 when the user has no cards
+    private ReviewBuffer reviewBuffer;
     private GestureDetector gestureDetector;
 
-    // Database
-    private DatabaseHelper databaseHelper;
+    // Timing of the card on screen, for the review log
+    private int timedCardId = -1;
+    private long cardShownAt = 0; // SystemClock.elapsedRealtime()
+    private int cardFlips = 0;
+
+    // Browse list; paging state - flashcardsList holds the pages loaded so far and is
+    // copied into the adapter on every change
+    private List<Flashcard> flashcardsList;
+    private int currentUserId = SessionManager.NO_USER;
+    private int totalFlashcardCount = 0;
+    private boolean hasMoreFlashcards = false;
+    private boolean isLoadingPage = false;
+    // Bumped on every full reload so a page requested before it is dropped
+    private int loadGeneration = 0;
+
+    // Search - an empty query means the normal paged list is showing
+    private String searchQuery = "";
+    private DebouncedSearch flashcardSearch;
+
+    // Database (async, results on the main thread)
+    private StepNoteRepository repository;
+    // Re-runs the list query when flashcards (or the signed-in user) change
+    private InvalidationTracker.Observation flashcardsObservation;
+
+    // Deck import (CSV/TSV)
+    private ActivityResultLauncher<Intent> deckPickerLauncher;
+    private FlashcardImporter runningImport;
+    private AlertDialog importDialog;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_flashcards, container, false);
 
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = StepNoteRepository.getInstance(getContext());
         flashcardsList = new ArrayList<>();
+        studyQueue = new ArrayList<>();
+        reviewBuffer = new ReviewBuffer(repository.getDatabaseHelper()::applyReviews);
+        searchQuery = "";
+        flashcardSearch = new DebouncedSearch(query -> searchFlashcards(query, null));
 
         initViews(view);
         setupGestureDetector();
+        setupDeckPicker();
         loadFlashcards();
+        flashcardsObservation = repository.getDatabaseHelper().getInvalidationTracker().observe(
+                getViewLifecycleOwner(), this::loadFlashcards,
+                DatabaseHelper.TABLE_FLASHCARDS, DatabaseHelper.TABLE_USERS);
 
         return view;
     }
@@ -61,11 +128,87 @@ public class FlashcardsFragment extends Fragment {
         tvCardProgress = view.findViewById(R.id.tvCardProgress);
         btnAddFlashcard = view.findViewById(R.id.btnAddFlashcard);
         tvFlashcardCount = view.findViewById(R.id.tvFlashcardCount);
-        flashcardsContainer = view.findViewById(R.id.flashcardsContainer);
+        rvFlashcards = view.findViewById(R.id.rvFlashcards);
+        tvFlashcardsEmpty = view.findViewById(R.id.tvFlashcardsEmpty);
+        etSearchFlashcards = view.findViewById(R.id.etSearchFlashcards);
+        gradeButtonsContainer = view.findViewById(R.id.gradeButtonsContainer);
+        swipeInstructions = view.findViewById(R.id.swipeInstructions);
 
         // Set click listeners
         flashcardContainer.setOnClickListener(v -> flipCard());
+        view.findViewById(R.id.btnGradeAgain).setOnClickListener(v -> gradeCurrentCard(SpacedRepetition.Grade.AGAIN));
+        view.findViewById(R.id.btnGradeHard).setOnClickListener(v -> gradeCurrentCard(SpacedRepetition.Grade.HARD));
+        view.findViewById(R.id.btnGradeGood).setOnClickListener(v -> gradeCurrentCard(SpacedRepetition.Grade.GOOD));
+        view.findViewById(R.id.btnGradeEasy).setOnClickListener(v -> gradeCurrentCard(SpacedRepetition.Grade.EASY));
         btnAddFlashcard.setOnClickListener(v -> showAddFlashcardDialog());
+
+        setupFlashcardList();
+
+        etSearchFlashcards.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchQueryChanged(s.toString().trim());
+            }
+        });
+    }
+
+    private void setupFlashcardList() {
+        flashcardAdapter = new FlashcardAdapter();
+        flashcardAdapter.setOnFlashcardClickListener(new FlashcardAdapter.OnFlashcardClickListener() {
+            @Override
+            public void onFlashcardClick(Flashcard flashcard, int position) {
+                // Study this card now
+                studyNow(flashcard);
+                Toast.makeText(getContext(), "Studying card " + (position + 1), Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFlashcardEdit(Flashcard flashcard, int position) {
+                showEditFlashcardDialog(flashcard);
+            }
+
+            @Override
+            public void onFlashcardDelete(Flashcard flashcard, int position) {
+                showDeleteConfirmDialog(flashcard);
+            }
+        });
+
+        flashcardsLayoutManager = new LinearLayoutManager(getContext());
+        rvFlashcards.setLayoutManager(flashcardsLayoutManager);
+        rvFlashcards.setHasFixedSize(true);
+        rvFlashcards.setAdapter(flashcardAdapter);
+
+        // Fetch the next page once the list is within half a page of its end
+        rvFlashcards.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = flashcardsLayoutManager.findLastVisibleItemPosition();
+                if (dy > 0 && lastVisible >= flashcardsList.size() - DatabaseHelper.PAGE_SIZE / 2) {
+                    loadNextPage(null);
+                }
+            }
+        });
+    }
+
+    private void onSearchQueryChanged(String query) {
+        if (query.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = query;
+
+        if (query.isEmpty()) {
+            // Back to the paged list straight away
+            flashcardSearch.cancel();
+            loadFlashcards();
+        } else {
+            flashcardSearch.onQueryChanged(query);
+        }
     }
 
     private void setupGestureDetector() {
@@ -99,130 +242,297 @@ public class FlashcardsFragment extends Fragment {
     }
 
     private void loadFlashcards() {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser != null) {
-            flashcardsList = databaseHelper.getUserFlashcards((int) currentUser.getId());
-            updateFlashcardCount();
-            displayCurrentCard();
-            displayAllFlashcards();
+        loadFlashcards(null);
+    }
+
+    /**
+     * Reloads the study queue and the list from the top. As many cards as are already showing
+     * are re-read (at least one page), so a refresh after an edit keeps the user's place.
+     * onLoaded runs on the main thread.
+     */
+    private void loadFlashcards(Runnable onLoaded) {
+        if (flashcardsObservation != null) {
+            flashcardsObservation.markCurrent();
         }
+        if (!searchQuery.isEmpty()) {
+            // Refresh the search results instead of replacing them with the full list
+            searchFlashcards(searchQuery, onLoaded);
+            return;
+        }
+
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        int limit = Math.max(DatabaseHelper.PAGE_SIZE, flashcardsList.size());
+        int generation = ++loadGeneration;
+        isLoadingPage = false;
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            // Answers still in the buffer would otherwise come back as due
+            reviewBuffer.flush();
+            long now = EpochDate.nowMillis();
+
+            FirstPage firstPage = new FirstPage();
+            firstPage.userId = currentUser.getId();
+            firstPage.dueCards = databaseHelper.getDueFlashcards(currentUser.getId(), now, STUDY_BATCH_SIZE);
+            firstPage.dueCount = databaseHelper.getDueFlashcardsCount(currentUser.getId(), now);
+            firstPage.nextDueAt = databaseHelper.getNextDueTime(currentUser.getId());
+            firstPage.flashcards = databaseHelper.getUserFlashcardsPage(currentUser.getId(), null, limit);
+            firstPage.totalCount = databaseHelper.getUserFlashcardsCount(currentUser.getId());
+            return firstPage;
+        }, firstPage -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            if (firstPage != null) {
+                currentUserId = firstPage.userId;
+                flashcardsList = firstPage.flashcards;
+                totalFlashcardCount = firstPage.totalCount;
+                hasMoreFlashcards = flashcardsList.size() == limit;
+                applyStudyQueue(firstPage);
+                updateFlashcardCount();
+                displayCurrentCard();
+                displayAllFlashcards();
+            }
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+        });
+    }
+
+    // Replaces the list with the best matches for query; onLoaded runs on the main thread
+    private StepNoteRepository.Task searchFlashcards(String query, Runnable onLoaded) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        int generation = ++loadGeneration;
+        isLoadingPage = false;
+
+        return repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            return currentUser != null
+                    ? databaseHelper.searchFlashcards(currentUser.getId(), query, SEARCH_RESULT_LIMIT)
+                    : null;
+        }, results -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            if (results != null) {
+                flashcardsList = results;
+                totalFlashcardCount = results.size();
+                hasMoreFlashcards = false;
+                updateFlashcardCount();
+                displayAllFlashcards();
+            }
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+        });
+    }
+
+    // Appends the page after the last loaded card; onLoaded runs once it is in flashcardsList
+    private void loadNextPage(Runnable onLoaded) {
+        if (isLoadingPage || !hasMoreFlashcards || flashcardsList.isEmpty()) {
+            return;
+        }
+        isLoadingPage = true;
+        int generation = loadGeneration;
+        Flashcard lastLoaded = flashcardsList.get(flashcardsList.size() - 1);
+
+        repository.execute(getViewLifecycleOwner(),
+                () -> repository.getDatabaseHelper().getUserFlashcardsPage(currentUserId, lastLoaded, DatabaseHelper.PAGE_SIZE),
+                page -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    isLoadingPage = false;
+                    hasMoreFlashcards = page.size() == DatabaseHelper.PAGE_SIZE;
+
+                    flashcardsList.addAll(page);
+                    displayAllFlashcards(); // Diffs as an append, so shown rows are not rebound
+
+                    if (onLoaded != null) {
+                        onLoaded.run();
+                    }
+                }, e -> {
+                    if (generation == loadGeneration) {
+                        isLoadingPage = false;
+                    }
+                });
     }
 
     private void updateFlashcardCount() {
-        int count = flashcardsList.size();
+        int count = totalFlashcardCount;
+        if (!searchQuery.isEmpty()) {
+            tvFlashcardCount.setText(count + (count == 1 ? " match" : " matches"));
+            return;
+        }
         tvFlashcardCount.setText(count + (count == 1 ? " card" : " cards"));
     }
 
+    // Swaps in a freshly loaded queue, staying on the card being studied
+    private void applyStudyQueue(FirstPage firstPage) {
+        Flashcard current = studyQueue.isEmpty() ? null : studyQueue.get(currentCardIndex);
+        studyQueue = firstPage.dueCards;
+        dueCount = firstPage.dueCount;
+        nextDueAt = firstPage.nextDueAt;
+
+        currentCardIndex = 0;
+        if (current != null) {
+            int index = indexOfCard(studyQueue, current.getId());
+            if (index >= 0) {
+                currentCardIndex = index;
+            } else if (current.getDueAt() > EpochDate.nowMillis()) {
+                // Picked from the list ahead of schedule; keep studying it
+                studyQueue.add(0, current);
+            } else {
+                isShowingFront = true;
+            }
+        }
+    }
+
+    private static int indexOfCard(List<Flashcard> cards, int flashcardId) {
+        for (int i = 0; i < cards.size(); i++) {
+            if (cards.get(i).getId() == flashcardId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private void displayCurrentCard() {
-        if (flashcardsList.isEmpty()) {
-            // Show empty state
-            tvCardContent.setText("No flashcards yet!\nTap 'Add New Flashcard' to get started");
-            tvTapToFlip.setText("Create your first flashcard");
-            tvCardProgress.setText("0 cards");
+        if (studyQueue.isEmpty()) {
+            gradeButtonsContainer.setVisibility(View.GONE);
+            swipeInstructions.setVisibility(View.VISIBLE);
+
+            if (nextDueAt == 0) {
+                // Show empty state
+                tvCardContent.setText("No flashcards yet!\nTap 'Add New Flashcard' to get started");
+                tvTapToFlip.setText("Create your first flashcard");
+            } else {
+                tvCardContent.setText("All caught up! 🎉\nNext review " + EpochDate.formatDateTime(nextDueAt));
+                tvTapToFlip.setText("Tap a card below to study it early");
+            }
+            tvCardProgress.setText("0 due");
             return;
         }
 
-        Flashcard currentCard = flashcardsList.get(currentCardIndex);
+        Flashcard currentCard = studyQueue.get(currentCardIndex);
+        if (currentCard.getId() != timedCardId) {
+            timedCardId = currentCard.getId();
+            cardShownAt = SystemClock.elapsedRealtime();
+            cardFlips = 0;
+        }
 
         if (isShowingFront) {
             tvCardContent.setText(currentCard.getFrontText());
             tvTapToFlip.setText("Tap to reveal answer");
         } else {
             tvCardContent.setText(currentCard.getBackText());
-            tvTapToFlip.setText("Tap to show question");
+            tvTapToFlip.setText("How well did you remember?");
         }
+        // Grading replaces the swipe hints once the answer is showing
+        gradeButtonsContainer.setVisibility(isShowingFront ? View.GONE : View.VISIBLE);
+        swipeInstructions.setVisibility(isShowingFront ? View.VISIBLE : View.GONE);
 
         // Update progress
-        tvCardProgress.setText("Card " + (currentCardIndex + 1) + " of " + flashcardsList.size());
+        tvCardProgress.setText("Card " + (currentCardIndex + 1) + " of " + Math.max(dueCount, studyQueue.size()) + " due");
     }
 
     private void flipCard() {
-        if (flashcardsList.isEmpty()) {
-            showAddFlashcardDialog();
+        if (studyQueue.isEmpty()) {
+            if (nextDueAt == 0) {
+                showAddFlashcardDialog();
+            }
             return;
         }
 
         isShowingFront = !isShowingFront;
+        cardFlips++;
         displayCurrentCard();
     }
 
-    private void showNextCard() {
-        if (flashcardsList.isEmpty()) return;
+    /**
+     * Schedules the current card from the answer and moves on. The new state and its
+     * review_log entry are written with the rest of the batch; the queue is reloaded once
+     * the loaded cards run out.
+     */
+    private void gradeCurrentCard(SpacedRepetition.Grade grade) {
+        if (studyQueue.isEmpty() || isShowingFront) {
+            return;
+        }
 
-        currentCardIndex = (currentCardIndex + 1) % flashcardsList.size(); // Loop back to start
-        isShowingFront = true; // Always start with front when switching cards
+        long now = EpochDate.nowMillis();
+        Flashcard card = studyQueue.remove(currentCardIndex);
+        if (card.getDueAt() <= now) {
+            dueCount = Math.max(0, dueCount - 1);
+        }
+        long answerMillis = SystemClock.elapsedRealtime() - cardShownAt;
+        if (reviewBuffer.record(card, grade, now, answerMillis, cardFlips)) {
+            flushReviews();
+        }
+        timedCardId = -1; // A relearned card is timed afresh when it comes back
+
+        if (currentCardIndex >= studyQueue.size()) {
+            currentCardIndex = 0;
+        }
+        isShowingFront = true;
+        if (studyQueue.isEmpty()) {
+            loadFlashcards(); // Flushes the answers first
+        }
         displayCurrentCard();
     }
 
+    // Writes buffered answers in the background; not tied to this screen so it always completes
+    private void flushReviews() {
+        if (reviewBuffer.getPendingCount() > 0) {
+            repository.execute(null, () -> {
+                reviewBuffer.flush();
+            });
+        }
+    }
+
+    private void showNextCard() {
+        if (studyQueue.isEmpty()) return;
+
+        showCardAt((currentCardIndex + 1) % studyQueue.size()); // Loops within the loaded due cards
+    }
+
     private void showPreviousCard() {
-        if (flashcardsList.isEmpty()) return;
+        if (studyQueue.isEmpty()) return;
 
-        currentCardIndex = (currentCardIndex - 1 + flashcardsList.size()) % flashcardsList.size(); // Loop to end
+        showCardAt((currentCardIndex - 1 + studyQueue.size()) % studyQueue.size());
+    }
+
+    private void showCardAt(int index) {
+        currentCardIndex = index;
         isShowingFront = true; // Always start with front when switching cards
         displayCurrentCard();
     }
 
-    private void displayAllFlashcards() {
-        flashcardsContainer.removeAllViews();
-
-        if (flashcardsList.isEmpty()) {
-            // Show empty state
-            TextView emptyText = new TextView(getContext());
-            emptyText.setText("No flashcards yet! Create your first flashcard using the button above.");
-            emptyText.setTextSize(16);
-            emptyText.setTextColor(getResources().getColor(R.color.text_secondary));
-            emptyText.setPadding(32, 64, 32, 64);
-            emptyText.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
-            flashcardsContainer.addView(emptyText);
-            return;
-        }
-
-        for (int i = 0; i < flashcardsList.size(); i++) {
-            Flashcard flashcard = flashcardsList.get(i);
-            View flashcardView = createFlashcardItemView(flashcard, i);
-            flashcardsContainer.addView(flashcardView);
+    // Puts a card from the list at the front of the study queue, due or not
+    private void studyNow(Flashcard flashcard) {
+        int index = indexOfCard(studyQueue, flashcard.getId());
+        if (index >= 0) {
+            studyQueue.remove(index);
         }
+        studyQueue.add(0, flashcard);
+        showCardAt(0);
     }
 
-    private View createFlashcardItemView(Flashcard flashcard, int position) {
-        View view = LayoutInflater.from(getContext()).inflate(R.layout.item_flashcard, flashcardsContainer, false);
-
-        TextView tvCardNumber = view.findViewById(R.id.tvCardNumber);
-        TextView tvCreatedDate = view.findViewById(R.id.tvCreatedDate);
-        TextView tvQuestion = view.findViewById(R.id.tvQuestion);
-        TextView tvAnswer = view.findViewById(R.id.tvAnswer);
-        TextView btnEdit = view.findViewById(R.id.btnEdit);
-        TextView btnDelete = view.findViewById(R.id.btnDelete);
-
-        // Set data
-        tvCardNumber.setText("#" + (position + 1));
-        tvQuestion.setText(flashcard.getFrontText());
-        tvAnswer.setText(flashcard.getBackText());
+    // Hands a copy of flashcardsList to the adapter, which diffs it off the main thread
+    private void displayAllFlashcards() {
+        flashcardAdapter.submitList(new ArrayList<>(flashcardsList));
 
-        // Set date (extract date part from datetime)
-        if (flashcard.getCreatedAt() != null && !flashcard.getCreatedAt().isEmpty()) {
-            String dateOnly = flashcard.getCreatedAt();
-            if (dateOnly.contains(" ")) {
-                dateOnly = dateOnly.split(" ")[0]; // Get just the date part
-            }
-            tvCreatedDate.setText(dateOnly);
+        if (flashcardsList.isEmpty()) {
+            // Show empty state
+            tvFlashcardsEmpty.setText(searchQuery.isEmpty()
+                    ? "No flashcards yet! Create your first flashcard using the button above."
+                    : "No flashcards match your search.");
+            tvFlashcardsEmpty.setVisibility(View.VISIBLE);
         } else {
-            tvCreatedDate.setText("2025-08-13");
+            tvFlashcardsEmpty.setVisibility(View.GONE);
         }
-
-        // Set click listeners
-        view.setOnClickListener(v -> {
-            // Jump to this card in study mode
-            currentCardIndex = position;
-            isShowingFront = true;
-            displayCurrentCard();
-            Toast.makeText(getContext(), "Jumped to card " + (position + 1), Toast.LENGTH_SHORT).show();
-        });
-
-        btnEdit.setOnClickListener(v -> showEditFlashcardDialog(flashcard, position));
-        btnDelete.setOnClickListener(v -> showDeleteConfirmDialog(flashcard, position));
-
-        return view;
     }
 
     private void showAddFlashcardDialog() {
@@ -282,11 +592,119 @@ public class FlashcardsFragment extends Fragment {
             createFlashcard(question, answer);
         });
 
+        builder.setNeutralButton("Import file", (dialog, which) -> openDeckPicker());
         builder.setNegativeButton("Cancel", null);
         builder.create().show();
     }
 
-    private void showEditFlashcardDialog(Flashcard flashcard, int position) {
+    // ===== DECK IMPORT =====
+
+    private void setupDeckPicker() {
+        deckPickerLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == getActivity().RESULT_OK && result.getData() != null) {
+                        Uri deckUri = result.getData().getData();
+                        if (deckUri != null) {
+                            importDeck(deckUri);
+                        }
+                    }
+                }
+        );
+    }
+
+    private void openDeckPicker() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/csv", "text/comma-separated-values",
+                "text/tab-separated-values", "text/plain"});
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+
+        try {
+            deckPickerLauncher.launch(Intent.createChooser(intent, "Select a CSV or TSV deck"));
+        } catch (Exception e) {
+            Toast.makeText(getContext(), "No file manager found", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // Streams the deck into the database in the background; the list refreshes as chunks commit
+    private void importDeck(Uri deckUri) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        ContentResolver resolver = requireContext().getContentResolver();
+        FlashcardImporter importer = new FlashcardImporter(databaseHelper);
+        runningImport = importer;
+
+        ProgressBar progressBar = new ProgressBar(getContext(), null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setPadding(50, 40, 50, 10);
+        progressBar.setIndeterminate(true);
+        importDialog = new AlertDialog.Builder(getContext())
+                .setTitle("Importing flashcards")
+                .setMessage("Reading deck...")
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Cancel", (dialog, which) -> importer.cancel())
+                .show();
+        AlertDialog dialog = importDialog;
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            long totalBytes = queryDeckSize(resolver, deckUri);
+            try (InputStream input = resolver.openInputStream(deckUri)) {
+                if (input == null) {
+                    throw new IOException("Cannot open " + deckUri);
+                }
+                return importer.importDeck(currentUser.getId(), input, totalBytes,
+                        (imported, bytesRead, total) -> mainHandler.post(() -> {
+                            if (!dialog.isShowing()) {
+                                return;
+                            }
+                            dialog.setMessage(imported + " flashcards imported");
+                            if (total > 0) {
+                                progressBar.setIndeterminate(false);
+                                progressBar.setProgress((int) (bytesRead * 100 / total));
+                            }
+                        }));
+            }
+        }, result -> {
+            finishImport();
+            if (result == null) {
+                Toast.makeText(getContext(), "Please sign in to import flashcards", Toast.LENGTH_SHORT).show();
+            } else if (result.cancelled) {
+                Toast.makeText(getContext(), "Import cancelled after " + result.imported + " flashcards", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(getContext(), "Imported " + result.imported + " of " + result.recordsRead + " rows", Toast.LENGTH_SHORT).show();
+            }
+        }, e -> {
+            finishImport();
+            Log.e(TAG, "Error importing deck", e);
+            Toast.makeText(getContext(), "Error importing deck: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private void finishImport() {
+        runningImport = null;
+        if (importDialog != null) {
+            importDialog.dismiss();
+            importDialog = null;
+        }
+    }
+
+    // Size in bytes from the provider, or -1 if it doesn't say
+    private static long queryDeckSize(ContentResolver resolver, Uri deckUri) {
+        try (Cursor cursor = resolver.query(deckUri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read deck size", e);
+        }
+        return -1;
+    }
+
+    private void showEditFlashcardDialog(Flashcard flashcard) {
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
         builder.setTitle("Edit Flashcard");
 
@@ -340,105 +758,159 @@ public class FlashcardsFragment extends Fragment {
                 return;
             }
 
-            updateFlashcard(flashcard.getId(), question, answer, position);
+            updateFlashcard(flashcard.getId(), question, answer);
         });
 
         builder.setNegativeButton("Cancel", null);
         builder.create().show();
     }
 
-    private void showDeleteConfirmDialog(Flashcard flashcard, int position) {
+    private void showDeleteConfirmDialog(Flashcard flashcard) {
         new AlertDialog.Builder(getContext())
                 .setTitle("Delete Flashcard")
                 .setMessage("Are you sure you want to delete this flashcard?\n\nQ: " + flashcard.getFrontText())
-                .setPositiveButton("Delete", (dialog, which) -> deleteFlashcard(flashcard.getId(), position))
+                .setPositiveButton("Delete", (dialog, which) -> deleteFlashcard(flashcard.getId()))
                 .setNegativeButton("Cancel", null)
                 .setIcon(android.R.drawable.ic_dialog_alert)
                 .show();
     }
 
     private void createFlashcard(String question, String answer) {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser != null) {
-            long result = databaseHelper.addFlashcard((int) currentUser.getId(), question, answer);
-
-            if (result > 0) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            long id = databaseHelper.addFlashcard(currentUser.getId(), question, answer);
+            // Read back as stored, so the list keyset and created date match the row
+            return id > 0 ? databaseHelper.getFlashcard((int) id) : new Flashcard();
+        }, created -> {
+            if (created == null) {
+                Toast.makeText(getContext(), "Please login to create flashcards", Toast.LENGTH_SHORT).show();
+            } else if (created.getId() > 0) {
                 Toast.makeText(getContext(), "Flashcard created successfully!", Toast.LENGTH_SHORT).show();
-                loadFlashcards(); // Refresh everything
 
-                // If this is the first card, show it immediately
-                if (flashcardsList.size() == 1) {
-                    currentCardIndex = 0;
-                    isShowingFront = true;
-                    displayCurrentCard();
+                // Patch it in rather than reloading: newest first in the list, and due at once
+                flashcardsObservation.markCurrent();
+                if (searchQuery.isEmpty()) {
+                    flashcardsList.add(0, created);
+                    totalFlashcardCount++;
+                    updateFlashcardCount();
+                    displayAllFlashcards();
                 }
+                studyQueue.add(created);
+                dueCount++;
+                displayCurrentCard();
 
                 Log.d(TAG, "Flashcard created successfully");
             } else {
                 Toast.makeText(getContext(), "Failed to create flashcard", Toast.LENGTH_SHORT).show();
                 Log.e(TAG, "Failed to create flashcard");
             }
-        } else {
-            Toast.makeText(getContext(), "Please login to create flashcards", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
-    private void updateFlashcard(int flashcardId, String question, String answer, int position) {
-        boolean success = databaseHelper.updateFlashcard(flashcardId, question, answer);
-
-        if (success) {
-            Toast.makeText(getContext(), "Flashcard updated successfully!", Toast.LENGTH_SHORT).show();
-            loadFlashcards(); // Refresh everything
+    private void updateFlashcard(int flashcardId, String question, String answer) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        repository.execute(getViewLifecycleOwner(), () -> databaseHelper.updateFlashcard(flashcardId, question, answer)
+                ? databaseHelper.getFlashcard(flashcardId) : null, updated -> {
+            if (updated != null) {
+                Toast.makeText(getContext(), "Flashcard updated successfully!", Toast.LENGTH_SHORT).show();
+
+                // Swap in the new row; the adapter rebinds just that item
+                flashcardsObservation.markCurrent();
+                int index = indexOfCard(flashcardsList, flashcardId);
+                if (index >= 0) {
+                    flashcardsList.set(index, updated);
+                    displayAllFlashcards();
+                }
+                // The queue keeps its own copy, with scheduling state that may not be written yet
+                index = indexOfCard(studyQueue, flashcardId);
+                if (index >= 0) {
+                    studyQueue.get(index).setFrontText(question);
+                    studyQueue.get(index).setBackText(answer);
+                    displayCurrentCard();
+                }
 
-            // Keep current position if we're on the updated card
-            if (currentCardIndex == position) {
-                displayCurrentCard();
+                Log.d(TAG, "Flashcard updated successfully");
+            } else {
+                Toast.makeText(getContext(), "Failed to update flashcard", Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Failed to update flashcard");
             }
-
-            Log.d(TAG, "Flashcard updated successfully");
-        } else {
-            Toast.makeText(getContext(), "Failed to update flashcard", Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "Failed to update flashcard");
-        }
+        });
     }
 
-    private void deleteFlashcard(int flashcardId, int position) {
-        boolean success = databaseHelper.deleteFlashcard(flashcardId);
-
-        if (success) {
-            Toast.makeText(getContext(), "Flashcard deleted", Toast.LENGTH_SHORT).show();
+    private void deleteFlashcard(int flashcardId) {
+        repository.deleteFlashcard(getViewLifecycleOwner(), flashcardId, success -> {
+            if (success) {
+                Toast.makeText(getContext(), "Flashcard deleted", Toast.LENGTH_SHORT).show();
+
+                // Drop it from the study queue, keeping the current card if it was another one
+                int index = indexOfCard(studyQueue, flashcardId);
+                if (index >= 0) {
+                    Flashcard removed = studyQueue.remove(index);
+                    if (removed.getDueAt() <= EpochDate.nowMillis()) {
+                        dueCount = Math.max(0, dueCount - 1);
+                    }
+                    if (index < currentCardIndex) {
+                        currentCardIndex--;
+                    } else if (index == currentCardIndex) {
+                        isShowingFront = true;
+                        if (currentCardIndex >= studyQueue.size()) {
+                            currentCardIndex = 0;
+                        }
+                    }
+                }
 
-            // Adjust current index if needed
-            if (currentCardIndex >= position && currentCardIndex > 0) {
-                currentCardIndex--;
-            }
+                // And from the list; the adapter animates just that row out
+                flashcardsObservation.markCurrent();
+                index = indexOfCard(flashcardsList, flashcardId);
+                if (index >= 0) {
+                    flashcardsList.remove(index);
+                    totalFlashcardCount = Math.max(0, totalFlashcardCount - 1);
+                    updateFlashcardCount();
+                    displayAllFlashcards();
+                }
 
-            loadFlashcards(); // Refresh everything
+                if (studyQueue.isEmpty()) {
+                    loadFlashcards(); // Next due cards, or the empty state
+                } else {
+                    displayCurrentCard();
+                }
 
-            // Reset to first card if we deleted the current one
-            if (currentCardIndex >= flashcardsList.size() && !flashcardsList.isEmpty()) {
-                currentCardIndex = 0;
+                Log.d(TAG, "Flashcard deleted successfully");
+            } else {
+                Toast.makeText(getContext(), "Failed to delete flashcard", Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Failed to delete flashcard");
             }
+        });
+    }
 
-            displayCurrentCard();
-            Log.d(TAG, "Flashcard deleted successfully");
-        } else {
-            Toast.makeText(getContext(), "Failed to delete flashcard", Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "Failed to delete flashcard");
-        }
+    // Result of the first-page load
+    private static class FirstPage {
+        int userId;
+        List<Flashcard> flashcards;
+        int totalCount;
+        List<Flashcard> dueCards;
+        int dueCount;
+        long nextDueAt;
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        loadFlashcards(); // Refresh when returning to fragment
+    public void onPause() {
+        super.onPause();
+        flushReviews();
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (databaseHelper != null) {
-            databaseHelper.close();
+    public void onDestroyView() {
+        super.onDestroyView();
+        flashcardSearch.cancel();
+        if (runningImport != null) {
+            // Stop after the current chunk; what has committed stays
+            runningImport.cancel();
         }
+        finishImport();
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.example.stepnotev2;
+
+import java.util.Locale;
+
+/**
+ * Turns free text from a search box into an FTS MATCH expression.
+ *
+ * Every word becomes a prefix term ("flash car" matches "flashcard cards"), and all
+ * terms must match. Characters with meaning in FTS syntax (quotes, *, -, parentheses,
+ * column filters) are dropped, so user input can never produce a malformed query.
+ */
+public final class FtsQuery {
+
+    private FtsQuery() {}
+
+    /**
+     * Returns the MATCH expression for {@code input}, or null when it has nothing searchable.
+     */
+    public static String toMatchExpression(String input) {
+        if (input == null) {
+            return null;
+        }
+
+        StringBuilder expression = new StringBuilder();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else {
+                appendTerm(expression, term);
+            }
+        }
+        appendTerm(expression, term);
+
+        return expression.length() > 0 ? expression.toString() : null;
+    }
+
+    private static void appendTerm(StringBuilder expression, StringBuilder term) {
+        if (term.length() == 0) {
+            return;
+        }
+        // Lower case also keeps words like "or" and "not" from being read as operators
+        String word = term.toString().toLowerCase(Locale.ROOT);
+        term.setLength(0);
+
+        if (expression.length() > 0) {
+            expression.append(' ');
+        }
+        expression.append(word).append('*');
+    }
+}
@@ -18,34 +18,52 @@ import android.widget.TextView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import java.util.Locale;
 
 public class HomeFragment extends Fragment {
 
     private static final String TAG = "HomeFragment";
     private static final int PERMISSION_REQUEST_ACTIVITY_RECOGNITION = 1001;
+    // Window of the study stats card
+    private static final int STUDY_STATS_DAYS = 7;
 
     private TextView tvWelcomeMessage;
     private TextView tvDailyStepsCount;
     private TextView tvLearningDays;
     private TextView tvTotalStepsCount;
+    private TextView tvReviewsPerDay, tvRetention, tvAverageAnswerTime;
     private ProgressBar progressBarSteps;
     private LinearLayout sectionFlashcards, sectionAudioNotes;
 
-    private DatabaseHelper databaseHelper;
+    private StepNoteRepository repository;
+    private int todayGoal = 10000;
     private StepCountReceiver stepCountReceiver;
+    private InvalidationTracker.Observation stepDataObservation;
+    private InvalidationTracker.Observation userObservation;
+    private InvalidationTracker.Observation studyStatsObservation;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_home, container, false);
 
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = StepNoteRepository.getInstance(getContext());
 
         initViews(view);
         requestActivityRecognitionPermission();
         loadUserWelcomeMessage();
         loadStepData();
+        loadStudyStats();
         setupClickListeners();
 
+        // Reload only when the tables behind each card change, at most once per frame
+        InvalidationTracker tracker = repository.getDatabaseHelper().getInvalidationTracker();
+        stepDataObservation = tracker.observe(getViewLifecycleOwner(), this::loadStepData,
+                DatabaseHelper.TABLE_STEPS, DatabaseHelper.TABLE_USER_STATS, DatabaseHelper.TABLE_USERS);
+        userObservation = tracker.observe(getViewLifecycleOwner(), this::loadUserWelcomeMessage,
+                DatabaseHelper.TABLE_USERS);
+        studyStatsObservation = tracker.observe(getViewLifecycleOwner(), this::loadStudyStats,
+                DatabaseHelper.TABLE_REVIEW_DAILY, DatabaseHelper.TABLE_USERS);
+
         return view;
     }
 
@@ -54,6 +72,9 @@ public class HomeFragment extends Fragment {
         tvDailyStepsCount = view.findViewById(R.id.tvDailyStepsCount);
         tvLearningDays = view.findViewById(R.id.tvLearningDays);
         tvTotalStepsCount = view.findViewById(R.id.tvTotalStepsCount);
+        tvReviewsPerDay = view.findViewById(R.id.tvReviewsPerDay);
+        tvRetention = view.findViewById(R.id.tvRetention);
+        tvAverageAnswerTime = view.findViewById(R.id.tvAverageAnswerTime);
         progressBarSteps = view.findViewById(R.id.progressBarSteps);
         sectionFlashcards = view.findViewById(R.id.sectionFlashcards);
         sectionAudioNotes = view.findViewById(R.id.sectionAudioNotes);
@@ -94,41 +115,80 @@ public class HomeFragment extends Fragment {
     }
 
     private void loadUserWelcomeMessage() {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-
-        if (currentUser != null) {
-            String fullName = currentUser.getName();
-            String firstName = getFirstName(fullName);
-            String welcomeMessage = "Welcome back! " + firstName;
-            tvWelcomeMessage.setText(welcomeMessage);
-        } else {
-            tvWelcomeMessage.setText("Welcome back!");
+        if (userObservation != null) {
+            userObservation.markCurrent();
         }
+        repository.getCurrentUser(getViewLifecycleOwner(), currentUser -> {
+            if (currentUser != null) {
+                String fullName = currentUser.getName();
+                String firstName = getFirstName(fullName);
+                String welcomeMessage = "Welcome back! " + firstName;
+                tvWelcomeMessage.setText(welcomeMessage);
+            } else {
+                tvWelcomeMessage.setText("Welcome back!");
+            }
+        });
     }
 
     private void loadStepData() {
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser != null) {
-            try {
-                // Load today's steps
-                int todaySteps = databaseHelper.getTodaySteps(currentUser.getId());
-                int todayGoal = databaseHelper.getTodayGoal(currentUser.getId());
+        if (stepDataObservation != null) {
+            stepDataObservation.markCurrent();
+        }
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
 
-                // Update step count display
-                tvDailyStepsCount.setText(String.valueOf(todaySteps));
+        // Today's row and the lifetime totals are read together in the background
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            StepSnapshot snapshot = new StepSnapshot();
+            snapshot.dailySteps = databaseHelper.getTodayStepData(currentUser.getId());
+            snapshot.stats = databaseHelper.getUserStats(currentUser.getId());
+            return snapshot;
+        }, snapshot -> {
+            if (snapshot == null) {
+                return;
+            }
+            int todaySteps = snapshot.dailySteps.steps;
+            todayGoal = snapshot.dailySteps.goal;
 
-                // Update progress bar
-                int progress = (int) ((float) todaySteps / todayGoal * 100);
-                progressBarSteps.setProgress(Math.min(progress, 100));
+            // Update step count display
+            tvDailyStepsCount.setText(String.valueOf(todaySteps));
 
-                // Load user statistics
-                DatabaseHelper.UserStats stats = databaseHelper.getUserStats(currentUser.getId());
-                tvLearningDays.setText(String.valueOf(stats.totalDays));
-                tvTotalStepsCount.setText(String.valueOf(stats.totalSteps));
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading step data: " + e.getMessage());
-            }
+            // Update progress bar
+            int progress = (int) ((float) todaySteps / todayGoal * 100);
+            progressBarSteps.setProgress(Math.min(progress, 100));
+
+            // Update user statistics
+            tvLearningDays.setText(String.valueOf(snapshot.stats.totalDays));
+            tvTotalStepsCount.setText(String.valueOf(snapshot.stats.totalSteps));
+        }, e -> Log.e(TAG, "Error loading step data: " + e.getMessage()));
+    }
+
+    // Reads the week's review_daily rows, never the review log itself
+    private void loadStudyStats() {
+        if (studyStatsObservation != null) {
+            studyStatsObservation.markCurrent();
         }
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            User currentUser = databaseHelper.getCurrentLoggedInUser();
+            if (currentUser == null) {
+                return null;
+            }
+            return databaseHelper.getReviewStatsForLastDays(currentUser.getId(), STUDY_STATS_DAYS);
+        }, stats -> {
+            if (stats == null) {
+                return;
+            }
+            tvReviewsPerDay.setText(String.format(Locale.getDefault(), "%.1f", stats.getReviewsPerDay()));
+            float retention = stats.getRetention();
+            tvRetention.setText(retention < 0 ? "—" : Math.round(retention * 100) + "%");
+            tvAverageAnswerTime.setText(stats.reviews == 0 ? "—"
+                    : String.format(Locale.getDefault(), "%.1f s", stats.getAverageAnswerMillis() / 1000f));
+        }, e -> Log.e(TAG, "Error loading study stats: " + e.getMessage()));
     }
 
     private String getFirstName(String fullName) {
@@ -156,8 +216,6 @@ public class HomeFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        loadUserWelcomeMessage();
-        loadStepData();
 
         // Register broadcast receiver for step updates with Android 14+ compatibility
         registerStepCountReceiver();
@@ -177,10 +235,6 @@ public class HomeFragment extends Fragment {
 
         // Make sure receiver is unregistered
         unregisterStepCountReceiver();
-
-        if (databaseHelper != null) {
-            databaseHelper.close();
-        }
     }
 
     /**
@@ -224,6 +278,12 @@ public class HomeFragment extends Fragment {
         }
     }
 
+    // Result of one background step-data load
+    private static class StepSnapshot {
+        DatabaseHelper.DailySteps dailySteps;
+        DatabaseHelper.UserStats stats;
+    }
+
     // Broadcast receiver for real-time step updates
     private class StepCountReceiver extends BroadcastReceiver {
         @Override
@@ -237,16 +297,13 @@ public class HomeFragment extends Fragment {
                         tvDailyStepsCount.setText(String.valueOf(stepCount));
                     }
 
-                    // Update progress bar
-                    User currentUser = databaseHelper.getCurrentLoggedInUser();
-                    if (currentUser != null && progressBarSteps != null) {
-                        int goal = databaseHelper.getTodayGoal(currentUser.getId());
-                        int progress = (int) ((float) stepCount / goal * 100);
+                    // Update progress bar against the goal loaded with today's row
+                    if (progressBarSteps != null) {
+                        int progress = (int) ((float) stepCount / todayGoal * 100);
                         progressBarSteps.setProgress(Math.min(progress, 100));
                     }
 
-                    // Refresh total stats
-                    loadStepData();
+                    // Totals are reloaded by stepDataObservation once a flush reaches the database
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error processing step count update: " + e.getMessage());
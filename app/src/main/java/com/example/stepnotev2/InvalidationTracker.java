@@ -0,0 +1,212 @@
+package com.example.stepnotev2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table-level change tracking for DatabaseHelper.
+ *
+ * Writers call {@link #notifyChanged} with the tables they modified, from any thread. Each
+ * table has a version counter, and notifications are coalesced into one dispatch on the
+ * next frame. Screens {@link #observe} the tables their queries read: the query re-runs
+ * once per frame while the owner is started, once when it is started again after a change,
+ * and not at all if nothing it reads has changed since it last ran.
+ */
+public class InvalidationTracker {
+
+    private static final String TAG = "InvalidationTracker";
+
+    public interface Observer {
+        // Main thread; re-run the query
+        void onInvalidated();
+    }
+
+    // Guarded by this
+    private final Map<String, Long> versions = new HashMap<>();
+    private final Set<String> pendingTables = new HashSet<>();
+    private boolean frameScheduled = false;
+    private long notificationCount = 0;
+    private long coalescedCount = 0;
+
+    // Main thread only
+    private final List<Observation> observations = new ArrayList<>();
+    private long reloadCount = 0;
+    private long skippedReloadCount = 0;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> dispatch();
+
+    /**
+     * Records that {@code tables} changed. Call once the write is committed.
+     */
+    public void notifyChanged(String... tables) {
+        synchronized (this) {
+            for (String table : tables) {
+                Long version = versions.get(table);
+                versions.put(table, version == null ? 1 : version + 1);
+                pendingTables.add(table);
+            }
+            notificationCount++;
+            if (frameScheduled) {
+                coalescedCount++;
+                return;
+            }
+            frameScheduled = true;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        } else {
+            mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(frameCallback));
+        }
+    }
+
+    /**
+     * Calls {@code observer} when any of {@code tables} changes. The observation starts out
+     * current, so the caller does its own first load. With an owner, changes made while it
+     * is stopped are delivered once on start and the observation ends when it is destroyed;
+     * without one it stays active until {@link Observation#remove()}. Main thread only.
+     */
+    public Observation observe(LifecycleOwner owner, Observer observer, String... tables) {
+        Observation observation = new Observation(owner, observer, tables);
+        if (owner != null) {
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                return observation;
+            }
+            owner.getLifecycle().addObserver(observation);
+        }
+        observations.add(observation);
+        return observation;
+    }
+
+    // Sum of the tables' versions; it changes whenever any of them does
+    synchronized long getVersion(String[] tables) {
+        long sum = 0;
+        for (String table : tables) {
+            Long version = versions.get(table);
+            if (version != null) {
+                sum += version;
+            }
+        }
+        return sum;
+    }
+
+    private void dispatch() {
+        Set<String> changed;
+        synchronized (this) {
+            frameScheduled = false;
+            changed = new HashSet<>(pendingTables);
+            pendingTables.clear();
+        }
+
+        // Copy, as an observer may remove itself or add another while running
+        for (Observation observation : new ArrayList<>(observations)) {
+            if (observation.reads(changed) && observation.isActive()) {
+                observation.deliverIfChanged();
+            }
+        }
+    }
+
+    // ===== METRICS =====
+
+    // notifyChanged calls
+    public synchronized long getNotificationCount() {
+        return notificationCount;
+    }
+
+    // notifyChanged calls folded into a frame that was already scheduled
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    // Queries re-run because their tables changed
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    // Re-runs avoided: a screen was started again, or woken by a frame, with nothing new to read
+    public long getSkippedReloadCount() {
+        return skippedReloadCount;
+    }
+
+    /**
+     * One screen's interest in a set of tables. Main thread only.
+     */
+    public final class Observation implements LifecycleEventObserver {
+        private final LifecycleOwner owner;
+        private final Observer observer;
+        private final String[] tables;
+        private long seenVersion;
+
+        private Observation(LifecycleOwner owner, Observer observer, String[] tables) {
+            this.owner = owner;
+            this.observer = observer;
+            this.tables = tables;
+            this.seenVersion = getVersion(tables);
+        }
+
+        /**
+         * Marks the current data as seen. Call when the screen runs the query itself, e.g.
+         * right after its own write, so the tracker does not run it a second time.
+         */
+        public void markCurrent() {
+            seenVersion = getVersion(tables);
+        }
+
+        public void remove() {
+            observations.remove(this);
+            if (owner != null) {
+                owner.getLifecycle().removeObserver(this);
+            }
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START) {
+                deliverIfChanged();
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                remove();
+            }
+        }
+
+        private boolean isActive() {
+            return owner == null || owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+        }
+
+        private boolean reads(Set<String> changed) {
+            for (String table : tables) {
+                if (changed.contains(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void deliverIfChanged() {
+            long version = getVersion(tables);
+            if (version == seenVersion) {
+                skippedReloadCount++;
+                return;
+            }
+            seenVersion = version;
+            reloadCount++;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Reloads: " + reloadCount + ", avoided: " + skippedReloadCount
+                        + ", notifications: " + getNotificationCount() + " (" + getCoalescedCount() + " coalesced)");
+            }
+            observer.onInvalidated();
+        }
+    }
+}
@@ -27,41 +27,43 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
 
 public class ProfileFragment extends Fragment {
 
     private ImageView profileImageView, btnChangeProfilePicture;
-    private TextView tvUserName, tvUserJoinDate;
-    private LinearLayout btnChangeInformation, btnSignOut;
+    private TextView tvUserName, tvUserJoinDate, tvStudySummary;
+    private LinearLayout btnChangeInformation, btnBackupRestore, btnSignOut;
 
-    // Database helper
-    private DatabaseHelper databaseHelper;
+    // Database access (async, results on the main thread)
+    private StepNoteRepository repository;
     private User currentUser;
 
     // Image picker launcher
     private ActivityResultLauncher<Intent> imagePickerLauncher;
     private ActivityResultLauncher<String> permissionLauncher;
 
+    // Backup file pickers; the export kind is chosen before the picker opens
+    private ActivityResultLauncher<Intent> backupExportLauncher;
+    private ActivityResultLauncher<Intent> backupRestoreLauncher;
+    private boolean pendingIncrementalBackup = false;
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_profile, container, false);
 
-        databaseHelper = new DatabaseHelper(getContext());
-
-        // Check if user is logged in
-        currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser == null) {
-            // No user logged in, redirect to sign in
-            redirectToSignIn();
-            return view;
-        }
+        repository = StepNoteRepository.getInstance(getContext());
 
         initViews(view);
         setupImagePickerLaunchers();
-        loadUserData();
+        setupBackupLaunchers();
         setupClickListeners();
 
+        // User data (and the signed-in check) is loaded in onResume
+
         return view;
     }
 
@@ -80,7 +82,9 @@ public class ProfileFragment extends Fragment {
         btnChangeProfilePicture = view.findViewById(R.id.btnChangeProfilePicture);
         tvUserName = view.findViewById(R.id.tvUserName);
         tvUserJoinDate = view.findViewById(R.id.tvUserJoinDate);
+        tvStudySummary = view.findViewById(R.id.tvStudySummary);
         btnChangeInformation = view.findViewById(R.id.btnChangeInformation);
+        btnBackupRestore = view.findViewById(R.id.btnBackupRestore);
         btnSignOut = view.findViewById(R.id.btnSignOut);
     }
 
@@ -113,58 +117,83 @@ public class ProfileFragment extends Fragment {
 
     private void loadUserData() {
         // Refresh current user data from database
-        currentUser = databaseHelper.getCurrentLoggedInUser();
-
-        if (currentUser != null) {
-            // Set user data to views
-            tvUserName.setText(currentUser.getName());
-
-            // Handle join date with fallback
-            String joinDate = currentUser.getJoinDate();
-            if (joinDate != null && !joinDate.isEmpty()) {
-                // Format the date nicely if it contains time
-                if (joinDate.contains(" ")) {
-                    joinDate = joinDate.split(" ")[0]; // Get just the date part (YYYY-MM-DD)
+        repository.getCurrentUser(getViewLifecycleOwner(), user -> {
+            currentUser = user;
+
+            if (currentUser != null) {
+                // Set user data to views
+                tvUserName.setText(currentUser.getName());
+
+                // Handle join date with fallback
+                String joinDate = currentUser.getJoinDate();
+                if (joinDate != null && !joinDate.isEmpty()) {
+                    // Format the date nicely if it contains time
+                    if (joinDate.contains(" ")) {
+                        joinDate = joinDate.split(" ")[0]; // Get just the date part (YYYY-MM-DD)
+                    }
+                    tvUserJoinDate.setText("Member since " + joinDate);
+                } else {
+                    // Fallback to current date if no join date
+                    String currentDate = EpochDate.formatDate(EpochDate.nowMillis());
+                    tvUserJoinDate.setText("Member since " + currentDate);
                 }
-                tvUserJoinDate.setText("Member since " + joinDate);
+
+                // Load profile image
+                loadProfileImage(currentUser.getProfileImagePath());
+                loadStudySummary(currentUser.getId());
+
+                android.util.Log.d("ProfileFragment", "User data loaded: " + currentUser.toString());
             } else {
-                // Fallback to current date if no join date
-                String currentDate = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault()).format(new java.util.Date());
-                tvUserJoinDate.setText("Member since " + currentDate);
+                android.util.Log.e("ProfileFragment", "No current user found");
+                redirectToSignIn();
             }
+        });
+    }
 
-            // Load profile image
-            loadProfileImage(currentUser.getProfileImagePath());
-
-            android.util.Log.d("ProfileFragment", "User data loaded: " + currentUser.toString());
-        } else {
-            android.util.Log.e("ProfileFragment", "No current user found");
-            redirectToSignIn();
-        }
+    // Lifetime totals from review_stats, kept current as answers are written
+    private void loadStudySummary(int userId) {
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        repository.execute(getViewLifecycleOwner(), () -> databaseHelper.getReviewStats(userId), stats -> {
+            if (stats.reviews == 0) {
+                tvStudySummary.setVisibility(View.GONE);
+                return;
+            }
+            float retention = stats.getRetention();
+            String summary = stats.reviews + (stats.reviews == 1 ? " review" : " reviews")
+                    + (retention < 0 ? "" : " · " + Math.round(retention * 100) + "% retention")
+                    + String.format(Locale.getDefault(), " · %.1f s per card", stats.getAverageAnswerMillis() / 1000f);
+            tvStudySummary.setText(summary);
+            tvStudySummary.setVisibility(View.VISIBLE);
+        }, e -> tvStudySummary.setVisibility(View.GONE));
     }
 
     private void loadProfileImage(String imagePath) {
-        if (imagePath != null && !imagePath.isEmpty()) {
-            File imageFile = new File(imagePath);
-            if (imageFile.exists()) {
-                try {
+        // Decode off the main thread; fall back to the default image if anything fails
+        repository.execute(getViewLifecycleOwner(), () -> {
+            if (imagePath != null && !imagePath.isEmpty()) {
+                File imageFile = new File(imagePath);
+                if (imageFile.exists()) {
                     Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
                     if (bitmap != null) {
                         // Apply circular crop to loaded image
-                        Bitmap circularBitmap = getCircularBitmap(bitmap);
-                        profileImageView.setImageBitmap(circularBitmap);
-                        android.util.Log.d("ProfileFragment", "Profile image loaded from: " + imagePath);
-                        return;
+                        return getCircularBitmap(bitmap);
                     }
-                } catch (Exception e) {
-                    android.util.Log.e("ProfileFragment", "Error loading profile image: " + e.getMessage());
                 }
             }
-        }
-
-        // Set default profile image
-        profileImageView.setImageResource(R.drawable.ic_profile_default);
-        android.util.Log.d("ProfileFragment", "Using default profile image");
+            return null;
+        }, circularBitmap -> {
+            if (circularBitmap != null) {
+                profileImageView.setImageBitmap(circularBitmap);
+                android.util.Log.d("ProfileFragment", "Profile image loaded from: " + imagePath);
+            } else {
+                // Set default profile image
+                profileImageView.setImageResource(R.drawable.ic_profile_default);
+                android.util.Log.d("ProfileFragment", "Using default profile image");
+            }
+        }, e -> {
+            android.util.Log.e("ProfileFragment", "Error loading profile image: " + e.getMessage());
+            profileImageView.setImageResource(R.drawable.ic_profile_default);
+        });
     }
 
     private void setupClickListeners() {
@@ -173,6 +202,8 @@ public class ProfileFragment extends Fragment {
 
         btnChangeInformation.setOnClickListener(v -> showChangeInformationDialog());
 
+        btnBackupRestore.setOnClickListener(v -> showBackupDialog());
+
         btnSignOut.setOnClickListener(v -> showSignOutConfirmationDialog());
     }
 
@@ -219,61 +250,83 @@ public class ProfileFragment extends Fragment {
             return;
         }
 
-        try {
+        User user = currentUser;
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        android.content.ContentResolver contentResolver = requireContext().getContentResolver();
+        File profileDir = new File(requireContext().getFilesDir(), "profile_images");
+
+        // Decode, crop, save and update the database in the background
+        repository.execute(getViewLifecycleOwner(), () -> {
+            ProfileImageResult imageResult = new ProfileImageResult();
+
             // Load and process the image
-            InputStream inputStream = getContext().getContentResolver().openInputStream(imageUri);
-            if (inputStream != null) {
-                Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
-                inputStream.close();
-
-                if (originalBitmap != null) {
-                    // Resize the image first
-                    Bitmap resizedBitmap = resizeImage(originalBitmap, 512, 512);
-
-                    // Apply circular crop
-                    Bitmap circularBitmap = getCircularBitmap(resizedBitmap);
-
-                    // Save the circular image
-                    String savedImagePath = saveCircularImageToInternalStorage(circularBitmap);
-
-                    if (savedImagePath != null) {
-                        // Update profile image view
-                        profileImageView.setImageBitmap(circularBitmap);
-
-                        // Update in database
-                        int result = databaseHelper.updateUserProfile(currentUser.getId(),
-                                currentUser.getName(), currentUser.getEmail(), savedImagePath);
-
-                        if (result > 0) {
-                            // Update current user object
-                            currentUser.setProfileImagePath(savedImagePath);
-                            Toast.makeText(getContext(), "Profile picture updated! 📸✨", Toast.LENGTH_SHORT).show();
-                            android.util.Log.d("ProfileFragment", "Profile image updated in database: " + savedImagePath);
-                        } else {
-                            Toast.makeText(getContext(), "Error updating profile picture in database", Toast.LENGTH_SHORT).show();
-                        }
+            InputStream inputStream = contentResolver.openInputStream(imageUri);
+            if (inputStream == null) {
+                return imageResult;
+            }
+            Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
+            inputStream.close();
 
-                    } else {
-                        Toast.makeText(getContext(), "Error saving profile picture", Toast.LENGTH_SHORT).show();
-                    }
+            if (originalBitmap == null) {
+                return imageResult;
+            }
+            imageResult.decoded = true;
 
-                    // Clean up bitmaps
-                    if (originalBitmap != resizedBitmap) {
-                        originalBitmap.recycle();
-                    }
-                    if (resizedBitmap != circularBitmap) {
-                        resizedBitmap.recycle();
-                    }
+            // Resize the image first
+            Bitmap resizedBitmap = resizeImage(originalBitmap, 512, 512);
+
+            // Apply circular crop
+            Bitmap circularBitmap = getCircularBitmap(resizedBitmap);
+
+            // Save the circular image
+            imageResult.savedImagePath = saveCircularImageToInternalStorage(profileDir, user, circularBitmap);
+
+            if (imageResult.savedImagePath != null) {
+                imageResult.bitmap = circularBitmap;
 
+                // Update in database
+                imageResult.rowsUpdated = databaseHelper.updateUserProfile(user.getId(),
+                        user.getName(), user.getEmail(), imageResult.savedImagePath);
+            }
+
+            // Clean up bitmaps
+            if (originalBitmap != resizedBitmap) {
+                originalBitmap.recycle();
+            }
+            if (resizedBitmap != circularBitmap) {
+                resizedBitmap.recycle();
+            }
+            return imageResult;
+        }, imageResult -> {
+            if (!imageResult.decoded) {
+                Toast.makeText(getContext(), "Error loading selected image", Toast.LENGTH_SHORT).show();
+            } else if (imageResult.savedImagePath == null) {
+                Toast.makeText(getContext(), "Error saving profile picture", Toast.LENGTH_SHORT).show();
+            } else {
+                // Update profile image view
+                profileImageView.setImageBitmap(imageResult.bitmap);
+
+                if (imageResult.rowsUpdated > 0) {
+                    // Update current user object
+                    user.setProfileImagePath(imageResult.savedImagePath);
+                    Toast.makeText(getContext(), "Profile picture updated! 📸✨", Toast.LENGTH_SHORT).show();
+                    android.util.Log.d("ProfileFragment", "Profile image updated in database: " + imageResult.savedImagePath);
                 } else {
-                    Toast.makeText(getContext(), "Error loading selected image", Toast.LENGTH_SHORT).show();
+                    Toast.makeText(getContext(), "Error updating profile picture in database", Toast.LENGTH_SHORT).show();
                 }
             }
-
-        } catch (Exception e) {
+        }, e -> {
             Toast.makeText(getContext(), "Error updating profile picture: " + e.getMessage(), Toast.LENGTH_LONG).show();
             e.printStackTrace();
-        }
+        });
+    }
+
+    // Result of the background profile-image pipeline
+    private static class ProfileImageResult {
+        boolean decoded = false;
+        String savedImagePath;
+        Bitmap bitmap;
+        int rowsUpdated = 0;
     }
 
     private Bitmap getCircularBitmap(Bitmap bitmap) {
@@ -308,10 +361,9 @@ public class ProfileFragment extends Fragment {
         return circularBitmap;
     }
 
-    private String saveCircularImageToInternalStorage(Bitmap circularBitmap) {
+    private String saveCircularImageToInternalStorage(File profileDir, User currentUser, Bitmap circularBitmap) {
         try {
             // Create profile images directory
-            File profileDir = new File(getContext().getFilesDir(), "profile_images");
             if (!profileDir.exists()) {
                 profileDir.mkdirs();
             }
@@ -437,40 +489,183 @@ public class ProfileFragment extends Fragment {
                 return;
             }
 
-            // Check if email is taken by another user
-            if (!newEmail.equals(currentUser.getEmail()) && databaseHelper.isEmailExists(newEmail)) {
-                Toast.makeText(getContext(), "Email already exists. Please use a different email.", Toast.LENGTH_LONG).show();
+            if (!newPassword.isEmpty() && newPassword.length() < 6) {
+                Toast.makeText(getContext(), "Password must be at least 6 characters", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            // Update user information in database
-            int result = databaseHelper.updateUserProfile(currentUser.getId(), newName, newEmail, currentUser.getProfileImagePath());
+            User user = currentUser;
+            DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+            // Profile and password changes commit together
+            repository.execute(getViewLifecycleOwner(), () -> databaseHelper.runInTransaction(() -> {
+                // Check if email is taken by another user
+                if (!newEmail.equals(user.getEmail()) && databaseHelper.isEmailExists(newEmail)) {
+                    return null;
+                }
+
+                // Update user information in database
+                int result = databaseHelper.updateUserProfile(user.getId(), newName, newEmail, user.getProfileImagePath());
 
-            if (!newPassword.isEmpty()) {
-                if (newPassword.length() < 6) {
-                    Toast.makeText(getContext(), "Password must be at least 6 characters", Toast.LENGTH_SHORT).show();
-                    return;
+                if (!newPassword.isEmpty()) {
+                    int passwordResult = databaseHelper.updateUserPassword(user.getId(), newPassword);
+                    android.util.Log.d("ProfileFragment", "Password update result: " + passwordResult);
                 }
-                int passwordResult = databaseHelper.updateUserPassword(currentUser.getId(), newPassword);
-                android.util.Log.d("ProfileFragment", "Password update result: " + passwordResult);
-            }
+                return result;
+            }), result -> {
+                if (result == null) {
+                    Toast.makeText(getContext(), "Email already exists. Please use a different email.", Toast.LENGTH_LONG).show();
+                } else if (result > 0) {
+                    // Update current user object
+                    user.setName(newName);
+                    user.setEmail(newEmail);
+
+                    Toast.makeText(getContext(), "Information updated successfully! ✅", Toast.LENGTH_SHORT).show();
+                    loadUserData(); // Refresh displayed data
+
+                    android.util.Log.d("ProfileFragment", "User information updated: " + user.toString());
+                } else {
+                    Toast.makeText(getContext(), "Error updating information", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
 
-            if (result > 0) {
-                // Update current user object
-                currentUser.setName(newName);
-                currentUser.setEmail(newEmail);
+        builder.setNegativeButton("Cancel", null);
+        builder.show();
+    }
 
-                Toast.makeText(getContext(), "Information updated successfully! ✅", Toast.LENGTH_SHORT).show();
-                loadUserData(); // Refresh displayed data
+    // ===== BACKUP & RESTORE =====
 
-                android.util.Log.d("ProfileFragment", "User information updated: " + currentUser.toString());
+    private void setupBackupLaunchers() {
+        backupExportLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == getActivity().RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        exportBackup(result.getData().getData(), pendingIncrementalBackup);
+                    }
+                }
+        );
+
+        backupRestoreLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == getActivity().RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        restoreBackup(result.getData().getData());
+                    }
+                }
+        );
+    }
+
+    private void showBackupDialog() {
+        if (currentUser == null) {
+            Toast.makeText(getContext(), "User session expired. Please sign in again.", Toast.LENGTH_SHORT).show();
+            redirectToSignIn();
+            return;
+        }
+
+        String[] options = {"Back up everything", "Back up changes since last backup", "Restore from a backup"};
+        new AlertDialog.Builder(getContext())
+                .setTitle("Backup & Restore")
+                .setItems(options, (dialog, which) -> {
+                    if (which == 2) {
+                        showRestoreConfirmationDialog();
+                    } else {
+                        openBackupExportPicker(which == 1);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void openBackupExportPicker(boolean incremental) {
+        pendingIncrementalBackup = incremental;
+
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.setType("application/zip");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.putExtra(Intent.EXTRA_TITLE, "stepnote-" + (incremental ? "changes-" : "backup-")
+                + EpochDate.formatDate(EpochDate.nowMillis()) + ".zip");
+
+        try {
+            backupExportLauncher.launch(intent);
+        } catch (Exception e) {
+            Toast.makeText(getContext(), "No file manager found", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void showRestoreConfirmationDialog() {
+        new AlertDialog.Builder(getContext())
+                .setTitle("Restore Backup")
+                .setMessage("Restoring a full backup replaces your flashcards, audio notes and step history.\n\n"
+                        + "To restore a series of backups, pick the full backup first, then each later one in order.")
+                .setIcon(R.drawable.ic_warning)
+                .setPositiveButton("Choose File", (dialog, which) -> {
+                    Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                    intent.setType("*/*");
+                    intent.addCategory(Intent.CATEGORY_OPENABLE);
+                    try {
+                        backupRestoreLauncher.launch(intent);
+                    } catch (Exception e) {
+                        Toast.makeText(getContext(), "No file manager found", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void exportBackup(Uri uri, boolean incremental) {
+        if (currentUser == null) {
+            return;
+        }
+
+        int userId = currentUser.getId();
+        DataBackup backup = createDataBackup();
+        android.content.ContentResolver contentResolver = requireContext().getContentResolver();
+        Toast.makeText(getContext(), "Backing up...", Toast.LENGTH_SHORT).show();
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            OutputStream outputStream = contentResolver.openOutputStream(uri);
+            if (outputStream == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            return backup.exportBackup(userId, outputStream, incremental, true);
+        }, manifest -> {
+            if (manifest.isIncremental()) {
+                Toast.makeText(getContext(), "Changes since " + EpochDate.formatDate(manifest.since) + " backed up ✅", Toast.LENGTH_SHORT).show();
             } else {
-                Toast.makeText(getContext(), "Error updating information", Toast.LENGTH_SHORT).show();
+                Toast.makeText(getContext(), "Backup saved ✅", Toast.LENGTH_SHORT).show();
             }
-        });
+        }, e -> Toast.makeText(getContext(), "Error creating backup: " + e.getMessage(), Toast.LENGTH_LONG).show());
+    }
 
-        builder.setNegativeButton("Cancel", null);
-        builder.show();
+    private void restoreBackup(Uri uri) {
+        if (currentUser == null) {
+            return;
+        }
+
+        int userId = currentUser.getId();
+        DataBackup backup = createDataBackup();
+        android.content.ContentResolver contentResolver = requireContext().getContentResolver();
+        Toast.makeText(getContext(), "Restoring...", Toast.LENGTH_SHORT).show();
+
+        repository.execute(getViewLifecycleOwner(), () -> {
+            InputStream inputStream = contentResolver.openInputStream(uri);
+            if (inputStream == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            int restored = backup.restoreBackup(userId, inputStream);
+            // Restored notes have no stored metadata until their files are read again
+            repository.backfillAudioMetadata();
+            return restored;
+        }, restored -> Toast.makeText(getContext(), "Restored " + restored + " items ✅", Toast.LENGTH_SHORT).show(),
+                e -> Toast.makeText(getContext(), "Error restoring backup: " + e.getMessage(), Toast.LENGTH_LONG).show());
+    }
+
+    // Restored recordings go where AudioNotesFragment saves new ones
+    private DataBackup createDataBackup() {
+        File audioDir = new File(requireContext().getExternalFilesDir(null), "audio_notes");
+        return new DataBackup(repository.getDatabaseHelper(), audioDir);
     }
 
     private void showSignOutConfirmationDialog() {
@@ -487,8 +682,8 @@ public class ProfileFragment extends Fragment {
 
     private void signOutUser() {
         if (currentUser != null) {
-            // Update user login status in database
-            databaseHelper.updateUserLoginStatus(currentUser.getId(), false);
+            // Update user login status in database; not tied to this screen, which is closing
+            repository.updateUserLoginStatus(null, currentUser.getId(), false);
             android.util.Log.d("ProfileFragment", "User signed out: " + currentUser.getEmail());
         }
 
@@ -509,25 +704,7 @@ public class ProfileFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Refresh data when returning to this fragment
-        if (currentUser != null) {
-            loadUserData();
-        } else {
-            // Check if user is still logged in
-            currentUser = databaseHelper.getCurrentLoggedInUser();
-            if (currentUser == null) {
-                redirectToSignIn();
-            } else {
-                loadUserData();
-            }
-        }
-    }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (databaseHelper != null) {
-            databaseHelper.close();
-        }
+        // Refresh data when returning to this fragment; redirects if no one is signed in
+        loadUserData();
     }
 }
\ No newline at end of file
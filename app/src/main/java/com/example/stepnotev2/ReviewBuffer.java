@@ -0,0 +1,121 @@
+package com.example.stepnotev2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind batch of flashcard answers.
+ *
+ * Answering a card updates its scheduling state in memory straight away and queues the
+ * result, with how long the answer took and how often the card was flipped. Queued
+ * answers are written through the {@link Sink} together, in one transaction, when
+ * {@link #flush()} is called: the study screen does so once {@link #DEFAULT_FLUSH_SIZE}
+ * answers have built up, when it pauses, and before it re-reads the due queue. Answers
+ * are written in the order they were given, and a flush returns only once every answer
+ * queued before it is stored, even one taken by a flush still running on another thread.
+ */
+public class ReviewBuffer {
+
+    public interface Sink {
+        void writeReviews(List<Review> reviews);
+    }
+
+    public static final int DEFAULT_FLUSH_SIZE = 20;
+    // A card left open while the user was away would skew the average answer time
+    public static final long MAX_ANSWER_MILLIS = 60_000L;
+
+    // One answer and the scheduling state it left the card in
+    public static final class Review {
+        public final int userId;
+        public final int flashcardId;
+        public final SpacedRepetition.Grade grade;
+        public final long reviewedAt; // Epoch millis
+        public final long answerMillis; // From showing the card to grading it, capped
+        public final int flips;
+        public final int previousIntervalDays; // 0 while the card was still being learned
+        public final long dueAt;
+        public final int intervalDays;
+        public final int ease;
+        public final int repetitions;
+        public final int lapses;
+
+        Review(Flashcard card, SpacedRepetition.Grade grade, long reviewedAt, long answerMillis, int flips,
+               int previousIntervalDays) {
+            this.userId = card.getUserId();
+            this.flashcardId = card.getId();
+            this.grade = grade;
+            this.reviewedAt = reviewedAt;
+            this.answerMillis = Math.max(0, Math.min(answerMillis, MAX_ANSWER_MILLIS));
+            this.flips = flips;
+            this.previousIntervalDays = previousIntervalDays;
+            this.dueAt = card.getDueAt();
+            this.intervalDays = card.getIntervalDays();
+            this.ease = card.getEase();
+            this.repetitions = card.getRepetitions();
+            this.lapses = card.getLapses();
+        }
+    }
+
+    private final Sink sink;
+    private final int flushSize;
+
+    // Guarded by this
+    private final List<Review> pending = new ArrayList<>();
+    // Held for the whole of a flush, so a second one waits for a batch still being written
+    private final Object writeLock = new Object();
+
+    public ReviewBuffer(Sink sink) {
+        this(sink, DEFAULT_FLUSH_SIZE);
+    }
+
+    public ReviewBuffer(Sink sink, int flushSize) {
+        this.sink = sink;
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * Schedules {@code card} for an answer given at {@code nowMs}, after
+     * {@code answerMillis} on screen and {@code flips} flips, and queues the result.
+     * Returns true once a batch is ready to flush. Writes nothing itself.
+     */
+    public synchronized boolean record(Flashcard card, SpacedRepetition.Grade grade, long nowMs,
+                                       long answerMillis, int flips) {
+        int previousIntervalDays = card.getIntervalDays();
+        SpacedRepetition.review(card, grade, nowMs);
+        pending.add(new Review(card, grade, nowMs, answerMillis, flips, previousIntervalDays));
+        return pending.size() >= flushSize;
+    }
+
+    /**
+     * Writes every queued answer, first waiting for any flush already writing. Answers given
+     * while the write runs wait for the next flush; if the write fails the batch is queued
+     * again. Returns the number written by this call.
+     */
+    public int flush() {
+        synchronized (writeLock) {
+            List<Review> batch;
+            // Not held while writing, so answering never waits on the database
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            try {
+                sink.writeReviews(batch);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending.addAll(0, batch);
+                }
+                throw e;
+            }
+            return batch.size();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.stepnotev2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory cache of the logged-in user.
+ *
+ * The users table is queried once and the result is kept until DatabaseHelper
+ * invalidates it on login, logout or a profile change. Owned by the shared
+ * DatabaseHelper, so every screen and the step service see the same session.
+ */
+public class SessionManager {
+
+    public static final int NO_USER = -1;
+
+    private final DatabaseHelper databaseHelper;
+
+    private User cachedUser;
+    private boolean resolved = false;
+    // Bumped on every invalidation so a query that raced with a write is not cached
+    private int generation = 0;
+
+    // Counters for verifying how often the users table is actually hit
+    private final AtomicInteger userQueryCount = new AtomicInteger();
+    private final AtomicInteger cacheHitCount = new AtomicInteger();
+
+    SessionManager(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    public User getCurrentUser() {
+        int queryGeneration;
+        synchronized (this) {
+            if (resolved) {
+                cacheHitCount.incrementAndGet();
+                return cachedUser;
+            }
+            queryGeneration = generation;
+        }
+
+        userQueryCount.incrementAndGet();
+        User user = databaseHelper.queryLoggedInUser();
+
+        synchronized (this) {
+            if (queryGeneration == generation) {
+                cachedUser = user;
+                resolved = true;
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Returns the logged-in user's id, or {@link #NO_USER}. No I/O once the session is resolved.
+     */
+    public int getCurrentUserId() {
+        User user = getCurrentUser();
+        return user != null ? user.getId() : NO_USER;
+    }
+
+    // Called by DatabaseHelper after a successful login
+    synchronized void setCurrentUser(User user) {
+        generation++;
+        cachedUser = user;
+        resolved = true;
+    }
+
+    // Called by DatabaseHelper whenever the users table changes
+    public synchronized void invalidate() {
+        generation++;
+        cachedUser = null;
+        resolved = false;
+    }
+
+    public int getUserQueryCount() {
+        return userQueryCount.get();
+    }
+
+    public int getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    public void resetCounters() {
+        userQueryCount.set(0);
+        cacheHitCount.set(0);
+    }
+}
@@ -15,24 +15,24 @@ public class SignInActivity extends AppCompatActivity {
     private EditText etEmail, etPassword;
     private LinearLayout btnSignIn;
     private TextView tvSignUp;
-    private DatabaseHelper databaseHelper;
+    private StepNoteRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sign_in);
 
-        databaseHelper = new DatabaseHelper(this);
-
-        // Check if user is already logged in
-        User currentUser = databaseHelper.getCurrentLoggedInUser();
-        if (currentUser != null) {
-            navigateToMain();
-            return;
-        }
+        repository = StepNoteRepository.getInstance(this);
 
         initViews();
         setupClickListeners();
+
+        // Check if user is already logged in
+        repository.getCurrentUser(this, currentUser -> {
+            if (currentUser != null) {
+                navigateToMain();
+            }
+        });
     }
 
     private void initViews() {
@@ -81,14 +81,16 @@ public class SignInActivity extends AppCompatActivity {
         }
 
         // Authenticate user using the correct method name
-        User user = databaseHelper.loginUser(email, password);
-
-        if (user != null) {
-            Toast.makeText(this, "Welcome back, " + user.getName() + "! 👋", Toast.LENGTH_SHORT).show();
-            navigateToMain();
-        } else {
-            Toast.makeText(this, "Invalid email or password. Please try again.", Toast.LENGTH_LONG).show();
-        }
+        btnSignIn.setEnabled(false);
+        repository.loginUser(this, email, password, user -> {
+            btnSignIn.setEnabled(true);
+            if (user != null) {
+                Toast.makeText(this, "Welcome back, " + user.getName() + "! 👋", Toast.LENGTH_SHORT).show();
+                navigateToMain();
+            } else {
+                Toast.makeText(this, "Invalid email or password. Please try again.", Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void navigateToMain() {
@@ -97,12 +99,4 @@ public class SignInActivity extends AppCompatActivity {
         startActivity(intent);
         finish();
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (databaseHelper != null) {
-            databaseHelper.close();
-        }
-    }
 }
\ No newline at end of file
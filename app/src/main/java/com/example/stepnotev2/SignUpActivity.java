@@ -15,14 +15,14 @@ public class SignUpActivity extends AppCompatActivity {
     private EditText etName, etEmail, etPassword;
     private LinearLayout btnSignUp;
     private ImageView btnBack;
-    private DatabaseHelper databaseHelper;
+    private StepNoteRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sign_up);
 
-        databaseHelper = new DatabaseHelper(this);
+        repository = StepNoteRepository.getInstance(this);
 
         initViews();
         setupClickListeners();
@@ -86,31 +86,49 @@ public class SignUpActivity extends AppCompatActivity {
             return;
         }
 
-        // Check if email already exists
-        if (databaseHelper.isEmailExists(email)) {
-            etEmail.setError("Email already exists. Please use a different email.");
-            etEmail.requestFocus();
-            return;
-        }
+        btnSignUp.setEnabled(false);
+        DatabaseHelper databaseHelper = repository.getDatabaseHelper();
+        // Check, register and log in as one commit
+        repository.execute(this, () -> databaseHelper.runInTransaction(() -> {
+            // Check if email already exists
+            if (databaseHelper.isEmailExists(email)) {
+                return SignUpResult.EMAIL_EXISTS;
+            }
 
-        // Register user using the correct method name
-        long userId = databaseHelper.addUser(name, email, password);
+            // Register user using the correct method name
+            long userId = databaseHelper.addUser(name, email, password);
+            if (userId == -1) {
+                return SignUpResult.FAILED;
+            }
 
-        if (userId != -1) {
             // After successful registration, automatically log the user in
             User newUser = databaseHelper.loginUser(email, password);
-
-            if (newUser != null) {
-                Toast.makeText(this, "Account created successfully! Welcome, " + name + "! 🎉", Toast.LENGTH_LONG).show();
-                navigateToMain();
-            } else {
-                // Fallback: Registration succeeded but login failed
-                Toast.makeText(this, "Account created! Please sign in to continue.", Toast.LENGTH_LONG).show();
-                navigateToSignIn();
+            return newUser != null ? SignUpResult.LOGGED_IN : SignUpResult.REGISTERED;
+        }), result -> {
+            btnSignUp.setEnabled(true);
+            switch (result) {
+                case EMAIL_EXISTS:
+                    etEmail.setError("Email already exists. Please use a different email.");
+                    etEmail.requestFocus();
+                    break;
+                case LOGGED_IN:
+                    Toast.makeText(this, "Account created successfully! Welcome, " + name + "! 🎉", Toast.LENGTH_LONG).show();
+                    navigateToMain();
+                    break;
+                case REGISTERED:
+                    // Fallback: Registration succeeded but login failed
+                    Toast.makeText(this, "Account created! Please sign in to continue.", Toast.LENGTH_LONG).show();
+                    navigateToSignIn();
+                    break;
+                default:
+                    Toast.makeText(this, "Failed to create account. Please try again.", Toast.LENGTH_LONG).show();
+                    break;
             }
-        } else {
-            Toast.makeText(this, "Failed to create account. Please try again.", Toast.LENGTH_LONG).show();
-        }
+        });
+    }
+
+    private enum SignUpResult {
+        EMAIL_EXISTS, FAILED, REGISTERED, LOGGED_IN
     }
 
     private void navigateToMain() {
@@ -126,12 +144,4 @@ public class SignUpActivity extends AppCompatActivity {
         startActivity(intent);
         finish();
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (databaseHelper != null) {
-            databaseHelper.close();
-        }
-    }
 }
\ No newline at end of file
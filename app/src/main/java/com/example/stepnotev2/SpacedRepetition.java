@@ -0,0 +1,74 @@
+package com.example.stepnotev2;
+
+/**
+ * SM-2 style scheduler for flashcard reviews, with the four answer buttons Anki uses.
+ *
+ * A card's state is its due time, current interval in days, ease factor (permille) and
+ * counts of successful repetitions and lapses. Forgetting a card resets it to a short
+ * relearning step and lowers its ease; remembering it multiplies the interval by the
+ * ease, so well-known cards come back less and less often.
+ */
+public final class SpacedRepetition {
+
+    public enum Grade {
+        AGAIN, HARD, GOOD, EASY
+    }
+
+    public static final int INITIAL_EASE = 2500;
+    public static final int MIN_EASE = 1300;
+    public static final int MAX_INTERVAL_DAYS = 36_500;
+    // A forgotten card comes back in the same session
+    public static final long RELEARN_DELAY_MILLIS = 10 * 60_000L;
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private SpacedRepetition() {}
+
+    /**
+     * Applies an answer given at {@code nowMillis} to {@code card}'s scheduling state.
+     */
+    public static void review(Flashcard card, Grade grade, long nowMillis) {
+        int interval = card.getIntervalDays();
+        int ease = card.getEase();
+        int repetitions = card.getRepetitions();
+
+        if (grade == Grade.AGAIN) {
+            if (repetitions > 0) {
+                card.setLapses(card.getLapses() + 1);
+            }
+            card.setRepetitions(0);
+            card.setIntervalDays(0);
+            card.setEase(Math.max(MIN_EASE, ease - 200));
+            card.setDueAt(nowMillis + RELEARN_DELAY_MILLIS);
+            return;
+        }
+
+        int next;
+        switch (grade) {
+            case HARD:
+                ease = Math.max(MIN_EASE, ease - 150);
+                next = repetitions == 0 ? 1 : Math.round(interval * 1.2f);
+                break;
+            case EASY:
+                ease += 150;
+                next = repetitions == 0 ? 4 : Math.round(interval * ease / 1000f * 1.3f);
+                break;
+            default:
+                if (repetitions == 0) {
+                    next = 1;
+                } else if (repetitions == 1) {
+                    next = 6;
+                } else {
+                    next = Math.round(interval * ease / 1000f);
+                }
+                break;
+        }
+        // Each success pushes the card at least a day further out
+        next = Math.min(MAX_INTERVAL_DAYS, Math.max(next, interval + 1));
+
+        card.setRepetitions(repetitions + 1);
+        card.setIntervalDays(next);
+        card.setEase(ease);
+        card.setDueAt(nowMillis + next * DAY_MILLIS);
+    }
+}
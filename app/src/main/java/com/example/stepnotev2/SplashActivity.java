@@ -1,8 +1,10 @@
 package com.example.stepnotev2;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.StrictMode;
 import androidx.appcompat.app.AppCompatActivity;
 
 public class SplashActivity extends AppCompatActivity {
@@ -12,6 +14,7 @@ public class SplashActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        enableStrictModeForDebugBuilds();
         setContentView(R.layout.activity_splash);
 
         // Hide action bar for full screen
@@ -29,4 +32,15 @@ public class SplashActivity extends AppCompatActivity {
             }
         }, SPLASH_DURATION);
     }
+
+    // Flags any disk access left on the main thread; database work goes through StepNoteRepository
+    private void enableStrictModeForDebugBuilds() {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+    }
 }
\ No newline at end of file
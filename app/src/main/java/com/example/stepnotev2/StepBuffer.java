@@ -0,0 +1,138 @@
+package com.example.stepnotev2;
+
+import java.util.Arrays;
+
+/**
+ * Write-behind accumulator for step counts.
+ *
+ * Sensor events only update the in-memory count; the count is written through the
+ * {@link Sink} once enough steps or time have passed, when the day or user changes,
+ * and when {@link #flush()} is called. Every write carries the absolute count for the
+ * day, so a crash between flushes loses at most one threshold of steps and a repeated
+ * write is harmless.
+ *
+ * Step increments are also added to an in-memory {@link StepHistogram} bucket array for
+ * the pending day, and each write carries that day's encoded histogram.
+ */
+public class StepBuffer {
+
+    public interface Sink {
+        void writeSteps(int userId, long epochDay, int steps, byte[] histogram);
+    }
+
+    public static final int DEFAULT_FLUSH_STEPS = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 60_000L;
+
+    private final Sink sink;
+    private final int flushSteps;
+    private final long flushIntervalMs;
+
+    // Pending (not yet written) state
+    private int pendingUserId = -1;
+    private long pendingDay;
+    private int pendingSteps;
+    private boolean dirty = false;
+    private long pendingDayStartMs;
+    private final int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+
+    // Last written state
+    private int flushedSteps;
+    private long lastFlushTime;
+
+    public StepBuffer(Sink sink) {
+        this(sink, DEFAULT_FLUSH_STEPS, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public StepBuffer(Sink sink, int flushSteps, long flushIntervalMs) {
+        this.sink = sink;
+        this.flushSteps = flushSteps;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Records today's running step count, writing it out once enough has changed.
+     */
+    public synchronized void record(int userId, long epochDay, int steps, long nowMs) {
+        // Day rollover or user switch - persist the previous day's final count first
+        if (dirty && (userId != pendingUserId || epochDay != pendingDay)) {
+            flush(nowMs);
+        }
+
+        if (userId != pendingUserId || epochDay != pendingDay) {
+            startDay(userId, epochDay);
+            // Steps already counted when the day starts are attributed to now
+            addToBucket(steps, nowMs);
+            flushedSteps = steps;
+            lastFlushTime = nowMs;
+            // Always write the first count of a new day so the row exists
+            dirty = true;
+            pendingSteps = steps;
+            flush(nowMs);
+            return;
+        }
+
+        if (steps == pendingSteps) {
+            return;
+        }
+
+        addToBucket(steps - pendingSteps, nowMs);
+        pendingSteps = steps;
+        dirty = true;
+
+        if (Math.abs(pendingSteps - flushedSteps) >= flushSteps
+                || nowMs - lastFlushTime >= flushIntervalMs) {
+            flush(nowMs);
+        }
+    }
+
+    /**
+     * Continues a day that already has a stored count and histogram, e.g. after the service
+     * restarts, so new steps are added to it instead of replacing it. Nothing is written.
+     */
+    public synchronized void resume(int userId, long epochDay, int steps, byte[] histogram, long nowMs) {
+        if (dirty) {
+            flush(nowMs);
+        }
+        startDay(userId, epochDay);
+        StepHistogram.decode(histogram, buckets);
+        pendingSteps = steps;
+        flushedSteps = steps;
+        lastFlushTime = nowMs;
+    }
+
+    private void startDay(int userId, long epochDay) {
+        pendingUserId = userId;
+        pendingDay = epochDay;
+        pendingDayStartMs = EpochDate.startOfDayMillis(epochDay);
+        Arrays.fill(buckets, 0);
+    }
+
+    private void addToBucket(int stepsDelta, long nowMs) {
+        // Counts only go down on a sensor reset; the histogram keeps the steps already seen
+        if (stepsDelta > 0) {
+            buckets[StepHistogram.bucketIndex(pendingDayStartMs, nowMs)] += stepsDelta;
+        }
+    }
+
+    /**
+     * Writes any pending count immediately. Returns true if something was written.
+     */
+    public synchronized boolean flush() {
+        return flush(System.currentTimeMillis());
+    }
+
+    private boolean flush(long nowMs) {
+        if (!dirty || pendingUserId == -1) {
+            return false;
+        }
+        sink.writeSteps(pendingUserId, pendingDay, pendingSteps, StepHistogram.encode(buckets));
+        flushedSteps = pendingSteps;
+        lastFlushTime = nowMs;
+        dirty = false;
+        return true;
+    }
+
+    public synchronized int getPendingSteps() {
+        return pendingSteps;
+    }
+}
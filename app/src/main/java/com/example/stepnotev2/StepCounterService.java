@@ -6,6 +6,8 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.util.Log;
 
@@ -18,17 +20,27 @@ public class StepCounterService extends Service implements SensorEventListener {
     private DatabaseHelper databaseHelper;
     private int initialStepCount = -1;
     private int todayStepsOffset = 0;
+    private long currentDate = -1;
+    private StepBuffer stepBuffer;
+    // Sensor events and buffer flushes are handled here, off the main thread
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
 
     @Override
     public void onCreate() {
         super.onCreate();
-        databaseHelper = new DatabaseHelper(this);
+        databaseHelper = DatabaseHelper.getInstance(this);
+        stepBuffer = new StepBuffer(databaseHelper::updateStepsForDate);
 
         sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
         stepCounterSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
 
+        sensorThread = new HandlerThread("StepCounterSensor");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+
         if (stepCounterSensor != null) {
-            sensorManager.registerListener(this, stepCounterSensor, SensorManager.SENSOR_DELAY_FASTEST);
+            sensorManager.registerListener(this, stepCounterSensor, SensorManager.SENSOR_DELAY_FASTEST, sensorHandler);
             Log.d(TAG, "Step counter sensor registered");
         } else {
             Log.w(TAG, "Step counter sensor not available");
@@ -44,24 +56,38 @@ public class StepCounterService extends Service implements SensorEventListener {
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER) {
             int totalSteps = (int) event.values[0];
+            long today = EpochDate.today();
 
             if (initialStepCount == -1) {
                 // First reading - set as baseline
                 initialStepCount = totalSteps;
-                User currentUser = databaseHelper.getCurrentLoggedInUser();
-                if (currentUser != null) {
-                    todayStepsOffset = databaseHelper.getTodaySteps(currentUser.getId());
+                currentDate = today;
+                int userId = databaseHelper.getSessionManager().getCurrentUserId();
+                if (userId != SessionManager.NO_USER) {
+                    todayStepsOffset = databaseHelper.getTodaySteps(userId);
+                    // Keep adding to today's stored histogram rather than starting a new one
+                    stepBuffer.resume(userId, today, todayStepsOffset,
+                            databaseHelper.getStepHistogramBlob(userId, today), System.currentTimeMillis());
                 }
                 Log.d(TAG, "Initial step count set: " + initialStepCount);
             } else {
+                if (today != currentDate) {
+                    // Day rollover - new day starts counting from this reading
+                    initialStepCount = totalSteps;
+                    todayStepsOffset = 0;
+                    currentDate = today;
+                }
+
                 // Calculate steps since app started
                 int stepsSinceStart = totalSteps - initialStepCount;
                 int todaySteps = todayStepsOffset + stepsSinceStart;
 
-                // Update database
-                User currentUser = databaseHelper.getCurrentLoggedInUser();
-                if (currentUser != null) {
-                    databaseHelper.updateTodaySteps(currentUser.getId(), todaySteps);
+                // Buffer the count; the database is only written on flush
+                // Cached session lookup - no users-table query per sensor event
+                int userId = databaseHelper.getSessionManager().getCurrentUserId();
+                if (userId != SessionManager.NO_USER) {
+                    stepBuffer.record(userId, today, todaySteps,
+                            System.currentTimeMillis());
 
                     // Broadcast update to UI
                     Intent broadcastIntent = new Intent("STEP_COUNT_UPDATED");
@@ -85,8 +111,10 @@ public class StepCounterService extends Service implements SensorEventListener {
         if (sensorManager != null) {
             sensorManager.unregisterListener(this);
         }
-        if (databaseHelper != null) {
-            databaseHelper.close();
+        if (sensorHandler != null) {
+            // Persist whatever is still buffered, after any event already queued
+            sensorHandler.post(stepBuffer::flush);
+            sensorThread.quitSafely();
         }
     }
 
@@ -0,0 +1,88 @@
+package com.example.stepnotev2;
+
+import java.util.Arrays;
+
+/**
+ * Packed per-day step histogram, stored as a BLOB on the daily_steps row.
+ *
+ * A day is split into 5-minute buckets of local time. The blob is one header byte (the
+ * bucket width in minutes) followed by each bucket's difference from the previous
+ * bucket, zigzag-encoded as a varint, up to the last non-empty bucket. Idle stretches
+ * and steady walking both encode as one byte per bucket, so a full day is a few
+ * hundred bytes at most instead of 288 rows.
+ */
+public final class StepHistogram {
+
+    public static final int BUCKET_MINUTES = 5;
+    public static final int BUCKETS_PER_DAY = 24 * 60 / BUCKET_MINUTES;
+    private static final long BUCKET_MILLIS = BUCKET_MINUTES * 60_000L;
+
+    private StepHistogram() {}
+
+    /**
+     * Bucket for an instant, given the start of its local day. DST days are 23 or 25 hours
+     * long; anything past the last bucket is folded into it.
+     */
+    public static int bucketIndex(long dayStartMillis, long epochMillis) {
+        long index = (epochMillis - dayStartMillis) / BUCKET_MILLIS;
+        return (int) Math.max(0, Math.min(BUCKETS_PER_DAY - 1, index));
+    }
+
+    public static byte[] encode(int[] buckets) {
+        int length = Math.min(buckets.length, BUCKETS_PER_DAY);
+        while (length > 0 && buckets[length - 1] == 0) {
+            length--;
+        }
+
+        // Worst case is 5 bytes per bucket
+        byte[] out = new byte[1 + length * 5];
+        out[0] = BUCKET_MINUTES;
+        int position = 1;
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            int delta = buckets[i] - previous;
+            previous = buckets[i];
+
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                out[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            out[position++] = (byte) zigzag;
+        }
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Decodes {@code blob} into {@code buckets}, zeroing buckets it does not cover, and
+     * returns the number of buckets read. A null, empty or foreign-format blob reads as
+     * an empty day. Allocates nothing, so a caller can reuse one array for many days.
+     */
+    public static int decode(byte[] blob, int[] buckets) {
+        Arrays.fill(buckets, 0);
+        if (blob == null || blob.length == 0 || blob[0] != BUCKET_MINUTES) {
+            return 0;
+        }
+
+        int count = 0;
+        int previous = 0;
+        int position = 1;
+        while (position < blob.length && count < buckets.length) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == blob.length) {
+                    return count; // Truncated varint
+                }
+                b = blob[position++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 35);
+
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            buckets[count++] = previous;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.stepnotev2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous front for DatabaseHelper.
+ *
+ * Work runs on a small background pool and results are posted back to the main thread.
+ * Passing a LifecycleOwner (a fragment's view lifecycle or an activity) cancels the task
+ * when that owner is destroyed, so callbacks never touch a dead view.
+ */
+public class StepNoteRepository {
+
+    private static final String TAG = "StepNoteRepository";
+
+    // SQLite allows one writer at a time; two threads let a read overlap a write under WAL
+    private static final int THREAD_COUNT = 2;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface ErrorCallback {
+        void onError(Exception e);
+    }
+
+    /**
+     * Handle for a submitted task. Cancelling drops the result; a query already running
+     * on the database is allowed to finish.
+     */
+    public static final class Task {
+        private volatile boolean cancelled = false;
+        private Future<?> future;
+        private Runnable onCancel;
+
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (onCancel != null) {
+                onCancel.run();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static StepNoteRepository instance;
+
+    public static synchronized StepNoteRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new StepNoteRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean audioBackfillRunning = new AtomicBoolean();
+    private final AtomicBoolean audioBackfillRequested = new AtomicBoolean();
+
+    private StepNoteRepository(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "stepnote-db-" + threadNumber.getAndIncrement());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public DatabaseHelper getDatabaseHelper() {
+        return databaseHelper;
+    }
+
+    // ===== GENERIC EXECUTION =====
+
+    public <T> Task execute(LifecycleOwner owner, Callable<T> work, Callback<T> callback) {
+        return execute(owner, work, callback, null);
+    }
+
+    /**
+     * Runs {@code work} in the background and delivers its result on the main thread,
+     * unless the task was cancelled or {@code owner} was destroyed first.
+     */
+    public <T> Task execute(LifecycleOwner owner, Callable<T> work, Callback<T> callback,
+                            ErrorCallback errorCallback) {
+        Task task = new Task();
+
+        if (owner != null) {
+            Lifecycle lifecycle = owner.getLifecycle();
+            if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                task.cancelled = true;
+                return task;
+            }
+            LifecycleEventObserver observer = new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_DESTROY) {
+                        task.cancel();
+                    }
+                }
+            };
+            lifecycle.addObserver(observer);
+            task.onCancel = () -> runOnMain(() -> lifecycle.removeObserver(observer));
+        }
+
+        task.future = executor.submit(() -> {
+            if (task.cancelled) {
+                return;
+            }
+            try {
+                T result = work.call();
+                deliver(task, () -> {
+                    if (callback != null) {
+                        callback.onResult(result);
+                    }
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Background database task failed: " + e.getMessage(), e);
+                deliver(task, () -> {
+                    if (errorCallback != null) {
+                        errorCallback.onError(e);
+                    }
+                });
+            }
+        });
+        return task;
+    }
+
+    public Task execute(LifecycleOwner owner, Runnable work) {
+        return execute(owner, () -> {
+            work.run();
+            return null;
+        }, null, null);
+    }
+
+    private void deliver(Task task, Runnable delivery) {
+        mainHandler.post(() -> {
+            if (task.cancelled) {
+                return;
+            }
+            // Release the lifecycle observer now that the task is done
+            Runnable onCancel = task.onCancel;
+            if (onCancel != null) {
+                onCancel.run();
+            }
+            delivery.run();
+        });
+    }
+
+    private void runOnMain(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
+    // ===== USER METHODS =====
+
+    public Task getCurrentUser(LifecycleOwner owner, Callback<User> callback) {
+        return execute(owner, databaseHelper::getCurrentLoggedInUser, callback);
+    }
+
+    public Task addUser(LifecycleOwner owner, String name, String email, String password, Callback<Long> callback) {
+        return execute(owner, () -> databaseHelper.addUser(name, email, password), callback);
+    }
+
+    public Task loginUser(LifecycleOwner owner, String email, String password, Callback<User> callback) {
+        return execute(owner, () -> databaseHelper.loginUser(email, password), callback);
+    }
+
+    public Task logoutUser(LifecycleOwner owner) {
+        return execute(owner, databaseHelper::logoutUser);
+    }
+
+    public Task isEmailExists(LifecycleOwner owner, String email, Callback<Boolean> callback) {
+        return execute(owner, () -> databaseHelper.isEmailExists(email), callback);
+    }
+
+    public Task updateUserProfile(LifecycleOwner owner, int userId, String name, String email,
+                                  String profileImagePath, Callback<Integer> callback) {
+        return execute(owner, () -> databaseHelper.updateUserProfile(userId, name, email, profileImagePath), callback);
+    }
+
+    public Task updateUserPassword(LifecycleOwner owner, int userId, String newPassword, Callback<Integer> callback) {
+        return execute(owner, () -> databaseHelper.updateUserPassword(userId, newPassword), callback);
+    }
+
+    public Task updateUserLoginStatus(LifecycleOwner owner, int userId, boolean isLoggedIn) {
+        return execute(owner, () -> databaseHelper.updateUserLoginStatus(userId, isLoggedIn));
+    }
+
+    // ===== FLASHCARD METHODS =====
+
+    public Task addFlashcard(LifecycleOwner owner, int userId, String frontText, String backText, Callback<Long> callback) {
+        return execute(owner, () -> databaseHelper.addFlashcard(userId, frontText, backText), callback);
+    }
+
+    public Task getUserFlashcards(LifecycleOwner owner, int userId, Callback<List<Flashcard>> callback) {
+        return execute(owner, () -> databaseHelper.getUserFlashcards(userId), callback);
+    }
+
+    public Task getUserFlashcardsPage(LifecycleOwner owner, int userId, Flashcard after, int limit,
+                                      Callback<List<Flashcard>> callback) {
+        return execute(owner, () -> databaseHelper.getUserFlashcardsPage(userId, after, limit), callback);
+    }
+
+    public Task getUserFlashcardsCount(LifecycleOwner owner, int userId, Callback<Integer> callback) {
+        return execute(owner, () -> databaseHelper.getUserFlashcardsCount(userId), callback);
+    }
+
+    public Task updateFlashcard(LifecycleOwner owner, int flashcardId, String frontText, String backText,
+                                Callback<Boolean> callback) {
+        return execute(owner, () -> databaseHelper.updateFlashcard(flashcardId, frontText, backText), callback);
+    }
+
+    public Task deleteFlashcard(LifecycleOwner owner, int flashcardId, Callback<Boolean> callback) {
+        return execute(owner, () -> databaseHelper.deleteFlashcard(flashcardId), callback);
+    }
+
+    // ===== AUDIO NOTES METHODS =====
+
+    public Task addAudioNote(LifecycleOwner owner, int userId, String title, String filePath, Callback<Long> callback) {
+        return execute(owner, () -> databaseHelper.addAudioNote(userId, title, filePath), callback);
+    }
+
+    public Task getUserAudioNotes(LifecycleOwner owner, int userId, Callback<List<AudioNote>> callback) {
+        return execute(owner, () -> databaseHelper.getUserAudioNotes(userId), callback);
+    }
+
+    public Task getUserAudioNotesPage(LifecycleOwner owner, int userId, AudioNote after, int limit,
+                                      Callback<List<AudioNote>> callback) {
+        return execute(owner, () -> databaseHelper.getUserAudioNotesPage(userId, after, limit), callback);
+    }
+
+    public Task getUserAudioNotesCount(LifecycleOwner owner, int userId, Callback<Integer> callback) {
+        return execute(owner, () -> databaseHelper.getUserAudioNotesCount(userId), callback);
+    }
+
+    public Task updateAudioNote(LifecycleOwner owner, int audioNoteId, String title, String duration,
+                                Callback<Boolean> callback) {
+        return execute(owner, () -> databaseHelper.updateAudioNote(audioNoteId, title, duration), callback);
+    }
+
+    public Task deleteAudioNote(LifecycleOwner owner, int audioNoteId, Callback<Boolean> callback) {
+        return execute(owner, () -> databaseHelper.deleteAudioNote(audioNoteId), callback);
+    }
+
+    /**
+     * Runs AudioMetadataBackfill on its own low-priority thread, so reading recordings never
+     * holds up the database pool. A call while it runs makes it go round once more, since the
+     * new rows (a restore's, say) may be behind where it has got to. A pass that finds
+     * nothing missing is one query.
+     */
+    public void backfillAudioMetadata() {
+        audioBackfillRequested.set(true);
+        if (!audioBackfillRunning.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            do {
+                try {
+                    while (audioBackfillRequested.getAndSet(false)) {
+                        int updated = new AudioMetadataBackfill(databaseHelper).run();
+                        Log.d(TAG, "Audio metadata backfill updated " + updated + " notes");
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Audio metadata backfill failed: " + e.getMessage(), e);
+                } finally {
+                    audioBackfillRunning.set(false);
+                }
+                // A request between the last check and clearing the flag found it still running
+            } while (audioBackfillRequested.get() && audioBackfillRunning.compareAndSet(false, true));
+        }, "stepnote-audio-backfill");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    // ===== SEARCH METHODS =====
+
+    public Task searchFlashcards(LifecycleOwner owner, int userId, String query, int limit,
+                                 Callback<List<Flashcard>> callback) {
+        return execute(owner, () -> databaseHelper.searchFlashcards(userId, query, limit), callback);
+    }
+
+    public Task searchAudioNotes(LifecycleOwner owner, int userId, String query, int limit,
+                                 Callback<List<AudioNote>> callback) {
+        return execute(owner, () -> databaseHelper.searchAudioNotes(userId, query, limit), callback);
+    }
+
+    // ===== STEP TRACKING METHODS =====
+
+    public Task updateTodaySteps(LifecycleOwner owner, int userId, int steps) {
+        return execute(owner, () -> databaseHelper.updateTodaySteps(userId, steps));
+    }
+
+    public Task getTodayStepData(LifecycleOwner owner, int userId, Callback<DatabaseHelper.DailySteps> callback) {
+        return execute(owner, () -> databaseHelper.getTodayStepData(userId), callback);
+    }
+
+    public Task getUserStats(LifecycleOwner owner, int userId, Callback<DatabaseHelper.UserStats> callback) {
+        return execute(owner, () -> databaseHelper.getUserStats(userId), callback);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.stepnotev2;
+
+/**
+ * Chart granularity for step history, and the rollup table that stores it.
+ * Periods are identified by their first local epoch day.
+ */
+public enum StepPeriod {
+    WEEK("step_rollup_week"),
+    MONTH("step_rollup_month"),
+    YEAR("step_rollup_year");
+
+    final String table;
+
+    StepPeriod(String table) {
+        this.table = table;
+    }
+
+    // First epoch day of the period containing epochDay
+    public long periodStart(long epochDay) {
+        switch (this) {
+            case WEEK:
+                return EpochDate.startOfWeek(epochDay);
+            case MONTH:
+                return EpochDate.startOfMonth(epochDay);
+            default:
+                return EpochDate.startOfYear(epochDay);
+        }
+    }
+
+    // Start of the period {@code count} periods after the one containing epochDay
+    public long plus(long epochDay, int count) {
+        switch (this) {
+            case WEEK:
+                return EpochDate.startOfWeek(epochDay) + 7L * count;
+            case MONTH:
+                return EpochDate.plusMonths(epochDay, count);
+            default:
+                return EpochDate.plusMonths(EpochDate.startOfYear(epochDay), 12 * count);
+        }
+    }
+
+    // Whole periods from the one containing fromDay to the one containing toDay
+    public int periodsBetween(long fromDay, long toDay) {
+        switch (this) {
+            case WEEK:
+                return (int) ((EpochDate.startOfWeek(toDay) - EpochDate.startOfWeek(fromDay)) / 7);
+            case MONTH:
+                return EpochDate.monthIndex(toDay) - EpochDate.monthIndex(fromDay);
+            default:
+                return EpochDate.year(toDay) - EpochDate.year(fromDay);
+        }
+    }
+}
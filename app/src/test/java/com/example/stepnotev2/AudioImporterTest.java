@@ -0,0 +1,187 @@
+package com.example.stepnotev2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copies files through AudioImporter into a temporary directory, with a stand-in for
+ * MediaMetadataRetriever.
+ */
+public class AudioImporterTest {
+
+    private File dir;
+    private File audioDir;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("audio-import").toFile();
+        audioDir = new File(dir, "audio_notes");
+        // Not a whole number of chunks, so the last one is short
+        data = new byte[3 * AudioImporter.CHUNK_SIZE + 12_345];
+        new Random(42).nextBytes(data);
+    }
+
+    @After
+    public void tearDown() {
+        deleteTree(dir);
+    }
+
+    @Test
+    public void seekableSource_copiesEverythingAndReadsMetadataFromTheCopy() throws IOException {
+        File source = new File(dir, "lecture.mp3");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write(data);
+        }
+
+        List<Long> progress = new ArrayList<>();
+        long[] metadataSize = new long[1];
+        AudioImporter importer = new AudioImporter((fd, result) -> {
+            try {
+                metadataSize[0] = new FileInputStream(fd).getChannel().size();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            result.durationMillis = 5_400_000;
+            result.title = "Week 1";
+        });
+
+        AudioImporter.Result result;
+        try (FileInputStream input = new FileInputStream(source)) {
+            result = importer.importAudio(input.getChannel(), source.length(), audioDir, "lecture.mp3",
+                    (copied, total) -> progress.add(copied));
+        }
+
+        assertFalse(result.cancelled);
+        assertEquals(new File(audioDir, "lecture.mp3"), result.file);
+        assertEquals(data.length, result.bytesCopied);
+        assertArrayEquals(data, Files.readAllBytes(result.file.toPath()));
+        // Metadata comes from the finished copy, before it is renamed into place
+        assertEquals(data.length, metadataSize[0]);
+        assertEquals(5_400_000, result.durationMillis);
+        assertEquals("Week 1", result.title);
+        assertEquals(sha256(data), result.contentHash);
+        assertEquals(4, progress.size());
+        assertEquals(Long.valueOf(data.length), progress.get(progress.size() - 1));
+        assertEquals(Arrays.asList("lecture.mp3"), Arrays.asList(audioDir.list()));
+    }
+
+    @Test
+    public void streamSource_copiesThroughBufferWithUnknownSize() throws IOException {
+        List<Long> totals = new ArrayList<>();
+        AudioImporter importer = new AudioImporter((fd, result) -> {});
+
+        AudioImporter.Result result = importer.importAudio(Channels.newChannel(new ByteArrayInputStream(data)),
+                -1, audioDir, "voice memo", (copied, total) -> totals.add(total));
+
+        assertEquals(data.length, result.bytesCopied);
+        assertArrayEquals(data, Files.readAllBytes(result.file.toPath()));
+        assertEquals(sha256(data), result.contentHash);
+        assertEquals(-1, result.durationMillis);
+        assertNull(result.title);
+        assertEquals(Long.valueOf(-1), totals.get(0));
+    }
+
+    @Test
+    public void cancel_stopsAfterCurrentChunkAndDeletesPartialFile() throws IOException {
+        AudioImporter importer = new AudioImporter((fd, result) -> fail("metadata read after cancel"));
+        List<Long> progress = new ArrayList<>();
+
+        AudioImporter.Result result = importer.importAudio(Channels.newChannel(new ByteArrayInputStream(data)),
+                data.length, audioDir, "lecture.mp3", (copied, total) -> {
+                    progress.add(copied);
+                    importer.cancel();
+                });
+
+        assertTrue(result.cancelled);
+        assertNull(result.file);
+        assertEquals(1, progress.size());
+        assertEquals(0, audioDir.list().length);
+    }
+
+    @Test
+    public void claimFile_numbersTakenNamesAndReservesThem() throws IOException {
+        assertTrue(audioDir.mkdirs());
+        assertTrue(new File(audioDir, "talk.mp3").createNewFile());
+
+        File first = AudioImporter.claimFile(audioDir, "talk.mp3");
+        File second = AudioImporter.claimFile(audioDir, "talk.mp3");
+
+        assertEquals("talk (2).mp3", first.getName());
+        // The first claim's partial file holds its name until it is renamed
+        assertEquals("talk (3).mp3", second.getName());
+        assertTrue(new File(audioDir, "talk (2).mp3" + AudioImporter.PARTIAL_SUFFIX).exists());
+        assertEquals("notes", AudioImporter.claimFile(audioDir, "notes").getName());
+    }
+
+    @Test
+    public void contentHash_isLowercaseHexSha256() throws IOException {
+        AudioImporter importer = new AudioImporter((fd, result) -> {});
+
+        AudioImporter.Result result = importer.importAudio(
+                Channels.newChannel(new ByteArrayInputStream("abc".getBytes(StandardCharsets.US_ASCII))),
+                3, audioDir, "abc.wav", null);
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", result.contentHash);
+    }
+
+    @Test
+    public void toAudioNote_carriesStreamMetadataAndSize() throws IOException {
+        AudioImporter importer = new AudioImporter((fd, result) -> {
+            result.durationMillis = 61_500;
+            result.sampleRate = 48_000;
+            result.channelCount = 2;
+            result.bitrate = 128_000;
+        });
+
+        AudioImporter.Result result = importer.importAudio(Channels.newChannel(new ByteArrayInputStream(data)),
+                data.length, audioDir, "lecture.mp3", null);
+        AudioNote note = result.toAudioNote("Lecture");
+
+        assertEquals("Lecture", note.getTitle());
+        assertEquals(result.file.getAbsolutePath(), note.getFilePath());
+        assertEquals(AudioImporter.formatDuration(61_500), note.getDuration());
+        assertEquals(61_500, note.getDurationMs());
+        assertEquals(48_000, note.getSampleRate());
+        assertEquals(2, note.getChannelCount());
+        assertEquals(128_000, note.getBitrate());
+        assertEquals(data.length, note.getFileSize());
+        assertEquals(result.contentHash, note.getContentHash());
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return AudioImporter.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.stepnotev2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses small CSV/TSV decks and a generated one far larger than the reader's buffer.
+ */
+public class DelimitedReaderTest {
+
+    @Test
+    public void csv_handlesQuotesEmbeddedDelimitersAndLineBreaks() throws IOException {
+        DelimitedReader reader = new DelimitedReader(new StringReader(
+                "\uFEFFfront,back\r\n\"a, b\",\"say \"\"hi\"\"\"\r\n\r\n\"two\nlines\",x,ignored\n"));
+
+        assertTrue(reader.next());
+        assertEquals("front", reader.getField(0));
+        assertEquals("back", reader.getField(1));
+
+        assertTrue(reader.next());
+        assertEquals("a, b", reader.getField(0));
+        assertEquals("say \"hi\"", reader.getField(1));
+
+        assertTrue(reader.next());
+        assertEquals("two\nlines", reader.getField(0));
+        assertEquals("x", reader.getField(1));
+        assertEquals(3, reader.getFieldCount());
+        assertEquals(3, reader.getRecordNumber());
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void tsv_isDetectedFromTheFirstDelimiter() throws IOException {
+        DelimitedReader reader = new DelimitedReader(new StringReader("Paris\tCapital, France\nNo tab here"));
+
+        assertTrue(reader.next());
+        assertEquals("Paris", reader.getField(0));
+        assertEquals("Capital, France", reader.getField(1));
+
+        assertTrue(reader.next());
+        assertEquals(1, reader.getFieldCount());
+        assertEquals("", reader.getField(1));
+    }
+
+    @Test
+    public void longFields_areCappedAndFlagged() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < DelimitedReader.MAX_FIELD_LENGTH + 100; i++) {
+            line.append('x');
+        }
+        DelimitedReader reader = new DelimitedReader(new StringReader(line + ",back\nok,fine\n"));
+
+        assertTrue(reader.next());
+        assertTrue(reader.isTruncated());
+        assertEquals(DelimitedReader.MAX_FIELD_LENGTH, reader.getField(0).length());
+        assertEquals("back", reader.getField(1));
+
+        assertTrue(reader.next());
+        assertFalse(reader.isTruncated());
+        assertEquals("ok", reader.getField(0));
+    }
+
+    @Test
+    public void largeDeck_streamsEveryRecord() throws IOException {
+        int rows = 200_000;
+        DelimitedReader reader = new DelimitedReader(new GeneratedDeck(rows));
+
+        int count = 0;
+        while (reader.next()) {
+            assertEquals("q" + count, reader.getField(0));
+            count++;
+        }
+        assertEquals(rows, count);
+    }
+
+    // Produces "q<i>,a<i>\n" lines on demand, so the test itself never holds the deck
+    private static class GeneratedDeck extends Reader {
+        private final int rows;
+        private int row = 0;
+        private String line = "";
+        private int offset = 0;
+
+        GeneratedDeck(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            int written = 0;
+            while (written < len) {
+                if (offset == line.length()) {
+                    if (row == rows) {
+                        break;
+                    }
+                    line = "q" + row + ",a" + row + "\n";
+                    row++;
+                    offset = 0;
+                }
+                buffer[off + written++] = line.charAt(offset++);
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
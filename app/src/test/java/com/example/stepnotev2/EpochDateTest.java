@@ -0,0 +1,102 @@
+package com.example.stepnotev2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks local epoch-day keys against fixed time zones, including DST changes.
+ */
+public class EpochDateTest {
+
+    private TimeZone originalZone;
+
+    @Before
+    public void setUp() {
+        originalZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalZone);
+        EpochDate.reset();
+    }
+
+    private static void useZone(String id) {
+        TimeZone.setDefault(TimeZone.getTimeZone(id));
+        EpochDate.reset();
+    }
+
+    @Test
+    public void epochDay_usesLocalMidnight() {
+        useZone("Asia/Colombo"); // UTC+05:30
+
+        // 2025-08-12 19:00 UTC is already 2025-08-13 00:30 in Colombo
+        long millis = 1_755_025_200_000L;
+        assertEquals(20_313, EpochDate.epochDay(millis));
+        assertEquals(20_312, EpochDate.epochDay(millis - 31 * 60_000L));
+    }
+
+    @Test
+    public void startOfDay_roundTripsAcrossDstChange() {
+        useZone("America/New_York");
+
+        // 2025-03-09 is 23 hours long, 2025-11-02 is 25 hours long
+        for (long day : new long[]{20_156, 20_157, 20_394, 20_395}) {
+            long start = EpochDate.startOfDayMillis(day);
+            assertEquals(day, EpochDate.epochDay(start));
+            assertEquals(day - 1, EpochDate.epochDay(start - 1));
+        }
+        assertEquals(23 * 3_600_000L, EpochDate.startOfDayMillis(20_157) - EpochDate.startOfDayMillis(20_156));
+        assertEquals(25 * 3_600_000L, EpochDate.startOfDayMillis(20_395) - EpochDate.startOfDayMillis(20_394));
+    }
+
+    @Test
+    public void epochDay_beforeEpochRoundsDown() {
+        useZone("UTC");
+        assertEquals(-1, EpochDate.epochDay(-1));
+        assertEquals(0, EpochDate.epochDay(0));
+    }
+
+    @Test
+    public void formatDay_matchesIsoDate() {
+        useZone("UTC");
+        assertEquals("2025-08-13", EpochDate.formatDay(20_313));
+    }
+
+    @Test
+    public void periodStarts_matchJavaTime() {
+        for (long day = -800; day <= 800; day++) {
+            assertPeriodStarts(day);
+        }
+        for (long day = 20_000; day <= 21_500; day++) {
+            assertPeriodStarts(day);
+        }
+    }
+
+    private static void assertPeriodStarts(long day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        assertEquals(date.with(DayOfWeek.MONDAY).toEpochDay(), EpochDate.startOfWeek(day));
+        assertEquals(date.withDayOfMonth(1).toEpochDay(), EpochDate.startOfMonth(day));
+        assertEquals(date.withDayOfYear(1).toEpochDay(), EpochDate.startOfYear(day));
+        assertEquals(date.withDayOfMonth(1).plusMonths(-13).toEpochDay(), EpochDate.plusMonths(day, -13));
+    }
+
+    @Test
+    public void stepPeriod_countsWholePeriods() {
+        long first = LocalDate.of(2024, 11, 20).toEpochDay();
+        long last = LocalDate.of(2025, 2, 3).toEpochDay();
+
+        assertEquals(11, StepPeriod.WEEK.periodsBetween(first, last));
+        assertEquals(3, StepPeriod.MONTH.periodsBetween(first, last));
+        assertEquals(1, StepPeriod.YEAR.periodsBetween(first, last));
+        assertEquals(LocalDate.of(2025, 2, 1).toEpochDay(), StepPeriod.MONTH.plus(first, 3));
+        assertEquals(LocalDate.of(2023, 1, 1).toEpochDay(), StepPeriod.YEAR.plus(last, -2));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.stepnotev2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that search-box input always becomes a well-formed prefix MATCH expression.
+ */
+public class FtsQueryTest {
+
+    @Test
+    public void words_becomePrefixTerms() {
+        assertEquals("flash* car*", FtsQuery.toMatchExpression("Flash car"));
+    }
+
+    @Test
+    public void ftsSyntax_isStripped() {
+        assertEquals("front* text* back*", FtsQuery.toMatchExpression("front_text:\"back*\""));
+        assertEquals("a* b*", FtsQuery.toMatchExpression("-a (b)"));
+    }
+
+    @Test
+    public void operators_areSearchedAsWords() {
+        assertEquals("cats* or* dogs*", FtsQuery.toMatchExpression("cats OR dogs"));
+    }
+
+    @Test
+    public void nonLatinLetters_areKept() {
+        assertEquals("café*", FtsQuery.toMatchExpression("Café"));
+    }
+
+    @Test
+    public void blankInput_hasNoExpression() {
+        assertNull(FtsQuery.toMatchExpression(null));
+        assertNull(FtsQuery.toMatchExpression("   "));
+        assertNull(FtsQuery.toMatchExpression("*\"()"));
+    }
+}
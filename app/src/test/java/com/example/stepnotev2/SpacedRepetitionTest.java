@@ -0,0 +1,161 @@
+package com.example.stepnotev2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks cards through answer sequences and checks the resulting schedule.
+ */
+public class SpacedRepetitionTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @Test
+    public void goodAnswers_followSm2Intervals() {
+        Flashcard card = new Flashcard(1, "Q", "A", 0);
+        long now = 1_000_000L;
+
+        SpacedRepetition.review(card, SpacedRepetition.Grade.GOOD, now);
+        assertEquals(1, card.getIntervalDays());
+        SpacedRepetition.review(card, SpacedRepetition.Grade.GOOD, now);
+        assertEquals(6, card.getIntervalDays());
+        SpacedRepetition.review(card, SpacedRepetition.Grade.GOOD, now);
+        assertEquals(15, card.getIntervalDays()); // 6 x 2.5
+
+        assertEquals(now + 15 * DAY, card.getDueAt());
+        assertEquals(3, card.getRepetitions());
+        assertEquals(SpacedRepetition.INITIAL_EASE, card.getEase());
+    }
+
+    @Test
+    public void again_relearnsSoonAndLowersEase() {
+        Flashcard card = new Flashcard(1, "Q", "A", 0);
+        long now = 1_000_000L;
+        SpacedRepetition.review(card, SpacedRepetition.Grade.GOOD, now);
+        SpacedRepetition.review(card, SpacedRepetition.Grade.GOOD, now);
+
+        SpacedRepetition.review(card, SpacedRepetition.Grade.AGAIN, now);
+        assertEquals(now + SpacedRepetition.RELEARN_DELAY_MILLIS, card.getDueAt());
+        assertEquals(0, card.getRepetitions());
+        assertEquals(1, card.getLapses());
+        assertEquals(SpacedRepetition.INITIAL_EASE - 200, card.getEase());
+
+        // Ease never drops below the floor
+        for (int i = 0; i < 20; i++) {
+            SpacedRepetition.review(card, SpacedRepetition.Grade.AGAIN, now);
+        }
+        assertEquals(SpacedRepetition.MIN_EASE, card.getEase());
+    }
+
+    @Test
+    public void everySuccess_movesTheCardFurtherOut() {
+        Flashcard card = new Flashcard(1, "Q", "A", 0);
+        int previous = 0;
+        for (int i = 0; i < 40; i++) {
+            SpacedRepetition.review(card, SpacedRepetition.Grade.HARD, 0);
+            assertTrue(card.getIntervalDays() > previous || card.getIntervalDays() == SpacedRepetition.MAX_INTERVAL_DAYS);
+            previous = card.getIntervalDays();
+        }
+        assertEquals(SpacedRepetition.MIN_EASE, card.getEase());
+    }
+
+    @Test
+    public void reviewBuffer_batchesAnswersInOrder() {
+        List<List<ReviewBuffer.Review>> batches = new ArrayList<>();
+        ReviewBuffer buffer = new ReviewBuffer(batches::add, 3);
+        Flashcard card = new Flashcard(1, "Q", "A", 0);
+        card.setId(7);
+
+        assertFalse(buffer.record(card, SpacedRepetition.Grade.GOOD, 0, 4_000, 1));
+        assertFalse(buffer.record(card, SpacedRepetition.Grade.GOOD, 1, 4_000, 1));
+        assertTrue(buffer.record(card, SpacedRepetition.Grade.AGAIN, 2, 4_000, 1));
+        assertTrue(batches.isEmpty()); // The caller decides where to flush
+
+        assertEquals(3, buffer.flush());
+        assertEquals(0, buffer.flush());
+        assertEquals(1, batches.size());
+        List<ReviewBuffer.Review> batch = batches.get(0);
+        assertEquals(SpacedRepetition.Grade.AGAIN, batch.get(2).grade);
+        assertEquals(6, batch.get(1).intervalDays);
+        assertEquals(card.getDueAt(), batch.get(2).dueAt);
+        assertEquals(6, batch.get(2).previousIntervalDays);
+        assertEquals(4_000, batch.get(2).answerMillis);
+    }
+
+    @Test
+    public void reviewBuffer_capsAnswerTimeAndKeepsLearningState() {
+        List<List<ReviewBuffer.Review>> batches = new ArrayList<>();
+        ReviewBuffer buffer = new ReviewBuffer(batches::add);
+        Flashcard card = new Flashcard(3, "Q", "A", 0);
+
+        buffer.record(card, SpacedRepetition.Grade.GOOD, 0, 10 * 60_000L, 3);
+        buffer.flush();
+
+        ReviewBuffer.Review review = batches.get(0).get(0);
+        assertEquals(3, review.userId);
+        assertEquals(ReviewBuffer.MAX_ANSWER_MILLIS, review.answerMillis);
+        assertEquals(3, review.flips);
+        assertEquals(0, review.previousIntervalDays); // A new card is not a recall
+        assertEquals(1, review.intervalDays);
+    }
+
+    @Test
+    public void reviewBuffer_requeuesFailedBatch() {
+        ReviewBuffer buffer = new ReviewBuffer(reviews -> {
+            throw new IllegalStateException("disk full");
+        });
+        Flashcard card = new Flashcard(1, "Q", "A", 0);
+        buffer.record(card, SpacedRepetition.Grade.EASY, 0, 4_000, 1);
+
+        try {
+            buffer.flush();
+            fail();
+        } catch (IllegalStateException expected) {
+            // Kept for the next attempt
+        }
+        assertEquals(1, buffer.getPendingCount());
+    }
+
+    @Test
+    public void reviewBuffer_flushWaitsForBatchStillBeingWritten() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean written = new AtomicBoolean();
+        ReviewBuffer buffer = new ReviewBuffer(reviews -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            written.set(true);
+        });
+        buffer.record(new Flashcard(1, "Q", "A", 0), SpacedRepetition.Grade.GOOD, 0, 4_000, 1);
+
+        Thread first = new Thread(buffer::flush);
+        first.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // Nothing is left to take, but the second flush must not return before the first batch is stored
+        AtomicBoolean writtenWhenSecondReturned = new AtomicBoolean();
+        Thread second = new Thread(() -> {
+            buffer.flush();
+            writtenWhenSecondReturned.set(written.get());
+        });
+        second.start();
+        second.join(200);
+        assertTrue(second.isAlive());
+
+        release.countDown();
+        first.join(5_000);
+        second.join(5_000);
+        assertTrue(writtenWhenSecondReturned.get());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.stepnotev2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays step streams through StepBuffer and counts the writes that reach the database.
+ */
+public class StepBufferTest {
+
+    private static class RecordingSink implements StepBuffer.Sink {
+        final List<String> writes = new ArrayList<>();
+        int lastSteps = -1;
+        byte[] lastHistogram;
+
+        @Override
+        public void writeSteps(int userId, long epochDay, int steps, byte[] histogram) {
+            writes.add(userId + "/" + epochDay + "/" + steps);
+            lastSteps = steps;
+            lastHistogram = histogram;
+        }
+    }
+
+    @Test
+    public void tenThousandStepWalk_writesOncePerThreshold() {
+        RecordingSink sink = new RecordingSink();
+        StepBuffer buffer = new StepBuffer(sink);
+
+        // One sensor event per step, two steps per second
+        long now = 0;
+        for (int steps = 1; steps <= 10_000; steps++) {
+            buffer.record(1, 20_313L, steps, now);
+            now += 500;
+        }
+        buffer.flush();
+
+        // 10,000 events collapse into one write per 100 steps
+        assertTrue("writes: " + sink.writes.size(), sink.writes.size() <= 101);
+        assertEquals(10_000, sink.lastSteps);
+    }
+
+    @Test
+    public void slowWalk_flushesOnInterval() {
+        RecordingSink sink = new RecordingSink();
+        StepBuffer buffer = new StepBuffer(sink);
+
+        // One step every 10 seconds never reaches the step threshold
+        long now = 0;
+        for (int steps = 1; steps <= 60; steps++) {
+            buffer.record(1, 20_313L, steps, now);
+            now += 10_000;
+        }
+
+        // First write plus one per minute
+        assertEquals(10, sink.writes.size());
+    }
+
+    @Test
+    public void dayRollover_writesPreviousDayFinalCount() {
+        RecordingSink sink = new RecordingSink();
+        StepBuffer buffer = new StepBuffer(sink);
+
+        buffer.record(1, 20_313L, 1, 0);
+        buffer.record(1, 20_313L, 42, 1_000);
+        buffer.record(1, 20_314L, 3, 2_000);
+
+        assertTrue(sink.writes.contains("1/20313/42"));
+        assertEquals("1/20314/3", sink.writes.get(sink.writes.size() - 1));
+    }
+
+    @Test
+    public void flush_withNothingPending_doesNotWrite() {
+        RecordingSink sink = new RecordingSink();
+        StepBuffer buffer = new StepBuffer(sink);
+
+        buffer.record(1, 20_313L, 5, 0);
+        int writes = sink.writes.size();
+
+        assertFalse(buffer.flush());
+        assertEquals(writes, sink.writes.size());
+    }
+
+    @Test
+    public void histogram_bucketsIncrementsByTimeOfDay() {
+        RecordingSink sink = new RecordingSink();
+        StepBuffer buffer = new StepBuffer(sink);
+        long dayStart = EpochDate.startOfDayMillis(20_313L);
+
+        // Resumed at 08:00 with 500 steps already stored in the first bucket
+        int[] stored = new int[StepHistogram.BUCKETS_PER_DAY];
+        stored[0] = 500;
+        buffer.resume(1, 20_313L, 500, StepHistogram.encode(stored), dayStart + 8 * 3_600_000L);
+
+        buffer.record(1, 20_313L, 560, dayStart + 8 * 3_600_000L + 60_000L);
+        buffer.record(1, 20_313L, 600, dayStart + 8 * 3_600_000L + 6 * 60_000L);
+        buffer.flush();
+
+        int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+        StepHistogram.decode(sink.lastHistogram, buckets);
+        assertEquals(500, buckets[0]);
+        assertEquals(60, buckets[96]);
+        assertEquals(40, buckets[97]);
+        assertEquals("1/20313/600", sink.writes.get(sink.writes.size() - 1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.stepnotev2;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trips step histograms through the packed BLOB encoding.
+ */
+public class StepHistogramTest {
+
+    @Test
+    public void encode_roundTripsAFullDay() {
+        int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = (i * 37) % 400;
+        }
+        buckets[100] = 1_000_000;
+
+        int[] decoded = new int[StepHistogram.BUCKETS_PER_DAY];
+        assertEquals(buckets.length, StepHistogram.decode(StepHistogram.encode(buckets), decoded));
+        assertArrayEquals(buckets, decoded);
+    }
+
+    @Test
+    public void encode_isOneBytePerBucketForIdleAndSteadyStretches() {
+        int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+        // Asleep until 08:00, then a steady 60-bucket walk, then nothing
+        for (int i = 96; i < 156; i++) {
+            buckets[i] = 450;
+        }
+
+        byte[] blob = StepHistogram.encode(buckets);
+        // Header, 96 zero deltas, one two-byte jump, 59 zero deltas; trailing zeros dropped
+        assertEquals(1 + 96 + 2 + 59, blob.length);
+    }
+
+    @Test
+    public void decode_clearsStaleBucketsAndToleratesBadInput() {
+        int[] buckets = new int[StepHistogram.BUCKETS_PER_DAY];
+        buckets[200] = 7;
+
+        assertEquals(0, StepHistogram.decode(null, buckets));
+        assertEquals(0, buckets[200]);
+        assertEquals(0, StepHistogram.decode(new byte[]{1, 2, 3}, buckets));
+
+        int[] day = new int[StepHistogram.BUCKETS_PER_DAY];
+        day[0] = 300;
+        byte[] truncated = StepHistogram.encode(day);
+        assertEquals(0, StepHistogram.decode(Arrays.copyOf(truncated, 2), buckets));
+    }
+
+    @Test
+    public void bucketIndex_clampsToTheDay() {
+        long dayStart = 1_000_000L;
+        assertEquals(0, StepHistogram.bucketIndex(dayStart, dayStart - 1));
+        assertEquals(1, StepHistogram.bucketIndex(dayStart, dayStart + 5 * 60_000L));
+        // 25-hour DST day: the extra hour lands in the last bucket
+        assertEquals(StepHistogram.BUCKETS_PER_DAY - 1,
+                StepHistogram.bucketIndex(dayStart, dayStart + 24 * 3_600_000L + 1));
+    }
+}